@@ -0,0 +1,66 @@
+package no.unit.nva;
+
+import com.structurizr.model.Container;
+import com.structurizr.model.Element;
+import com.structurizr.model.Model;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Critical-path and blast-radius analysis: building the dependency graph, enumerating the chains through the gateway
+ * to storage, and the transitive fan-in and fan-out of every container. Storage is the containers without outgoing
+ * relationships, as the synthetic models carry no tags.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AnalysisBenchmark {
+
+    private static final int MAX_CHAINS = 10_000;
+
+    @Param({SyntheticModels.NVA, "100", "1000", "10000"})
+    public String model;
+
+    private Model workspaceModel;
+    private Element gateway;
+    private CriticalPathAnalyzer analyzer;
+
+    @Setup
+    public void setUp() {
+        workspaceModel = SyntheticModels.workspace(model).getModel();
+        gateway = new ElementRegistry(workspaceModel)
+                .getElement(SyntheticModels.NVA.equals(model) ? Nva.PUBLIC_API : "Gateway");
+        analyzer = new CriticalPathAnalyzer(DependencyGraph.of(workspaceModel), 1000);
+    }
+
+    @Benchmark
+    public DependencyGraph buildGraph() {
+        return DependencyGraph.of(workspaceModel);
+    }
+
+    @Benchmark
+    public CriticalPathAnalyzer.Chains chains() {
+        return analyzer.chains(gateway,
+                element -> element instanceof Container && element.getRelationships().isEmpty(), MAX_CHAINS);
+    }
+
+    @Benchmark
+    public List<CriticalPathAnalyzer.Hotspot> hotspots() {
+        return analyzer.hotspots();
+    }
+}
@@ -0,0 +1,85 @@
+package no.unit.nva;
+
+import com.structurizr.Workspace;
+import com.structurizr.view.View;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the in-process layered layout with forking Graphviz dot, on the NVA model and on synthetic models, both
+ * view by view and through the parallel {@link LayoutStage} that generateGraphViz uses. The layout cache is bypassed.
+ * The graphviz engine requires dot on the PATH.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LayoutBenchmark {
+
+    private static final int PROCESSORS = Runtime.getRuntime().availableProcessors();
+
+    @Param({SyntheticModels.NVA, "100", "1000", "10000"})
+    public String model;
+
+    @Param({LayeredLayoutEngine.NAME, GraphvizLayoutEngine.NAME})
+    public String engine;
+
+    private Workspace workspace;
+    private LayoutEngine layoutEngine;
+    private LayoutStage layoutStage;
+
+    @Setup
+    public void setUp() throws Exception {
+        workspace = SyntheticModels.workspace(model);
+        layoutEngine = LayeredLayoutEngine.NAME.equals(engine)
+                ? new LayeredLayoutEngine()
+                : new GraphvizLayoutEngine(Files.createTempDirectory("layout-benchmark").toFile(), PROCESSORS);
+        layoutStage = new LayoutStage(layoutEngine, new UncachedLayouts(), PROCESSORS, Duration.ofMinutes(10));
+    }
+
+    @Benchmark
+    public Workspace layoutAllViews() throws Exception {
+        for (View view : workspace.getViews().getViews()) {
+            layoutEngine.apply(view);
+        }
+        return workspace;
+    }
+
+    @Benchmark
+    public Workspace layoutStage() throws Exception {
+        layoutStage.apply(workspace);
+        return workspace;
+    }
+
+    private static final class UncachedLayouts extends LayoutCache {
+
+        private UncachedLayouts() {
+            super(new File("."));
+        }
+
+        @Override
+        public boolean restore(View view, String fingerprint) {
+            return false;
+        }
+
+        @Override
+        public void store(View view, String fingerprint) {
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package no.unit.nva;
+
+import com.structurizr.model.SoftwareSystem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Model construction: the workspace plus every add* call, which is where element lookups and relationship wiring
+ * happen.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ModelBenchmark {
+
+    @Param({SyntheticModels.NVA, "100", "1000", "10000"})
+    public String model;
+
+    @Benchmark
+    public SoftwareSystem buildModel() {
+        return SyntheticModels.buildModel(SyntheticModels.emptyWorkspace(model), model);
+    }
+}
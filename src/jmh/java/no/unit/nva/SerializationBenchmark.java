@@ -0,0 +1,50 @@
+package no.unit.nva;
+
+import com.structurizr.Workspace;
+import com.structurizr.io.json.JsonWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON serialization of a laid out workspace, which is what putWorkspace sends to Structurizr.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({SyntheticModels.NVA, "100", "1000", "10000"})
+    public String model;
+
+    private Workspace workspace;
+
+    @Setup
+    public void setUp() {
+        workspace = SyntheticModels.workspace(model);
+        for (var view : workspace.getViews().getViews()) {
+            new LayeredLayoutEngine().apply(view);
+        }
+    }
+
+    @Benchmark
+    public String toJson() throws Exception {
+        var json = new StringWriter();
+        new JsonWriter(false).write(workspace, json);
+        return json.toString();
+    }
+}
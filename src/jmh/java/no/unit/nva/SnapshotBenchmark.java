@@ -0,0 +1,87 @@
+package no.unit.nva;
+
+import com.structurizr.Workspace;
+import com.structurizr.io.json.JsonReader;
+import com.structurizr.io.json.JsonWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeping and comparing snapshots of a laid out workspace: writing and reading the binary snapshot, diffing two
+ * snapshots, and, for comparison, reading the same workspace from Structurizr JSON.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SnapshotBenchmark {
+
+    @Param({SyntheticModels.NVA, "100", "1000", "10000"})
+    public String model;
+
+    private Path directory;
+    private Path snapshotFile;
+    private String json;
+    private WorkspaceSnapshot snapshot;
+    private WorkspaceSnapshot previous;
+
+    @Setup
+    public void setUp() throws Exception {
+        var workspace = SyntheticModels.workspace(model);
+        for (var view : workspace.getViews().getViews()) {
+            new LayeredLayoutEngine().apply(view);
+        }
+        var writer = new StringWriter();
+        new JsonWriter(false).write(workspace, writer);
+        json = writer.toString();
+        directory = Files.createTempDirectory("snapshot-benchmark");
+        snapshotFile = directory.resolve("workspace.snapshot");
+        snapshot = WorkspaceSnapshot.of(workspace);
+        snapshot.write(snapshotFile);
+        previous = WorkspaceSnapshot.of(new JsonReader().read(new StringReader(json)));
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(snapshotFile);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public WorkspaceSnapshot readSnapshot() throws Exception {
+        return WorkspaceSnapshot.read(snapshotFile);
+    }
+
+    @Benchmark
+    public void writeSnapshot() throws Exception {
+        snapshot.write(snapshotFile);
+    }
+
+    @Benchmark
+    public SnapshotDiff diff() {
+        return SnapshotDiff.between(previous, snapshot);
+    }
+
+    @Benchmark
+    public Workspace readJson() throws Exception {
+        return new JsonReader().read(new StringReader(json));
+    }
+}
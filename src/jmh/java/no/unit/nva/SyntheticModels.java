@@ -0,0 +1,92 @@
+package no.unit.nva;
+
+import com.structurizr.Workspace;
+import com.structurizr.model.Container;
+import com.structurizr.model.SoftwareSystem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Builds reproducible synthetic workspaces shaped like NVA: one core system with an API gateway in front of many
+ * serverless containers, a few external systems and users, and a system context and container view. The size
+ * {@value #NVA} stands for the real NVA model.
+ */
+final class SyntheticModels {
+
+    static final String NVA = "nva";
+
+    private static final long SEED = 42L;
+    private static final int PEOPLE = 10;
+    private static final int EXTERNAL_SYSTEMS = 20;
+    private static final int MAX_DEPENDENCIES = 3;
+
+    private SyntheticModels() {
+    }
+
+    static Workspace workspace(String size) {
+        var workspace = emptyWorkspace(size);
+        createViews(workspace, buildModel(workspace, size));
+        return workspace;
+    }
+
+    static Workspace emptyWorkspace(String size) {
+        return NVA.equals(size)
+                ? Nva.getNvaApplicationWorkspace()
+                : new Workspace("Synthetic " + size, "Synthetic model with " + size + " containers");
+    }
+
+    static SoftwareSystem buildModel(Workspace workspace, String size) {
+        var registry = new ElementRegistry(workspace.getModel());
+        if (NVA.equals(size)) {
+            var nvaCore = Nva.getNvaCoreApplication(registry);
+            Nva.addSoftwareSystems(registry, nvaCore);
+            Nva.addUsers(registry, nvaCore);
+            Nva.addContainers(registry, nvaCore);
+            return nvaCore;
+        }
+        return buildSyntheticModel(registry, Integer.parseInt(size));
+    }
+
+    static void createViews(Workspace workspace, SoftwareSystem core) {
+        Nva.createSystemContextView(workspace, core);
+        Nva.createContainerView(workspace, core);
+    }
+
+    private static SoftwareSystem buildSyntheticModel(ElementRegistry registry, int containers) {
+        var random = new SplittableRandom(SEED);
+        var core = registry.addSoftwareSystem("Core", "The synthetic core system");
+
+        List<SoftwareSystem> externalSystems = new ArrayList<>();
+        for (int i = 0; i < EXTERNAL_SYSTEMS; i++) {
+            var external = registry.addSoftwareSystem("External " + i, "External system " + i);
+            core.uses(external, "Uses");
+            externalSystems.add(external);
+        }
+        for (int i = 0; i < PEOPLE; i++) {
+            registry.addPerson("User " + i, "User " + i).uses(core, "Uses");
+        }
+
+        var gateway = registry.addContainer(core, "Gateway", "The API gateway", "AWS API Gateway");
+        List<Container> services = new ArrayList<>();
+        for (int i = 0; i < containers; i++) {
+            var service = registry.addContainer(core, "Service " + i, "Service " + i, "AWS Serverless Application");
+            if (services.isEmpty() || random.nextInt(4) == 0) {
+                gateway.uses(service, "Forwards requests to");
+            }
+            int dependencies = Math.min(services.size(), random.nextInt(MAX_DEPENDENCIES + 1));
+            for (int d = 0; d < dependencies; d++) {
+                var target = services.get(random.nextInt(services.size()));
+                if (!service.hasEfferentRelationshipWith(target)) {
+                    service.uses(target, "Calls");
+                }
+            }
+            if (random.nextInt(10) == 0) {
+                service.uses(externalSystems.get(random.nextInt(externalSystems.size())), "Gets data from");
+            }
+            services.add(service);
+        }
+        return core;
+    }
+}
@@ -0,0 +1,49 @@
+package no.unit.nva;
+
+import com.structurizr.Workspace;
+import com.structurizr.model.SoftwareSystem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * View creation: createSystemContextView and createContainerView on a freshly built model. The model is rebuilt
+ * before every invocation, because a view key can only be created once per workspace.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class ViewBenchmark {
+
+    @Param({SyntheticModels.NVA, "100", "1000", "10000"})
+    public String model;
+
+    private Workspace workspace;
+    private SoftwareSystem core;
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+        workspace = SyntheticModels.emptyWorkspace(model);
+        core = SyntheticModels.buildModel(workspace, model);
+    }
+
+    @Benchmark
+    public Workspace createViews() {
+        SyntheticModels.createViews(workspace, core);
+        return workspace;
+    }
+}
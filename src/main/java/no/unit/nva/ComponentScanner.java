@@ -0,0 +1,409 @@
+package no.unit.nva;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.structurizr.Workspace;
+import com.structurizr.analysis.ComponentFinder;
+import com.structurizr.analysis.ComponentFinderStrategy;
+import com.structurizr.analysis.IgnoreDuplicateComponentStrategy;
+import com.structurizr.analysis.NameSuffixTypeMatcher;
+import com.structurizr.analysis.StructurizrAnnotationsComponentFinderStrategy;
+import com.structurizr.analysis.TypeMatcherComponentFinderStrategy;
+import com.structurizr.model.Component;
+import com.structurizr.model.Container;
+import com.structurizr.model.Relationship;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Discovers the components of the NVA services by scanning their jars with structurizr-analysis, and adds them with
+ * the dependencies between them to the matching containers. The jars of a service are scanned together, through one
+ * class loader, so that types in one jar can refer to types in another; the services are scanned in parallel. The
+ * result of a service is cached as JSON keyed by the SHA-256 of each of its jars and the scan settings, so a service is
+ * only scanned again when one of its jars changes. An index of the size, modification time and hash of every jar saves
+ * hashing the jars that have not been touched, which leaves a run over unchanged services with reading the cached
+ * results. Cached results and index entries that the current services no longer use are removed.
+ */
+public class ComponentScanner {
+
+    public static final String DEFAULT_CACHE_DIRECTORY = "./build/generated/component-cache/";
+    private static final String HASH_INDEX = "jar-hashes.properties";
+    private static final String CACHE_FORMAT = "2";
+    private static final String CACHE_FILE_PATTERN = "[0-9a-f]{64}\\.json";
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Path cacheDirectory;
+    private final int workers;
+
+    public ComponentScanner(Path cacheDirectory, int workers) {
+        this.cacheDirectory = cacheDirectory;
+        this.workers = workers;
+    }
+
+    /**
+     * Scans the jars of every service and adds the components found to the containers of {@code registry} named by
+     * the services.
+     */
+    public Summary apply(ElementRegistry registry, ComponentSources sources) throws Exception {
+        for (ComponentSources.Service service : sources.getServices()) {
+            containerOf(registry, service);
+        }
+        return scan(sources).addTo(registry);
+    }
+
+    /**
+     * Scans the jars of every service, or reads the cached results of the services whose jars have not changed, so
+     * that the components can be added to any number of models without scanning again.
+     */
+    public Components scan(ComponentSources sources) throws Exception {
+        Files.createDirectories(cacheDirectory);
+        var previousIndex = loadHashIndex();
+        var jars = sources.getServices().stream()
+                .flatMap(service -> service.getJars().stream())
+                .distinct()
+                .collect(Collectors.toList());
+        var hashTasks = new ArrayList<Callable<String>>();
+        for (Path jar : jars) {
+            hashTasks.add(() -> stampOf(jar) + " " + hashOf(jar, previousIndex));
+        }
+        var hashIndex = new Properties();
+        var stampedHashes = runAll(hashTasks);
+        for (int i = 0; i < jars.size(); i++) {
+            hashIndex.setProperty(jars.get(i).toString(), stampedHashes.get(i));
+        }
+
+        var scanTasks = new ArrayList<Callable<ServiceScan>>();
+        for (ComponentSources.Service service : sources.getServices()) {
+            scanTasks.add(() -> scan(service, sources.getSuffixes(), hashIndex));
+        }
+        var scans = runAll(scanTasks);
+        storeHashIndex(hashIndex);
+        prune(scans.stream().map(scan -> scan.cacheFile).collect(Collectors.toSet()));
+        return new Components(scans, jars.size());
+    }
+
+    private <T> List<T> runAll(List<Callable<T>> tasks) throws Exception {
+        var results = new ArrayList<T>();
+        if (tasks.isEmpty()) {
+            return results;
+        }
+        var executor = Executors.newFixedThreadPool(Math.min(workers, tasks.size()));
+        try {
+            for (Future<T> result : executor.invokeAll(PhaseInstrumentation.measured(tasks))) {
+                try {
+                    results.add(result.get());
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
+    private ServiceScan scan(ComponentSources.Service service, List<String> suffixes, Properties hashIndex)
+            throws Exception {
+        var key = new StringBuilder(CACHE_FORMAT).append('\n').append(service.getPackageName());
+        suffixes.forEach(suffix -> key.append('\n').append(suffix));
+        for (Path jar : service.getJars()) {
+            key.append('\n').append(hashIndex.getProperty(jar.toString()).split(" ")[1]);
+        }
+        var cacheFile = cacheDirectory.resolve(Fingerprints.sha256(key.toString().getBytes(StandardCharsets.UTF_8))
+                + ".json");
+        if (Files.isRegularFile(cacheFile)) {
+            try (Reader reader = Files.newBufferedReader(cacheFile, StandardCharsets.UTF_8)) {
+                return new ServiceScan(service, cacheFile, objectMapper.readTree(reader), true);
+            }
+        }
+        var result = findComponents(service, suffixes);
+        var temporary = Files.createTempFile(cacheDirectory, cacheFile.getFileName().toString(), ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+                objectMapper.writeValue(writer, result);
+            }
+            Files.move(temporary, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        return new ServiceScan(service, cacheFile, result, false);
+    }
+
+    /**
+     * Runs structurizr-analysis over the jars of one service, in a workspace of its own, and returns the components
+     * and the dependencies between them. The jars share a class loader, which is closed when the scan is done.
+     */
+    private JsonNode findComponents(ComponentSources.Service service, List<String> suffixes) throws Exception {
+        var container = new Workspace(service.getContainer(), "")
+                .getModel().addSoftwareSystem("Scan", "").addContainer("Scan", "", "");
+        var matchers = suffixes.stream()
+                .map(suffix -> new NameSuffixTypeMatcher(suffix, null, null))
+                .toArray(NameSuffixTypeMatcher[]::new);
+        var annotations = new StructurizrAnnotationsComponentFinderStrategy();
+        var bySuffix = new TypeMatcherComponentFinderStrategy(matchers);
+        annotations.setDuplicateComponentStrategy(new IgnoreDuplicateComponentStrategy());
+        bySuffix.setDuplicateComponentStrategy(new IgnoreDuplicateComponentStrategy());
+        var componentFinder = new ComponentFinder(container, service.getPackageName(), new ComponentFinderStrategy[]{
+                annotations, bySuffix});
+        var urls = new URL[service.getJars().size()];
+        for (int i = 0; i < urls.length; i++) {
+            urls[i] = service.getJars().get(i).toUri().toURL();
+        }
+        try (var classLoader = new URLClassLoader(urls, ComponentScanner.class.getClassLoader())) {
+            componentFinder.setUrlClassLoader(classLoader);
+            componentFinder.findComponents();
+        }
+
+        var result = objectMapper.createObjectNode();
+        var components = result.putArray("components");
+        container.getComponents().stream()
+                .sorted(Comparator.comparing(Component::getName))
+                .forEach(component -> {
+                    var node = components.addObject();
+                    node.put("name", component.getName());
+                    putIfPresent(node, "type", nonNull(component.getType()) ? component.getType().getType() : null);
+                    putIfPresent(node, "description", component.getDescription());
+                    putIfPresent(node, "technology", component.getTechnology());
+                    var uses = node.putArray("uses");
+                    component.getRelationships().stream()
+                            .filter(relationship -> relationship.getDestination() instanceof Component)
+                            .sorted(Comparator.comparing((Relationship relationship) ->
+                                    relationship.getDestination().getName()))
+                            .forEach(relationship -> {
+                                var dependency = uses.addObject();
+                                dependency.put("component", relationship.getDestination().getName());
+                                putIfPresent(dependency, "description", relationship.getDescription());
+                                putIfPresent(dependency, "technology", relationship.getTechnology());
+                            });
+                });
+        return result;
+    }
+
+    private static int addComponents(Container container, JsonNode result) {
+        int added = 0;
+        for (JsonNode node : result.path("components")) {
+            var name = node.path("name").asText();
+            if (isNull(container.getComponentWithName(name))) {
+                var component = container.addComponent(name, node.path("description").asText(""),
+                        node.path("technology").asText(""));
+                if (node.hasNonNull("type")) {
+                    component.setType(node.get("type").asText());
+                }
+                added++;
+            }
+        }
+        return added;
+    }
+
+    private static int addDependencies(Container container, JsonNode result) {
+        int added = 0;
+        for (JsonNode node : result.path("components")) {
+            var source = container.getComponentWithName(node.path("name").asText());
+            for (JsonNode dependency : node.path("uses")) {
+                var destination = container.getComponentWithName(dependency.path("component").asText());
+                var description = dependency.path("description").asText("");
+                if (nonNull(destination) && !source.hasEfferentRelationshipWith(destination, description)) {
+                    source.uses(destination, description, dependency.path("technology").asText(null));
+                    added++;
+                }
+            }
+        }
+        return added;
+    }
+
+    private static void putIfPresent(ObjectNode node, String field, String value) {
+        if (nonNull(value) && !value.isEmpty()) {
+            node.put(field, value);
+        }
+    }
+
+    private static String stampOf(Path jar) throws IOException {
+        return Files.size(jar) + ":" + Files.getLastModifiedTime(jar).toMillis();
+    }
+
+    /**
+     * Returns the SHA-256 of {@code jar}, from {@code hashIndex} when the jar has the size and modification time it
+     * had when it was hashed.
+     */
+    private static String hashOf(Path jar, Properties hashIndex) throws IOException {
+        var indexed = hashIndex.getProperty(jar.toString(), "").split(" ");
+        if (indexed.length == 2 && stampOf(jar).equals(indexed[0])) {
+            return indexed[1];
+        }
+        return hashOf(jar);
+    }
+
+    private static String hashOf(Path jar) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        var buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        try (var channel = FileChannel.open(jar, StandardOpenOption.READ)) {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return Fingerprints.hex(digest.digest());
+    }
+
+    /**
+     * Deletes the cached results other than {@code used}, those of services or jars that are gone or have changed.
+     */
+    private void prune(Set<Path> used) throws IOException {
+        try (var files = Files.list(cacheDirectory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (file.getFileName().toString().matches(CACHE_FILE_PATTERN) && !used.contains(file)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private Properties loadHashIndex() throws IOException {
+        var hashIndex = new Properties();
+        var file = cacheDirectory.resolve(HASH_INDEX);
+        if (Files.isRegularFile(file)) {
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                hashIndex.load(reader);
+            }
+        }
+        return hashIndex;
+    }
+
+    private void storeHashIndex(Properties hashIndex) throws IOException {
+        var file = cacheDirectory.resolve(HASH_INDEX);
+        var temporary = Files.createTempFile(cacheDirectory, HASH_INDEX, ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            hashIndex.store(writer, "size:modified sha-256 of the scanned jars");
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Container containerOf(ElementRegistry registry, ComponentSources.Service service) {
+        var container = registry.getElement(service.getContainer());
+        if (!(container instanceof Container)) {
+            throw new IllegalArgumentException("\"" + service.getContainer() + "\" is not a container");
+        }
+        return (Container) container;
+    }
+
+    private static final class ServiceScan {
+
+        private final ComponentSources.Service service;
+        private final Path cacheFile;
+        private final JsonNode result;
+        private final boolean cached;
+
+        private ServiceScan(ComponentSources.Service service, Path cacheFile, JsonNode result, boolean cached) {
+            this.service = service;
+            this.cacheFile = cacheFile;
+            this.result = result;
+            this.cached = cached;
+        }
+    }
+
+    /**
+     * The components found in the jars of the services, which can be added to the containers of any model that has
+     * them. Adding only reads the scan results, so several models can be given the components at the same time.
+     */
+    public static final class Components {
+
+        private final List<ServiceScan> scans;
+        private final int jars;
+
+        private Components(List<ServiceScan> scans, int jars) {
+            this.scans = List.copyOf(scans);
+            this.jars = jars;
+        }
+
+        /**
+         * Adds the components, and the dependencies between them, to the containers of {@code registry} named by the
+         * services.
+         */
+        public Summary addTo(ElementRegistry registry) {
+            var summary = new Summary();
+            summary.services = scans.size();
+            summary.jars = jars;
+            for (ServiceScan scan : scans) {
+                var container = containerOf(registry, scan.service);
+                summary.cached += scan.cached ? 1 : 0;
+                summary.components += addComponents(container, scan.result);
+                summary.dependencies += addDependencies(container, scan.result);
+            }
+            return summary;
+        }
+    }
+
+    /**
+     * The number of services and jars read, how many of the services came from the cache, and the components and
+     * dependencies added.
+     */
+    public static final class Summary {
+
+        private int services;
+        private int jars;
+        private int cached;
+        private int components;
+        private int dependencies;
+
+        public int getServices() {
+            return services;
+        }
+
+        public int getJars() {
+            return jars;
+        }
+
+        public int getCached() {
+            return cached;
+        }
+
+        public int getComponents() {
+            return components;
+        }
+
+        public int getDependencies() {
+            return dependencies;
+        }
+
+        @Override
+        public String toString() {
+            return "Scanned " + (services - cached) + " of " + services + " services (" + jars + " jars), " + cached
+                    + " from the cache, and added " + components + " components with " + dependencies
+                    + " dependencies";
+        }
+    }
+}
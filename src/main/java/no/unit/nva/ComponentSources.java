@@ -0,0 +1,113 @@
+package no.unit.nva;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The jar files to scan for components, per container: the package to scan and the jars, or directories of jars,
+ * relative to the file. A service without any jar file is an error, as its container would silently get no
+ * components. Besides classes annotated with {@code @Component}, classes whose names end in one of the
+ * {@code suffixes} (by default {@value #DEFAULT_SUFFIX}) become components.
+ */
+public final class ComponentSources {
+
+    private static final String DEFAULT_SUFFIX = "Handler";
+
+    private final List<String> suffixes;
+    private final List<Service> services;
+
+    public ComponentSources(List<String> suffixes, List<Service> services) {
+        this.suffixes = List.copyOf(suffixes);
+        this.services = List.copyOf(services);
+    }
+
+    public static ComponentSources load(Path file) throws IOException {
+        var root = new ObjectMapper(new YAMLFactory()).readTree(file.toFile());
+        var suffixes = new ArrayList<String>();
+        root.path("suffixes").forEach(suffix -> suffixes.add(suffix.asText()));
+        if (suffixes.isEmpty()) {
+            suffixes.add(DEFAULT_SUFFIX);
+        }
+        var services = new ArrayList<Service>();
+        for (JsonNode service : root.path("services")) {
+            var container = required(service, "container", file);
+            var jars = new ArrayList<Path>();
+            for (JsonNode jar : service.path("jars")) {
+                jars.addAll(jarsAt(file.toAbsolutePath().resolveSibling(jar.asText()).normalize()));
+            }
+            if (jars.isEmpty()) {
+                throw new IOException("The service \"" + container + "\" in " + file + " has no jar files in "
+                        + service.path("jars"));
+            }
+            services.add(new Service(container, required(service, "package", file),
+                    jars.stream().distinct().sorted().collect(Collectors.toList())));
+        }
+        return new ComponentSources(suffixes, services);
+    }
+
+    public List<String> getSuffixes() {
+        return suffixes;
+    }
+
+    public List<Service> getServices() {
+        return services;
+    }
+
+    private static List<Path> jarsAt(Path path) throws IOException {
+        if (!Files.isDirectory(path)) {
+            if (!Files.isRegularFile(path)) {
+                throw new IOException("No jar file or directory " + path + " exists");
+            }
+            return List.of(path);
+        }
+        try (var files = Files.list(path)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".jar"))
+                    .filter(Files::isRegularFile)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static String required(JsonNode node, String field, Path file) throws IOException {
+        var value = node.path(field).textValue();
+        if (value == null) {
+            throw new IOException("A service in " + file + " has no \"" + field + "\"");
+        }
+        return value;
+    }
+
+    /**
+     * A container and the jars that implement it.
+     */
+    public static final class Service {
+
+        private final String container;
+        private final String packageName;
+        private final List<Path> jars;
+
+        public Service(String container, String packageName, List<Path> jars) {
+            this.container = container;
+            this.packageName = packageName;
+            this.jars = List.copyOf(jars);
+        }
+
+        public String getContainer() {
+            return container;
+        }
+
+        public String getPackageName() {
+            return packageName;
+        }
+
+        public List<Path> getJars() {
+            return jars;
+        }
+    }
+}
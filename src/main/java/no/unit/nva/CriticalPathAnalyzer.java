@@ -0,0 +1,418 @@
+package no.unit.nva;
+
+import com.structurizr.model.Container;
+import com.structurizr.model.Element;
+import com.structurizr.model.Person;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Latency and blast-radius analysis over a {@link DependencyGraph}. A chain is a synchronous path from the element a
+ * person calls through the gateway to a storage container; its latency is the sum of the {@value #LATENCY_BUDGET}
+ * properties, in milliseconds, of the elements on it, and it is over the SLO when that sum exceeds it. Each path is
+ * listed once with all the people who enter it. Asynchronous relationships end a chain, since the caller does not wait
+ * for them. Chains are enumerated depth-first, pruned to elements that can still reach the gateway or a storage
+ * container, and the enumeration stops after a maximum number of chains.
+ *
+ * <p>The transitive fan-out of an element is the number of elements it depends on directly or indirectly, and its
+ * fan-in the number of elements that depend on it, over all relationships. Both are computed on the condensation of
+ * the graph into strongly connected components, merging the reachable sets as bitsets in reverse topological order.
+ */
+public class CriticalPathAnalyzer {
+
+    public static final String LATENCY_BUDGET = "latency.budget";
+
+    private final DependencyGraph graph;
+    private final int sloMillis;
+    private final int[] budgets;
+
+    public CriticalPathAnalyzer(DependencyGraph graph, int sloMillis) {
+        this.graph = graph;
+        this.sloMillis = sloMillis;
+        this.budgets = new int[graph.size()];
+        for (int node = 0; node < graph.size(); node++) {
+            budgets[node] = budgetOf(graph.getElement(node));
+        }
+    }
+
+    /**
+     * Returns the synchronous chains from the people through the gateway to an element accepted by
+     * {@code isStorage}, at most {@code maxChains} of them. People who enter the same path are listed on one chain.
+     */
+    public Chains chains(Element gateway, Predicate<Element> isStorage, int maxChains) {
+        int gatewayNode = graph.indexOf(gateway);
+        if (gatewayNode < 0) {
+            throw new IllegalArgumentException("The gateway " + gateway.getCanonicalName() + " is not in the model");
+        }
+        var storage = new boolean[graph.size()];
+        for (int node = 0; node < graph.size(); node++) {
+            storage[node] = node != gatewayNode && isStorage.test(graph.getElement(node));
+        }
+        var reversed = graph.reversed();
+        var reachesGateway = synchronousAncestors(reversed, new int[]{gatewayNode});
+        var reachesStorage = synchronousAncestors(reversed, nodesOf(storage));
+        var people = peopleByEntry(reachesGateway);
+
+        var chains = new ArrayList<Chain>();
+        boolean truncated = false;
+        var path = new int[graph.size()];
+        var cursors = new int[graph.size()];
+        var onPath = new boolean[graph.size()];
+        for (int entry = 0; entry < graph.size() && !truncated; entry++) {
+            if (isNull(people[entry])) {
+                continue;
+            }
+            int depth = 0;
+            int latency = budgets[entry];
+            int gatewayDepth = entry == gatewayNode ? 0 : -1;
+            path[0] = entry;
+            cursors[0] = graph.start(entry);
+            onPath[entry] = true;
+            while (depth >= 0) {
+                int node = path[depth];
+                int next = nextStep(node, cursors, depth, onPath, gatewayDepth >= 0 ? reachesStorage : reachesGateway);
+                if (next < 0) {
+                    onPath[node] = false;
+                    latency -= budgets[node];
+                    if (gatewayDepth == depth) {
+                        gatewayDepth = -1;
+                    }
+                    depth--;
+                    continue;
+                }
+                if (gatewayDepth >= 0 && storage[next]) {
+                    if (chains.size() == maxChains) {
+                        truncated = true;
+                        break;
+                    }
+                    path[depth + 1] = next;
+                    chains.add(chainOf(people[entry], path, depth + 2, latency + budgets[next]));
+                    continue;
+                }
+                depth++;
+                path[depth] = next;
+                cursors[depth] = graph.start(next);
+                onPath[next] = true;
+                latency += budgets[next];
+                if (next == gatewayNode) {
+                    gatewayDepth = depth;
+                }
+            }
+            for (int i = 0; i <= depth; i++) {
+                onPath[path[i]] = false;
+            }
+        }
+        return new Chains(chains, truncated);
+    }
+
+    /**
+     * Returns the containers with their transitive fan-in and fan-out, the largest sum first.
+     */
+    public List<Hotspot> hotspots() {
+        var fanIn = reachableCounts(graph.reversed());
+        var fanOut = reachableCounts(graph);
+        var hotspots = new ArrayList<Hotspot>();
+        for (int node = 0; node < graph.size(); node++) {
+            if (graph.getElement(node) instanceof Container) {
+                hotspots.add(new Hotspot(graph.getElement(node), fanIn[node], fanOut[node]));
+            }
+        }
+        hotspots.sort(Comparator.comparingInt((Hotspot hotspot) -> hotspot.getFanIn() + hotspot.getFanOut())
+                .reversed());
+        return hotspots;
+    }
+
+    private int nextStep(int node, int[] cursors, int depth, boolean[] onPath, boolean[] allowed) {
+        while (cursors[depth] < graph.end(node)) {
+            int edge = cursors[depth]++;
+            int target = graph.target(edge);
+            if (!graph.isAsynchronous(edge) && !onPath[target] && allowed[target]) {
+                return target;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns, for every element a person calls synchronously on the way to the gateway, the people who call it, and
+     * {@code null} for the other elements.
+     */
+    private List<Element>[] peopleByEntry(boolean[] reachesGateway) {
+        @SuppressWarnings("unchecked")
+        List<Element>[] people = new List[graph.size()];
+        for (int person = 0; person < graph.size(); person++) {
+            if (!(graph.getElement(person) instanceof Person) || !reachesGateway[person]) {
+                continue;
+            }
+            for (int edge = graph.start(person); edge < graph.end(person); edge++) {
+                int entry = graph.target(edge);
+                if (graph.isAsynchronous(edge) || !reachesGateway[entry] || graph.getElement(entry) instanceof Person) {
+                    continue;
+                }
+                if (isNull(people[entry])) {
+                    people[entry] = new ArrayList<>();
+                }
+                if (!people[entry].contains(graph.getElement(person))) {
+                    people[entry].add(graph.getElement(person));
+                }
+            }
+        }
+        return people;
+    }
+
+    private Chain chainOf(List<Element> people, int[] path, int length, int latency) {
+        var elements = new ArrayList<Element>(length);
+        for (int i = 0; i < length; i++) {
+            elements.add(graph.getElement(path[i]));
+        }
+        return new Chain(people, elements, latency, latency > sloMillis);
+    }
+
+    private static int[] nodesOf(boolean[] selected) {
+        int count = 0;
+        for (boolean value : selected) {
+            count += value ? 1 : 0;
+        }
+        var nodes = new int[count];
+        for (int node = 0, i = 0; node < selected.length; node++) {
+            if (selected[node]) {
+                nodes[i++] = node;
+            }
+        }
+        return nodes;
+    }
+
+    private static boolean[] synchronousAncestors(DependencyGraph reversed, int[] roots) {
+        var reached = new boolean[reversed.size()];
+        var queue = new int[reversed.size()];
+        int tail = 0;
+        for (int root : roots) {
+            reached[root] = true;
+            queue[tail++] = root;
+        }
+        for (int head = 0; head < tail; head++) {
+            int node = queue[head];
+            for (int edge = reversed.start(node); edge < reversed.end(node); edge++) {
+                int target = reversed.target(edge);
+                if (!reversed.isAsynchronous(edge) && !reached[target]) {
+                    reached[target] = true;
+                    queue[tail++] = target;
+                }
+            }
+        }
+        return reached;
+    }
+
+    private static int[] reachableCounts(DependencyGraph graph) {
+        int size = graph.size();
+        var component = stronglyConnectedComponents(graph);
+        int components = 0;
+        for (int value : component) {
+            components = Math.max(components, value + 1);
+        }
+        var members = new int[components + 1];
+        for (int node = 0; node < size; node++) {
+            members[component[node] + 1]++;
+        }
+        for (int i = 0; i < components; i++) {
+            members[i + 1] += members[i];
+        }
+        var byComponent = new int[size];
+        var next = Arrays.copyOf(members, components);
+        for (int node = 0; node < size; node++) {
+            byComponent[next[component[node]]++] = node;
+        }
+
+        int words = (size + 63) >>> 6;
+        var reachable = new long[components][];
+        var counts = new int[components];
+        for (int c = 0; c < components; c++) {
+            var bits = new long[words];
+            for (int i = members[c]; i < members[c + 1]; i++) {
+                int node = byComponent[i];
+                bits[node >>> 6] |= 1L << node;
+                for (int edge = graph.start(node); edge < graph.end(node); edge++) {
+                    int target = component[graph.target(edge)];
+                    if (target != c) {
+                        var other = reachable[target];
+                        for (int w = 0; w < words; w++) {
+                            bits[w] |= other[w];
+                        }
+                    }
+                }
+            }
+            reachable[c] = bits;
+            for (long word : bits) {
+                counts[c] += Long.bitCount(word);
+            }
+        }
+        var result = new int[size];
+        for (int node = 0; node < size; node++) {
+            result[node] = counts[component[node]] - 1;
+        }
+        return result;
+    }
+
+    /**
+     * Tarjan's algorithm without recursion. Components are numbered in the order they are completed, so every edge
+     * between components leads to one with a lower number.
+     */
+    private static int[] stronglyConnectedComponents(DependencyGraph graph) {
+        int size = graph.size();
+        var index = new int[size];
+        Arrays.fill(index, -1);
+        var low = new int[size];
+        var component = new int[size];
+        var onStack = new boolean[size];
+        var stack = new int[size];
+        var callStack = new int[size];
+        var cursors = new int[size];
+        int stackSize = 0;
+        int counter = 0;
+        int components = 0;
+        for (int root = 0; root < size; root++) {
+            if (index[root] >= 0) {
+                continue;
+            }
+            int depth = 0;
+            index[root] = low[root] = counter++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+            callStack[0] = root;
+            cursors[0] = graph.start(root);
+            while (depth >= 0) {
+                int node = callStack[depth];
+                if (cursors[depth] < graph.end(node)) {
+                    int target = graph.target(cursors[depth]++);
+                    if (index[target] < 0) {
+                        index[target] = low[target] = counter++;
+                        stack[stackSize++] = target;
+                        onStack[target] = true;
+                        depth++;
+                        callStack[depth] = target;
+                        cursors[depth] = graph.start(target);
+                    } else if (onStack[target]) {
+                        low[node] = Math.min(low[node], index[target]);
+                    }
+                    continue;
+                }
+                if (low[node] == index[node]) {
+                    int member;
+                    do {
+                        member = stack[--stackSize];
+                        onStack[member] = false;
+                        component[member] = components;
+                    } while (member != node);
+                    components++;
+                }
+                depth--;
+                if (depth >= 0) {
+                    low[callStack[depth]] = Math.min(low[callStack[depth]], low[node]);
+                }
+            }
+        }
+        return component;
+    }
+
+    private static int budgetOf(Element element) {
+        var budget = element.getProperties().get(LATENCY_BUDGET);
+        if (isNull(budget)) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(budget.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("The " + LATENCY_BUDGET + " of " + element.getCanonicalName()
+                    + " is not a whole number of milliseconds: " + budget, e);
+        }
+    }
+
+    /**
+     * The chains found, and whether the enumeration stopped at the maximum before it had found all of them.
+     */
+    public static final class Chains {
+
+        private final List<Chain> chains;
+        private final boolean truncated;
+
+        private Chains(List<Chain> chains, boolean truncated) {
+            this.chains = chains;
+            this.truncated = truncated;
+        }
+
+        public List<Chain> getChains() {
+            return chains;
+        }
+
+        public boolean isTruncated() {
+            return truncated;
+        }
+    }
+
+    /**
+     * A synchronous path of elements, from the one the people call to the storage, with the sum of the latency
+     * budgets along it.
+     */
+    public static final class Chain {
+
+        private final List<Element> people;
+        private final List<Element> elements;
+        private final int latencyMillis;
+        private final boolean overSlo;
+
+        private Chain(List<Element> people, List<Element> elements, int latencyMillis, boolean overSlo) {
+            this.people = Collections.unmodifiableList(people);
+            this.elements = Collections.unmodifiableList(elements);
+            this.latencyMillis = latencyMillis;
+            this.overSlo = overSlo;
+        }
+
+        public List<Element> getPeople() {
+            return people;
+        }
+
+        public List<Element> getElements() {
+            return elements;
+        }
+
+        public int getLatencyMillis() {
+            return latencyMillis;
+        }
+
+        public boolean isOverSlo() {
+            return overSlo;
+        }
+    }
+
+    public static final class Hotspot {
+
+        private final Element element;
+        private final int fanIn;
+        private final int fanOut;
+
+        private Hotspot(Element element, int fanIn, int fanOut) {
+            this.element = element;
+            this.fanIn = fanIn;
+            this.fanOut = fanOut;
+        }
+
+        public Element getElement() {
+            return element;
+        }
+
+        public int getFanIn() {
+            return fanIn;
+        }
+
+        public int getFanOut() {
+            return fanOut;
+        }
+    }
+}
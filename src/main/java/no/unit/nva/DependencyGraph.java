@@ -0,0 +1,198 @@
+package no.unit.nva;
+
+import com.structurizr.model.Container;
+import com.structurizr.model.Element;
+import com.structurizr.model.InteractionStyle;
+import com.structurizr.model.Model;
+import com.structurizr.model.Relationship;
+import com.structurizr.model.SoftwareSystem;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * The relationships of a model as a compressed sparse row adjacency over primitive arrays: element {@code i} has the
+ * outgoing edges {@code start(i)} to {@code end(i) - 1}. A relationship to a software system that has containers
+ * leads to its entry containers instead, the ones no other container of the system uses, so that a person using
+ * NVA reaches the single page app rather than stopping at the system boundary. Implied relationships are left out, and
+ * parallel relationships between the same elements become one edge, which is asynchronous only when all of them are.
+ */
+public final class DependencyGraph {
+
+    private final Element[] elements;
+    private final Map<Element, Integer> indices;
+    private final int[] offsets;
+    private final int[] targets;
+    private final boolean[] asynchronous;
+
+    private DependencyGraph(Element[] elements, Map<Element, Integer> indices, int[] offsets, int[] targets,
+                            boolean[] asynchronous) {
+        this.elements = elements;
+        this.indices = indices;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.asynchronous = asynchronous;
+    }
+
+    public static DependencyGraph of(Model model) {
+        var canonicalNames = new HashMap<Element, String>();
+        model.getElements().forEach(element -> canonicalNames.put(element, element.getCanonicalName()));
+        var elements = model.getElements().stream()
+                .sorted(Comparator.comparing(canonicalNames::get))
+                .toArray(Element[]::new);
+        var indices = new HashMap<Element, Integer>();
+        for (int i = 0; i < elements.length; i++) {
+            indices.put(elements[i], i);
+        }
+        var relationships = model.getRelationships().stream()
+                .filter(relationship -> isNull(relationship.getLinkedRelationshipId()))
+                .toArray(Relationship[]::new);
+        var entries = entryContainers(model, relationships);
+
+        var offsets = new int[elements.length + 1];
+        for (Relationship relationship : relationships) {
+            offsets[indices.get(relationship.getSource()) + 1] += destinationsOf(relationship, entries).size();
+        }
+        for (int i = 0; i < elements.length; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        var edges = new long[offsets[elements.length]];
+        var next = Arrays.copyOf(offsets, elements.length);
+        for (Relationship relationship : relationships) {
+            int source = indices.get(relationship.getSource());
+            int asynchronous = relationship.getInteractionStyle() == InteractionStyle.Asynchronous ? 1 : 0;
+            for (Element destination : destinationsOf(relationship, entries)) {
+                edges[next[source]++] = (long) indices.get(destination) << 1 | asynchronous;
+            }
+        }
+        return compact(elements, indices, offsets, edges);
+    }
+
+    public int size() {
+        return elements.length;
+    }
+
+    public Element getElement(int node) {
+        return elements[node];
+    }
+
+    /**
+     * Returns the node of an element, or -1 when the element is not in the model.
+     */
+    public int indexOf(Element element) {
+        var index = indices.get(element);
+        return isNull(index) ? -1 : index;
+    }
+
+    public int edges() {
+        return targets.length;
+    }
+
+    public int start(int node) {
+        return offsets[node];
+    }
+
+    public int end(int node) {
+        return offsets[node + 1];
+    }
+
+    public int target(int edge) {
+        return targets[edge];
+    }
+
+    public boolean isAsynchronous(int edge) {
+        return asynchronous[edge];
+    }
+
+    /**
+     * The same graph with every edge pointing the other way.
+     */
+    public DependencyGraph reversed() {
+        var counts = new int[elements.length + 1];
+        for (int target : targets) {
+            counts[target + 1]++;
+        }
+        for (int i = 0; i < elements.length; i++) {
+            counts[i + 1] += counts[i];
+        }
+        var reversedTargets = new int[targets.length];
+        var reversedAsynchronous = new boolean[targets.length];
+        var next = Arrays.copyOf(counts, elements.length);
+        for (int node = 0; node < elements.length; node++) {
+            for (int edge = offsets[node]; edge < offsets[node + 1]; edge++) {
+                int position = next[targets[edge]]++;
+                reversedTargets[position] = node;
+                reversedAsynchronous[position] = asynchronous[edge];
+            }
+        }
+        return new DependencyGraph(elements, indices, counts, reversedTargets, reversedAsynchronous);
+    }
+
+    private static List<? extends Element> destinationsOf(Relationship relationship,
+                                                          Map<SoftwareSystem, List<Container>> entries) {
+        var destination = relationship.getDestination();
+        var source = relationship.getSource();
+        if (destination instanceof SoftwareSystem && source.getParent() != destination) {
+            var containers = entries.get(destination);
+            if (nonNull(containers) && !containers.isEmpty()) {
+                return containers;
+            }
+        }
+        return List.of(destination);
+    }
+
+    private static Map<SoftwareSystem, List<Container>> entryContainers(Model model, Relationship[] relationships) {
+        var used = new HashSet<Element>();
+        for (Relationship relationship : relationships) {
+            var destination = relationship.getDestination();
+            if (destination instanceof Container && relationship.getSource() instanceof Container
+                    && relationship.getSource().getParent() == destination.getParent()) {
+                used.add(destination);
+            }
+        }
+        var entries = new HashMap<SoftwareSystem, List<Container>>();
+        for (SoftwareSystem softwareSystem : model.getSoftwareSystems()) {
+            entries.put(softwareSystem, softwareSystem.getContainers().stream()
+                    .filter(container -> !used.contains(container))
+                    .collect(Collectors.toList()));
+        }
+        return entries;
+    }
+
+    private static DependencyGraph compact(Element[] elements, Map<Element, Integer> indices, int[] offsets,
+                                           long[] edges) {
+        var compactOffsets = new int[elements.length + 1];
+        var targets = new int[edges.length];
+        var asynchronous = new boolean[edges.length];
+        int size = 0;
+        for (int node = 0; node < elements.length; node++) {
+            compactOffsets[node] = size;
+            Arrays.sort(edges, offsets[node], offsets[node + 1]);
+            for (int edge = offsets[node]; edge < offsets[node + 1]; edge++) {
+                int target = (int) (edges[edge] >>> 1);
+                boolean isAsynchronous = (edges[edge] & 1) == 1;
+                if (target == node) {
+                    continue;
+                }
+                if (size > compactOffsets[node] && targets[size - 1] == target) {
+                    asynchronous[size - 1] &= isAsynchronous;
+                    continue;
+                }
+                targets[size] = target;
+                asynchronous[size] = isAsynchronous;
+                size++;
+            }
+        }
+        compactOffsets[elements.length] = size;
+        return new DependencyGraph(elements, indices, compactOffsets, Arrays.copyOf(targets, size),
+                Arrays.copyOf(asynchronous, size));
+    }
+}
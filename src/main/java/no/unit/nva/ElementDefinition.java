@@ -0,0 +1,64 @@
+package no.unit.nva;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable declaration of a person, software system or container, as read from a model fragment.
+ */
+public final class ElementDefinition {
+
+    public enum Kind {
+        SOFTWARE_SYSTEM, PERSON, CONTAINER
+    }
+
+    private final Kind kind;
+    private final String parent;
+    private final String name;
+    private final String description;
+    private final String technology;
+    private final List<String> tags;
+    private final Map<String, String> properties;
+
+    public ElementDefinition(Kind kind, String parent, String name, String description, String technology,
+                             List<String> tags, Map<String, String> properties) {
+        this.kind = kind;
+        this.parent = parent;
+        this.name = name;
+        this.description = description;
+        this.technology = technology;
+        this.tags = List.copyOf(tags);
+        this.properties = Map.copyOf(properties);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * The name of the software system a container belongs to, or null for people and software systems.
+     */
+    public String getParent() {
+        return parent;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getTechnology() {
+        return technology;
+    }
+
+    public List<String> getTags() {
+        return tags;
+    }
+
+    public Map<String, String> getProperties() {
+        return properties;
+    }
+}
@@ -0,0 +1,141 @@
+package no.unit.nva;
+
+import com.structurizr.model.Container;
+import com.structurizr.model.Element;
+import com.structurizr.model.Model;
+import com.structurizr.model.Person;
+import com.structurizr.model.SoftwareSystem;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Indexes the elements of a {@link Model} by name and by type as they are added, so that looking up an element
+ * while wiring relationships is a hash lookup rather than a scan of the model. Lookups of missing names and
+ * additions of duplicate names fail immediately.
+ */
+public class ElementRegistry {
+
+    private final Model model;
+    private final Map<String, SoftwareSystem> softwareSystems = new HashMap<>();
+    private final Map<String, Person> people = new HashMap<>();
+    private final Map<SoftwareSystem, Map<String, Container>> containers = new HashMap<>();
+    private final Map<Class<? extends Element>, List<Element>> elementsByType = new HashMap<>();
+    private final Map<String, Element> elementsByName = new HashMap<>();
+    private final Set<String> ambiguousNames = new HashSet<>();
+
+    public ElementRegistry(Model model) {
+        this.model = model;
+        for (Element element : model.getElements()) {
+            index(element);
+        }
+    }
+
+    public Model getModel() {
+        return model;
+    }
+
+    public SoftwareSystem addSoftwareSystem(String name, String description) {
+        requireUnique(softwareSystems, name, "software system");
+        var softwareSystem = model.addSoftwareSystem(name, description);
+        index(softwareSystem);
+        return softwareSystem;
+    }
+
+    public Person addPerson(String name, String description) {
+        requireUnique(people, name, "person");
+        var person = model.addPerson(name, description);
+        index(person);
+        return person;
+    }
+
+    public Container addContainer(SoftwareSystem softwareSystem, String name, String description, String technology) {
+        requireUnique(containersOf(softwareSystem), name, "container in " + softwareSystem.getName());
+        var container = softwareSystem.addContainer(name, description, technology);
+        index(container);
+        return container;
+    }
+
+    public SoftwareSystem getSoftwareSystem(String name) {
+        return require(softwareSystems, name, "software system");
+    }
+
+    public Person getPerson(String name) {
+        return require(people, name, "person");
+    }
+
+    public Container getContainer(SoftwareSystem softwareSystem, String name) {
+        return require(containersOf(softwareSystem), name, "container in " + softwareSystem.getName());
+    }
+
+    /**
+     * Resolves a reference to any element: either a name that is unique in the model, or
+     * {@code Software System/Container} for a container whose name is not unique.
+     */
+    public Element getElement(String reference) {
+        if (ambiguousNames.contains(reference)) {
+            throw new IllegalArgumentException("The name \"" + reference + "\" is used by more than one element, "
+                    + "qualify it as \"Software System/Container\"");
+        }
+        var element = elementsByName.get(reference);
+        if (nonNull(element)) {
+            return element;
+        }
+        for (int separator = reference.indexOf('/'); separator > 0; separator = reference.indexOf('/', separator + 1)) {
+            var softwareSystem = softwareSystems.get(reference.substring(0, separator));
+            if (nonNull(softwareSystem)) {
+                var container = containersOf(softwareSystem).get(reference.substring(separator + 1));
+                if (nonNull(container)) {
+                    return container;
+                }
+            }
+        }
+        throw new IllegalArgumentException("No element named \"" + reference + "\" exists");
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Element> List<T> getElementsOfType(Class<T> type) {
+        return Collections.unmodifiableList((List<T>) elementsByType.getOrDefault(type, Collections.emptyList()));
+    }
+
+    private void index(Element element) {
+        if (element instanceof SoftwareSystem) {
+            softwareSystems.put(element.getName(), (SoftwareSystem) element);
+        } else if (element instanceof Person) {
+            people.put(element.getName(), (Person) element);
+        } else if (element instanceof Container) {
+            var container = (Container) element;
+            containersOf(container.getSoftwareSystem()).put(container.getName(), container);
+        }
+        elementsByType.computeIfAbsent(element.getClass(), type -> new ArrayList<>()).add(element);
+        if (nonNull(elementsByName.putIfAbsent(element.getName(), element))) {
+            ambiguousNames.add(element.getName());
+        }
+    }
+
+    private Map<String, Container> containersOf(SoftwareSystem softwareSystem) {
+        return containers.computeIfAbsent(softwareSystem, key -> new HashMap<>());
+    }
+
+    private static void requireUnique(Map<String, ? extends Element> index, String name, String kind) {
+        if (index.containsKey(name)) {
+            throw new IllegalArgumentException("A " + kind + " named \"" + name + "\" already exists");
+        }
+    }
+
+    private static <T extends Element> T require(Map<String, T> index, String name, String kind) {
+        var element = index.get(name);
+        if (isNull(element)) {
+            throw new IllegalArgumentException("No " + kind + " named \"" + name + "\" exists");
+        }
+        return element;
+    }
+}
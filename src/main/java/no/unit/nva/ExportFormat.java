@@ -0,0 +1,131 @@
+package no.unit.nva;
+
+import com.structurizr.Workspace;
+import com.structurizr.io.dot.DotWriter;
+import com.structurizr.io.ilograph.IlographWriter;
+import com.structurizr.io.mermaid.MermaidWriter;
+import com.structurizr.io.plantuml.StructurizrPlantUMLWriter;
+import com.structurizr.io.websequencediagrams.WebSequenceDiagramsWriter;
+import com.structurizr.view.View;
+
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Objects.isNull;
+
+/**
+ * The diagram formats the export stage can write. Each format names the files it produces for a workspace: formats
+ * whose Structurizr writer renders a single view produce one file per view, the others one file for the whole
+ * workspace.
+ */
+public enum ExportFormat {
+
+    PLANTUML("plantuml", ".puml") {
+        @Override
+        Map<String, Renderer> files(Workspace workspace, List<View> views) {
+            return perView(views, (view, writer) -> new StructurizrPlantUMLWriter().write(view, writer));
+        }
+    },
+    MERMAID("mermaid", ".mmd") {
+        @Override
+        Map<String, Renderer> files(Workspace workspace, List<View> views) {
+            return perView(views, (view, writer) -> new MermaidWriter().write(view, writer));
+        }
+    },
+    DOT("dot", ".dot") {
+        @Override
+        Map<String, Renderer> files(Workspace workspace, List<View> views) {
+            return wholeWorkspace(writer -> new DotWriter().write(workspace, writer));
+        }
+    },
+    ILOGRAPH("ilograph", ".yaml") {
+        @Override
+        Map<String, Renderer> files(Workspace workspace, List<View> views) {
+            return wholeWorkspace(writer -> new IlographWriter().write(workspace, writer));
+        }
+    },
+    WEBSEQUENCEDIAGRAMS("websequencediagrams", ".wsd") {
+        @Override
+        Map<String, Renderer> files(Workspace workspace, List<View> views) {
+            return workspace.getViews().getDynamicViews().isEmpty()
+                    ? Map.of()
+                    : wholeWorkspace(writer -> new WebSequenceDiagramsWriter().write(workspace, writer));
+        }
+    };
+
+    private static final String WORKSPACE_FILE = "workspace";
+
+    private final String formatName;
+    private final String extension;
+
+    ExportFormat(String formatName, String extension) {
+        this.formatName = formatName;
+        this.extension = extension;
+    }
+
+    public String getFormatName() {
+        return formatName;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Parses a comma separated list of format names; {@code null} or a blank list selects every format.
+     */
+    public static List<ExportFormat> parse(String formatNames) {
+        if (isNull(formatNames) || formatNames.isBlank()) {
+            return List.of(values());
+        }
+        var formats = new ArrayList<ExportFormat>();
+        for (String formatName : formatNames.split(",")) {
+            formats.add(forName(formatName.trim()));
+        }
+        return formats;
+    }
+
+    private static ExportFormat forName(String formatName) {
+        for (ExportFormat format : values()) {
+            if (format.formatName.equals(formatName)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown export format: " + formatName);
+    }
+
+    /**
+     * Returns the renderer of every file this format produces for {@code workspace}, by file name, in the order of
+     * {@code views}.
+     */
+    abstract Map<String, Renderer> files(Workspace workspace, List<View> views);
+
+    Map<String, Renderer> perView(List<View> views, ViewWriter viewWriter) {
+        var files = new LinkedHashMap<String, Renderer>();
+        for (View view : views) {
+            files.put(fileName(view.getKey()) + extension, writer -> viewWriter.write(view, writer));
+        }
+        return files;
+    }
+
+    Map<String, Renderer> wholeWorkspace(Renderer renderer) {
+        return Map.of(WORKSPACE_FILE + extension, renderer);
+    }
+
+    private static String fileName(String viewKey) {
+        return viewKey.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    interface Renderer {
+
+        void render(Writer writer) throws Exception;
+    }
+
+    interface ViewWriter {
+
+        void write(View view, Writer writer) throws Exception;
+    }
+}
@@ -0,0 +1,227 @@
+package no.unit.nva;
+
+import com.structurizr.Workspace;
+import com.structurizr.view.View;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * Renders the views of a workspace in every enabled format on a bounded worker pool, one file per view (or per
+ * workspace, for formats that render the whole workspace). Each file is streamed through a buffered channel into a
+ * temporary file while it is digested, and only replaces the existing file when the digests differ, so unchanged
+ * output keeps its timestamp and does not show up in diffs. Files left from earlier exports, of views that no longer
+ * exist or formats no longer enabled, are deleted.
+ */
+public class ExportStage {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path outputDirectory;
+    private final List<ExportFormat> formats;
+    private final int workers;
+
+    public ExportStage(Path outputDirectory, List<ExportFormat> formats, int workers) {
+        this.outputDirectory = outputDirectory;
+        this.formats = formats;
+        this.workers = workers;
+    }
+
+    /**
+     * Returns the files that were created, changed or deleted.
+     */
+    public List<Path> apply(Workspace workspace) throws Exception {
+        var exports = exportsOf(workspace);
+        var changed = new ArrayList<Path>();
+        if (!exports.isEmpty()) {
+            var executor = Executors.newFixedThreadPool(Math.min(workers, exports.size()));
+            try {
+                var results = new ArrayList<Future<Boolean>>();
+                for (Export export : exports) {
+                    results.add(executor.submit(PhaseInstrumentation.measured(() ->
+                            write(export.file, export.renderer))));
+                }
+                changed.addAll(mergeResults(exports, results));
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+        changed.addAll(prune(exports));
+        return changed;
+    }
+
+    private List<Export> exportsOf(Workspace workspace) {
+        var views = new ArrayList<View>(workspace.getViews().getViews());
+        views.sort(Comparator.comparing(View::getKey));
+        var exports = new ArrayList<Export>();
+        for (ExportFormat format : formats) {
+            var directory = outputDirectory.resolve(format.getFormatName());
+            format.files(workspace, views).forEach((fileName, renderer) ->
+                    exports.add(new Export(directory.resolve(fileName), renderer)));
+        }
+        return exports;
+    }
+
+    /**
+     * Deletes the files of every format that are not part of this export, such as the files of a view that has been
+     * removed or of a format that is no longer enabled. Only files with the extension of their format's directory are
+     * considered, so nothing else that happens to be in those directories is touched.
+     */
+    private List<Path> prune(List<Export> exports) throws IOException {
+        var current = new HashSet<Path>();
+        exports.forEach(export -> current.add(export.file));
+        var deleted = new ArrayList<Path>();
+        for (ExportFormat format : ExportFormat.values()) {
+            var directory = outputDirectory.resolve(format.getFormatName());
+            if (!Files.isDirectory(directory)) {
+                continue;
+            }
+            try (var files = Files.list(directory)) {
+                var stale = files.filter(Files::isRegularFile)
+                        .filter(file -> file.getFileName().toString().endsWith(format.getExtension()))
+                        .filter(file -> !current.contains(file))
+                        .sorted()
+                        .collect(Collectors.toList());
+                for (Path file : stale) {
+                    Files.deleteIfExists(file);
+                    deleted.add(file);
+                }
+            }
+        }
+        return deleted;
+    }
+
+    private static List<Path> mergeResults(List<Export> exports, List<Future<Boolean>> results) throws Exception {
+        var changed = new ArrayList<Path>();
+        Exception failure = null;
+        for (int i = 0; i < exports.size(); i++) {
+            var file = exports.get(i).file;
+            try {
+                if (results.get(i).get()) {
+                    changed.add(file);
+                }
+            } catch (ExecutionException e) {
+                var cause = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                if (failure == null) {
+                    failure = new ExportException("Could not export " + file, cause);
+                } else {
+                    failure.addSuppressed(cause);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return changed;
+    }
+
+    private static boolean write(Path file, ExportFormat.Renderer renderer) throws Exception {
+        Files.createDirectories(file.getParent());
+        var temporary = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            var digest = sha256();
+            try (var channel = FileChannel.open(temporary, StandardOpenOption.WRITE);
+                 var writer = new BufferedWriter(Channels.newWriter(new DigestingChannel(channel, digest),
+                         StandardCharsets.UTF_8), BUFFER_SIZE)) {
+                renderer.render(writer);
+            }
+            if (Files.isRegularFile(file) && Files.size(file) == Files.size(temporary)
+                    && Arrays.equals(digest.digest(), digestOf(file))) {
+                return false;
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static byte[] digestOf(Path file) throws IOException {
+        var digest = sha256();
+        var buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return digest.digest();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static final class Export {
+
+        private final Path file;
+        private final ExportFormat.Renderer renderer;
+
+        private Export(Path file, ExportFormat.Renderer renderer) {
+            this.file = file;
+            this.renderer = renderer;
+        }
+    }
+
+    private static final class DigestingChannel implements WritableByteChannel {
+
+        private final WritableByteChannel channel;
+        private final MessageDigest digest;
+
+        private DigestingChannel(WritableByteChannel channel, MessageDigest digest) {
+            this.channel = channel;
+            this.digest = digest;
+        }
+
+        @Override
+        public int write(ByteBuffer source) throws IOException {
+            var written = source.duplicate();
+            int count = channel.write(source);
+            written.limit(written.position() + count);
+            digest.update(written);
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    public static class ExportException extends Exception {
+
+        public ExportException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package no.unit.nva;
+
+import com.structurizr.Workspace;
+import com.structurizr.model.Component;
+import com.structurizr.model.Container;
+import com.structurizr.model.Element;
+import com.structurizr.model.Model;
+import com.structurizr.model.Person;
+import com.structurizr.model.Relationship;
+import com.structurizr.model.SoftwareSystem;
+import com.structurizr.view.ElementStyle;
+import com.structurizr.view.RelationshipStyle;
+import com.structurizr.view.RelationshipView;
+import com.structurizr.view.Styles;
+import com.structurizr.view.Vertex;
+import com.structurizr.view.View;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Canonical SHA-256 fingerprints of views and workspaces. Everything is written in a sorted, explicit form so that
+ * the fingerprint does not depend on hash set iteration order. Elements are identified by their canonical name and
+ * relationships by their source, destination and description rather than by their IDs, which are handed out in the
+ * order the model is built, so that adding an element does not change the fingerprint of every view after it.
+ */
+public final class Fingerprints {
+
+    private static final String FORMAT_VERSION = "3";
+    private static final char SEPARATOR = '\u001f';
+
+    private Fingerprints() {
+    }
+
+    public static String view(View view, String layoutSignature) {
+        var canonical = new StringBuilder();
+        append(canonical, "format", FORMAT_VERSION);
+        append(canonical, "layout", layoutSignature);
+        appendView(canonical, view);
+        appendStyles(canonical, view.getViewSet().getConfiguration().getStyles());
+        return sha256(canonical);
+    }
+
+    public static String workspace(Workspace workspace) {
+        var canonical = new StringBuilder();
+        append(canonical, "format", FORMAT_VERSION);
+        append(canonical, "workspace", workspace.getName());
+        append(canonical, "description", workspace.getDescription());
+        appendSorted(canonical, workspace.getModel().getElements().stream().map(Fingerprints::describe));
+        appendSorted(canonical, workspace.getModel().getRelationships().stream().map(Fingerprints::describe));
+        workspace.getViews().getViews().stream()
+                .sorted(Comparator.comparing(View::getKey))
+                .forEach(view -> appendLaidOutView(canonical, view));
+        appendStyles(canonical, workspace.getViews().getConfiguration().getStyles());
+        return sha256(canonical);
+    }
+
+    /**
+     * Identifies an element independently of its ID.
+     */
+    public static String elementKey(Element element) {
+        return element.getClass().getSimpleName() + " " + element.getCanonicalName();
+    }
+
+    /**
+     * Identifies a relationship independently of its ID, and of the IDs of its source and destination.
+     */
+    public static String relationshipKey(Relationship relationship) {
+        var key = relationship.getSource().getCanonicalName() + " -> "
+                + relationship.getDestination().getCanonicalName() + ": " + relationship.getDescription();
+        return nonNull(relationship.getLinkedRelationshipId()) ? key + " (implied)" : key;
+    }
+
+    /**
+     * Identifies a relationship in a view, where a dynamic view may show the same relationship more than once.
+     */
+    public static String relationshipKey(RelationshipView relationshipView) {
+        var key = relationshipKey(relationshipView.getRelationship());
+        return isNull(relationshipView.getOrder()) ? key : key + " #" + relationshipView.getOrder();
+    }
+
+    /**
+     * Describes a model one line per element and relationship, by canonical name rather than ID, so that two models
+     * built in a different order can be compared.
+     */
+    public static List<String> modelLines(Model model) {
+        var lines = new ArrayList<String>();
+        for (Element element : model.getElements()) {
+            var line = new StringBuilder();
+            append(line, "element", element.getClass().getSimpleName() + " " + element.getCanonicalName());
+            append(line, "description", element.getDescription());
+            append(line, "technology", technologyOf(element));
+            append(line, "tags", element.getTags());
+            appendProperties(line, element.getProperties());
+            lines.add(readable(line));
+        }
+        for (Relationship relationship : model.getRelationships()) {
+            var line = new StringBuilder();
+            append(line, "relationship", relationship.getSource().getCanonicalName() + " -> "
+                    + relationship.getDestination().getCanonicalName());
+            append(line, "description", relationship.getDescription());
+            append(line, "technology", relationship.getTechnology());
+            append(line, "interactionStyle", String.valueOf(relationship.getInteractionStyle()));
+            append(line, "tags", relationship.getTags());
+            append(line, "implied", String.valueOf(nonNull(relationship.getLinkedRelationshipId())));
+            appendProperties(line, relationship.getProperties());
+            lines.add(readable(line));
+        }
+        Collections.sort(lines);
+        return lines;
+    }
+
+    private static String readable(StringBuilder line) {
+        return line.toString().replace(String.valueOf(SEPARATOR), ": ").replace('\n', ' ').trim();
+    }
+
+    private static void appendView(StringBuilder canonical, View view) {
+        append(canonical, "view", view.getClass().getSimpleName());
+        append(canonical, "key", view.getKey());
+        append(canonical, "title", view.getTitle());
+        append(canonical, "description", view.getDescription());
+        append(canonical, "softwareSystem",
+                isNull(view.getSoftwareSystem()) ? null : view.getSoftwareSystem().getCanonicalName());
+        appendSorted(canonical, view.getElements().stream().map(elementView -> describe(elementView.getElement())));
+        appendSorted(canonical, view.getRelationships().stream().map(relationshipView -> {
+            var description = new StringBuilder(describe(relationshipView.getRelationship()));
+            append(description, "viewDescription", relationshipView.getDescription());
+            append(description, "order", relationshipView.getOrder());
+            return description.toString();
+        }));
+    }
+
+    private static void appendLaidOutView(StringBuilder canonical, View view) {
+        appendView(canonical, view);
+        append(canonical, "paperSize", isNull(view.getPaperSize()) ? null : view.getPaperSize().name());
+        appendSorted(canonical, view.getElements().stream().map(elementView -> {
+            var position = new StringBuilder();
+            append(position, "position", elementKey(elementView.getElement()) + "@" + elementView.getX() + ","
+                    + elementView.getY());
+            return position.toString();
+        }));
+        appendSorted(canonical, view.getRelationships().stream().map(relationshipView -> {
+            var vertices = new StringBuilder(relationshipKey(relationshipView));
+            for (Vertex vertex : relationshipView.getVertices()) {
+                vertices.append('@').append(vertex.getX()).append(',').append(vertex.getY());
+            }
+            var route = new StringBuilder();
+            append(route, "vertices", vertices.toString());
+            return route.toString();
+        }));
+    }
+
+    private static void appendSorted(StringBuilder canonical, Stream<String> descriptions) {
+        descriptions.sorted().forEach(canonical::append);
+    }
+
+    private static String describe(Element element) {
+        var canonical = new StringBuilder();
+        append(canonical, "element", elementKey(element));
+        append(canonical, "description", element.getDescription());
+        append(canonical, "technology", technologyOf(element));
+        append(canonical, "location", locationOf(element));
+        append(canonical, "tags", element.getTags());
+        append(canonical, "url", element.getUrl());
+        appendProperties(canonical, element.getProperties());
+        return canonical.toString();
+    }
+
+    private static String technologyOf(Element element) {
+        if (element instanceof Container) {
+            return ((Container) element).getTechnology();
+        } else if (element instanceof Component) {
+            return ((Component) element).getTechnology();
+        }
+        return null;
+    }
+
+    private static String locationOf(Element element) {
+        if (element instanceof Person) {
+            return String.valueOf(((Person) element).getLocation());
+        } else if (element instanceof SoftwareSystem) {
+            return String.valueOf(((SoftwareSystem) element).getLocation());
+        }
+        return null;
+    }
+
+    private static String describe(Relationship relationship) {
+        var canonical = new StringBuilder();
+        append(canonical, "relationship", relationshipKey(relationship));
+        append(canonical, "technology", relationship.getTechnology());
+        append(canonical, "interactionStyle", String.valueOf(relationship.getInteractionStyle()));
+        append(canonical, "tags", relationship.getTags());
+        appendProperties(canonical, relationship.getProperties());
+        return canonical.toString();
+    }
+
+    private static void appendStyles(StringBuilder canonical, Styles styles) {
+        styles.getElements().stream()
+                .sorted(Comparator.comparing(ElementStyle::getTag))
+                .forEach(style -> append(canonical, "elementStyle", String.join(",",
+                        style.getTag(), String.valueOf(style.getWidth()), String.valueOf(style.getHeight()),
+                        String.valueOf(style.getBackground()), String.valueOf(style.getStroke()),
+                        String.valueOf(style.getColor()), String.valueOf(style.getFontSize()),
+                        String.valueOf(style.getShape()), String.valueOf(style.getBorder()),
+                        String.valueOf(style.getOpacity()), String.valueOf(style.getMetadata()),
+                        String.valueOf(style.getDescription()), String.valueOf(style.getIcon()))));
+        styles.getRelationships().stream()
+                .sorted(Comparator.comparing(RelationshipStyle::getTag))
+                .forEach(style -> append(canonical, "relationshipStyle", String.join(",",
+                        style.getTag(), String.valueOf(style.getThickness()), String.valueOf(style.getColor()),
+                        String.valueOf(style.getDashed()), String.valueOf(style.getRouting()),
+                        String.valueOf(style.getFontSize()), String.valueOf(style.getWidth()),
+                        String.valueOf(style.getPosition()), String.valueOf(style.getOpacity()))));
+    }
+
+    private static void appendProperties(StringBuilder canonical, Map<String, String> properties) {
+        new TreeMap<>(properties).forEach((key, value) -> append(canonical, "property", key + "=" + value));
+    }
+
+    private static void append(StringBuilder canonical, String field, String value) {
+        canonical.append(field).append(SEPARATOR).append(value).append('\n');
+    }
+
+    private static String sha256(CharSequence canonical) {
+        return sha256(canonical.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String sha256(byte[] bytes) {
+        try {
+            return hex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    static String hex(byte[] bytes) {
+        var hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+}
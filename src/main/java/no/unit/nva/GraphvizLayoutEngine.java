@@ -0,0 +1,315 @@
+package no.unit.nva;
+
+import com.structurizr.model.Element;
+import com.structurizr.view.ElementStyle;
+import com.structurizr.view.ElementView;
+import com.structurizr.view.PaperSize;
+import com.structurizr.view.RelationshipView;
+import com.structurizr.view.Vertex;
+import com.structurizr.view.View;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Lays out views by writing a .dot file and forking Graphviz, which writes the layout in its plain text format next to
+ * an SVG rendering of the view. The number of concurrently running dot processes is capped independently of the
+ * number of layout workers, and the cap is shared by the engines derived with {@link #withOutputDirectory(File)}. A
+ * dot process is killed when its layout is interrupted, and its permit is only given back once it has exited.
+ */
+public class GraphvizLayoutEngine implements LayoutEngine {
+
+    public static final String NAME = "graphviz";
+
+    private static final String DOT = "dot";
+    private static final int DEFAULT_WIDTH = 450;
+    private static final int DEFAULT_HEIGHT = 300;
+    private static final int PIXELS_PER_INCH = 72;
+    private static final double RANK_SEPARATION = 1.0;
+    private static final double NODE_SEPARATION = 1.0;
+    private static final int MARGIN = 400;
+
+    private final File outputDirectory;
+    private final Semaphore processes;
+    private final String command;
+
+    public GraphvizLayoutEngine(File outputDirectory, int maxProcesses) {
+        this(outputDirectory, maxProcesses, DOT);
+    }
+
+    /**
+     * Runs {@code command} instead of the {@code dot} found on the path.
+     */
+    public GraphvizLayoutEngine(File outputDirectory, int maxProcesses, String command) {
+        this(outputDirectory, new Semaphore(maxProcesses, true), command);
+    }
+
+    private GraphvizLayoutEngine(File outputDirectory, Semaphore processes, String command) {
+        this.outputDirectory = outputDirectory;
+        this.processes = processes;
+        this.command = command;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public LayoutEngine withOutputDirectory(File directory) {
+        return new GraphvizLayoutEngine(directory, processes, command);
+    }
+
+    @Override
+    public void apply(View view) throws Exception {
+        processes.acquire();
+        try {
+            new Layout(view).run();
+        } finally {
+            processes.release();
+        }
+    }
+
+    /**
+     * Starts the clock once a {@code dot} process is available, so that views queued behind the cap do not time out
+     * without having run.
+     */
+    @Override
+    public void apply(View view, LayoutTimeout timeout) throws Exception {
+        processes.acquire();
+        try {
+            timeout.run(view, () -> new Layout(view).run());
+        } finally {
+            processes.release();
+        }
+    }
+
+    /**
+     * Thrown when {@code dot} fails or writes a layout that does not match the graph it was given.
+     */
+    public static class GraphvizException extends Exception {
+
+        public GraphvizException(String message) {
+            super(message);
+        }
+    }
+
+    private final class Layout {
+
+        private final View view;
+        private final List<ElementView> elements = new ArrayList<>();
+        private final List<RelationshipView> relationships = new ArrayList<>();
+        private final Map<String, Integer> nodeIndex = new HashMap<>();
+
+        private Layout(View view) {
+            this.view = view;
+        }
+
+        private void run() throws IOException, InterruptedException, GraphvizException {
+            elements.addAll(view.getElements());
+            elements.sort(Comparator.comparingLong(elementView -> numericId(elementView.getId())));
+            for (int i = 0; i < elements.size(); i++) {
+                nodeIndex.put(elements.get(i).getId(), i);
+            }
+            for (RelationshipView relationshipView : view.getRelationships()) {
+                var relationship = relationshipView.getRelationship();
+                if (nodeIndex.containsKey(relationship.getSourceId())
+                        && nodeIndex.containsKey(relationship.getDestinationId())) {
+                    relationships.add(relationshipView);
+                }
+            }
+            relationships.sort(Comparator.comparingLong((RelationshipView relationshipView) ->
+                    numericId(relationshipView.getId())).thenComparing(RelationshipView::getOrder,
+                    Comparator.nullsFirst(Comparator.naturalOrder())));
+
+            Files.createDirectories(outputDirectory.toPath());
+            var dotFile = new File(outputDirectory, view.getKey() + ".dot");
+            var plainFile = new File(outputDirectory, view.getKey() + ".plain");
+            var svgFile = new File(outputDirectory, view.getKey() + ".dot.svg");
+            var logFile = new File(outputDirectory, view.getKey() + ".log");
+            Files.writeString(dotFile.toPath(), toDot(), StandardCharsets.UTF_8);
+            var process = new ProcessBuilder(command, "-Tplain", "-o", plainFile.getPath(), "-Tsvg", "-o",
+                    svgFile.getPath(), dotFile.getPath())
+                    .redirectErrorStream(true)
+                    .redirectOutput(logFile)
+                    .start();
+            int status;
+            try {
+                status = process.waitFor();
+            } finally {
+                if (process.isAlive()) {
+                    kill(process);
+                }
+            }
+            if (status != 0) {
+                throw new GraphvizException(command + " exited with status " + status + " laying out view \""
+                        + view.getKey() + "\": " + Files.readString(logFile.toPath(), StandardCharsets.UTF_8).trim());
+            }
+            readPlain(Files.readAllLines(plainFile.toPath(), StandardCharsets.UTF_8));
+        }
+
+        private String toDot() {
+            var dot = new StringBuilder();
+            dot.append("digraph {\n");
+            dot.append(String.format(Locale.ROOT, "  graph [rankdir=TB, ranksep=%.2f, nodesep=%.2f];%n",
+                    RANK_SEPARATION, NODE_SEPARATION));
+            dot.append("  node [shape=box, fixedsize=true, label=\"\"];\n");
+            for (int i = 0; i < elements.size(); i++) {
+                int[] size = sizeOf(elements.get(i).getElement());
+                dot.append(String.format(Locale.ROOT, "  n%d [width=%.4f, height=%.4f];%n", i,
+                        size[0] / (double) PIXELS_PER_INCH, size[1] / (double) PIXELS_PER_INCH));
+            }
+            for (RelationshipView relationshipView : relationships) {
+                var relationship = relationshipView.getRelationship();
+                dot.append("  n").append(nodeIndex.get(relationship.getSourceId()))
+                        .append(" -> n").append(nodeIndex.get(relationship.getDestinationId())).append(";\n");
+            }
+            return dot.append("}\n").toString();
+        }
+
+        /**
+         * Reads the centre of every node and the control points of every edge from dot's plain output, in which
+         * coordinates are inches from the bottom left corner. Edges are matched to relationships by their end points,
+         * in the order they were written.
+         */
+        private void readPlain(List<String> lines) throws GraphvizException {
+            double height = 0;
+            var pending = new HashMap<String, ArrayDeque<RelationshipView>>();
+            for (RelationshipView relationshipView : relationships) {
+                pending.computeIfAbsent(edgeKey(relationshipView), key -> new ArrayDeque<>()).add(relationshipView);
+            }
+            int placed = 0;
+            int width = 0;
+            for (String line : lines) {
+                String[] fields = line.trim().split("\\s+");
+                if ("graph".equals(fields[0])) {
+                    width = pixels(Double.parseDouble(fields[2]));
+                    height = Double.parseDouble(fields[3]);
+                } else if ("node".equals(fields[0])) {
+                    var elementView = elements.get(node(fields[1]));
+                    int[] size = sizeOf(elementView.getElement());
+                    elementView.setX(pixels(Double.parseDouble(fields[2])) - size[0] / 2 + MARGIN);
+                    elementView.setY(pixels(height - Double.parseDouble(fields[3])) - size[1] / 2 + MARGIN);
+                    placed++;
+                } else if ("edge".equals(fields[0])) {
+                    var queue = pending.get(node(fields[1]) + " " + node(fields[2]));
+                    if (isNull(queue) || queue.isEmpty()) {
+                        throw new GraphvizException("Unexpected edge \"" + line + "\" in the layout of view \""
+                                + view.getKey() + "\"");
+                    }
+                    queue.remove().setVertices(vertices(fields, height));
+                }
+            }
+            if (placed != elements.size()) {
+                throw new GraphvizException("The layout of view \"" + view.getKey() + "\" placed " + placed + " of "
+                        + elements.size() + " elements");
+            }
+            view.setPaperSize(paperSizeFor(width + 2 * MARGIN, pixels(height) + 2 * MARGIN));
+        }
+
+        /**
+         * An edge is a cubic B-spline of 3n + 1 control points; the points joining its segments, without the two
+         * end points, become the vertices of the relationship.
+         */
+        private List<Vertex> vertices(String[] fields, double height) {
+            int points = Integer.parseInt(fields[3]);
+            var vertices = new ArrayList<Vertex>();
+            for (int point = 3; point < points - 1; point += 3) {
+                double x = Double.parseDouble(fields[4 + 2 * point]);
+                double y = Double.parseDouble(fields[5 + 2 * point]);
+                vertices.add(new Vertex(pixels(x) + MARGIN, pixels(height - y) + MARGIN));
+            }
+            return vertices;
+        }
+
+        private int node(String name) throws GraphvizException {
+            try {
+                int node = Integer.parseInt(name.substring(1));
+                if (name.charAt(0) == 'n' && node >= 0 && node < elements.size()) {
+                    return node;
+                }
+            } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+                // reported below
+            }
+            throw new GraphvizException("Unknown node \"" + name + "\" in the layout of view \"" + view.getKey()
+                    + "\"");
+        }
+
+        private String edgeKey(RelationshipView relationshipView) {
+            var relationship = relationshipView.getRelationship();
+            return nodeIndex.get(relationship.getSourceId()) + " " + nodeIndex.get(relationship.getDestinationId());
+        }
+
+        private int[] sizeOf(Element element) {
+            int width = DEFAULT_WIDTH;
+            int height = DEFAULT_HEIGHT;
+            Set<String> tags = new HashSet<>(element.getTagsAsSet());
+            for (ElementStyle style : view.getViewSet().getConfiguration().getStyles().getElements()) {
+                if (tags.contains(style.getTag())) {
+                    width = nonNull(style.getWidth()) ? style.getWidth() : width;
+                    height = nonNull(style.getHeight()) ? style.getHeight() : height;
+                }
+            }
+            return new int[]{width, height};
+        }
+    }
+
+    /**
+     * Kills {@code process} and waits for it to exit, even if the calling thread is interrupted meanwhile, so that the
+     * permit it holds is not given to another view while it still runs.
+     */
+    private static void kill(Process process) {
+        process.destroyForcibly();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                process.waitFor();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static int pixels(double inches) {
+        return (int) Math.round(inches * PIXELS_PER_INCH);
+    }
+
+    private static long numericId(String id) {
+        try {
+            return Long.parseLong(id);
+        } catch (NumberFormatException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static PaperSize paperSizeFor(int width, int height) {
+        PaperSize best = PaperSize.A0_Landscape;
+        for (PaperSize paperSize : PaperSize.values()) {
+            boolean fits = paperSize.getWidth() >= width && paperSize.getHeight() >= height;
+            if (fits && paperSize.getWidth() * (long) paperSize.getHeight()
+                    < best.getWidth() * (long) best.getHeight()) {
+                best = paperSize;
+            }
+        }
+        return best;
+    }
+}
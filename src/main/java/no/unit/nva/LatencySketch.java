@@ -0,0 +1,101 @@
+package no.unit.nva;
+
+/**
+ * A mergeable latency histogram with logarithmic buckets: every value is counted in the bucket
+ * {@code ceil(log(value) / log(gamma))}, so quantiles are accurate to one percent of the value whatever the range, and
+ * the memory is bounded by the ratio between the largest and smallest latency rather than by the number of requests.
+ * Two sketches merge by adding their bucket counts, so logs can be aggregated in parallel and combined in any order.
+ */
+public final class LatencySketch {
+
+    private static final double RELATIVE_ACCURACY = 0.01;
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    private static final double MIN_VALUE = 1e-3;
+
+    private long[] counts = new long[0];
+    private int offset;
+    private long zeroCount;
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public void add(double value) {
+        if (Double.isNaN(value) || value < 0) {
+            throw new IllegalArgumentException("Latency must be a non-negative number, got " + value);
+        }
+        if (value < MIN_VALUE) {
+            zeroCount++;
+        } else {
+            int index = (int) Math.ceil(Math.log(value) / LOG_GAMMA);
+            grow(index, index);
+            counts[index - offset]++;
+        }
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    public void merge(LatencySketch other) {
+        if (other.count == 0) {
+            return;
+        }
+        if (other.counts.length > 0) {
+            grow(other.offset, other.offset + other.counts.length - 1);
+            for (int i = 0; i < other.counts.length; i++) {
+                counts[other.offset + i - offset] += other.counts[i];
+            }
+        }
+        zeroCount += other.zeroCount;
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the value at the given quantile, between 0 and 1, or {@code NaN} when the sketch is empty.
+     */
+    public double quantile(double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1, got " + quantile);
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) Math.floor(quantile * (count - 1));
+        long seen = zeroCount;
+        if (rank < seen) {
+            return min;
+        }
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (rank < seen) {
+                double value = 2 * Math.pow(GAMMA, offset + i) / (GAMMA + 1);
+                return Math.max(min, Math.min(max, value));
+            }
+        }
+        return max;
+    }
+
+    private void grow(int lowest, int highest) {
+        if (counts.length == 0) {
+            counts = new long[highest - lowest + 1];
+            offset = lowest;
+            return;
+        }
+        int currentHighest = offset + counts.length - 1;
+        if (lowest >= offset && highest <= currentHighest) {
+            return;
+        }
+        int newOffset = Math.min(offset, lowest);
+        int newHighest = Math.max(currentHighest, highest);
+        var grown = new long[newHighest - newOffset + 1];
+        System.arraycopy(counts, 0, grown, offset - newOffset, counts.length);
+        counts = grown;
+        offset = newOffset;
+    }
+}
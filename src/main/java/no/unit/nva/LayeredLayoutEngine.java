@@ -0,0 +1,364 @@
+package no.unit.nva;
+
+import com.structurizr.model.Element;
+import com.structurizr.view.ComponentView;
+import com.structurizr.view.ContainerView;
+import com.structurizr.view.ElementStyle;
+import com.structurizr.view.ElementView;
+import com.structurizr.view.PaperSize;
+import com.structurizr.view.RelationshipView;
+import com.structurizr.view.SystemContextView;
+import com.structurizr.view.Vertex;
+import com.structurizr.view.View;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.util.Objects.nonNull;
+
+/**
+ * In-process layered (Sugiyama-style) layout for system context, container and component views: cycles are broken by
+ * reversing DFS back edges, nodes are assigned to layers by longest path, long edges are split by dummy nodes,
+ * crossings are reduced with barycenter sweeps and every layer is centred horizontally. Dummy node positions become
+ * the relationship vertices.
+ */
+public class LayeredLayoutEngine implements LayoutEngine {
+
+    public static final String NAME = "layered";
+
+    private static final int DEFAULT_WIDTH = 450;
+    private static final int DEFAULT_HEIGHT = 300;
+    private static final int RANK_SEPARATION = 300;
+    private static final int NODE_SEPARATION = 300;
+    private static final int MARGIN = 400;
+    private static final int ORDERING_SWEEPS = 8;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void apply(View view) {
+        if (!(view instanceof SystemContextView) && !(view instanceof ContainerView)
+                && !(view instanceof ComponentView)) {
+            throw new IllegalArgumentException("The layered layout only supports system context, container and "
+                    + "component views, not " + view.getClass().getSimpleName());
+        }
+        new Layout(view).run();
+    }
+
+    private static final class Layout {
+
+        private final View view;
+        private final List<ElementView> elements = new ArrayList<>();
+        private final Map<String, Integer> nodeIndex = new HashMap<>();
+        private final List<int[]> edges = new ArrayList<>();
+        private final List<RelationshipView> edgeRelationships = new ArrayList<>();
+
+        private int nodeCount;
+        private int[] widths;
+        private int[] heights;
+        private int[] layer;
+        private List<List<Integer>> successors;
+        private List<List<Integer>> predecessors;
+        private List<List<Integer>> layers;
+        private int[] x;
+        private int[] y;
+
+        private Layout(View view) {
+            this.view = view;
+        }
+
+        private void run() {
+            collectNodes();
+            collectEdges();
+            removeCycles();
+            assignLayers();
+            insertDummyNodes();
+            orderLayers();
+            assignCoordinates();
+            writeBack();
+        }
+
+        private void collectNodes() {
+            elements.addAll(view.getElements());
+            elements.sort(Comparator.comparing(ElementView::getId, Comparator.comparingLong(Layout::numericId)
+                    .thenComparing(Comparator.naturalOrder())));
+            for (int i = 0; i < elements.size(); i++) {
+                nodeIndex.put(elements.get(i).getId(), i);
+            }
+            nodeCount = elements.size();
+            widths = new int[nodeCount];
+            heights = new int[nodeCount];
+            for (int i = 0; i < nodeCount; i++) {
+                int[] size = sizeOf(elements.get(i).getElement());
+                widths[i] = size[0];
+                heights[i] = size[1];
+            }
+        }
+
+        private void collectEdges() {
+            var relationships = new ArrayList<>(view.getRelationships());
+            relationships.sort(Comparator.comparing(RelationshipView::getId, Comparator.comparingLong(Layout::numericId)
+                    .thenComparing(Comparator.naturalOrder())));
+            for (RelationshipView relationshipView : relationships) {
+                var source = nodeIndex.get(relationshipView.getRelationship().getSourceId());
+                var destination = nodeIndex.get(relationshipView.getRelationship().getDestinationId());
+                if (nonNull(source) && nonNull(destination) && !source.equals(destination)) {
+                    edges.add(new int[]{source, destination, 0});
+                    edgeRelationships.add(relationshipView);
+                } else {
+                    relationshipView.setVertices(new ArrayList<>());
+                }
+            }
+        }
+
+        private void removeCycles() {
+            var adjacency = outgoingEdges();
+            var state = new byte[nodeCount];
+            for (int start = 0; start < nodeCount; start++) {
+                if (state[start] != 0) {
+                    continue;
+                }
+                var stack = new ArrayDeque<int[]>();
+                stack.push(new int[]{start, 0});
+                state[start] = 1;
+                while (!stack.isEmpty()) {
+                    var frame = stack.peek();
+                    var outgoing = adjacency.get(frame[0]);
+                    if (frame[1] < outgoing.size()) {
+                        int edgeIndex = outgoing.get(frame[1]++);
+                        int target = edges.get(edgeIndex)[1];
+                        if (state[target] == 1) {
+                            reverse(edges.get(edgeIndex));
+                        } else if (state[target] == 0) {
+                            state[target] = 1;
+                            stack.push(new int[]{target, 0});
+                        }
+                    } else {
+                        state[frame[0]] = 2;
+                        stack.pop();
+                    }
+                }
+            }
+        }
+
+        private void assignLayers() {
+            var adjacency = outgoingEdges();
+            var inDegree = new int[nodeCount];
+            for (int[] edge : edges) {
+                inDegree[edge[1]]++;
+            }
+            layer = new int[nodeCount];
+            var queue = new ArrayDeque<Integer>();
+            for (int i = 0; i < nodeCount; i++) {
+                if (inDegree[i] == 0) {
+                    queue.add(i);
+                }
+            }
+            while (!queue.isEmpty()) {
+                int node = queue.poll();
+                for (int edgeIndex : adjacency.get(node)) {
+                    int target = edges.get(edgeIndex)[1];
+                    layer[target] = Math.max(layer[target], layer[node] + 1);
+                    if (--inDegree[target] == 0) {
+                        queue.add(target);
+                    }
+                }
+            }
+        }
+
+        private void insertDummyNodes() {
+            int dummies = 0;
+            for (int[] edge : edges) {
+                dummies += Math.max(0, layer[edge[1]] - layer[edge[0]] - 1);
+            }
+            int total = nodeCount + dummies;
+            layer = Arrays.copyOf(layer, total);
+            successors = emptyLists(total);
+            predecessors = emptyLists(total);
+
+            int next = nodeCount;
+            for (int[] edge : edges) {
+                int previous = edge[0];
+                for (int rank = layer[edge[0]] + 1; rank < layer[edge[1]]; rank++) {
+                    layer[next] = rank;
+                    link(previous, next);
+                    previous = next++;
+                }
+                link(previous, edge[1]);
+            }
+
+            int depth = 0;
+            for (int rank : layer) {
+                depth = Math.max(depth, rank);
+            }
+            layers = emptyLists(depth + 1);
+            for (int node = 0; node < total; node++) {
+                layers.get(layer[node]).add(node);
+            }
+        }
+
+        private void orderLayers() {
+            var position = new double[layer.length];
+            for (List<Integer> rank : layers) {
+                for (int i = 0; i < rank.size(); i++) {
+                    position[rank.get(i)] = i;
+                }
+            }
+            for (int sweep = 0; sweep < ORDERING_SWEEPS; sweep++) {
+                boolean downwards = sweep % 2 == 0;
+                for (int r = 1; r < layers.size(); r++) {
+                    int rankIndex = downwards ? r : layers.size() - 1 - r;
+                    var neighbours = downwards ? predecessors : successors;
+                    reorder(layers.get(rankIndex), neighbours, position);
+                }
+            }
+        }
+
+        private static void reorder(List<Integer> rank, List<List<Integer>> neighbours, double[] position) {
+            var barycenter = new HashMap<Integer, Double>();
+            for (int node : rank) {
+                var adjacent = neighbours.get(node);
+                if (adjacent.isEmpty()) {
+                    barycenter.put(node, position[node]);
+                } else {
+                    double sum = 0;
+                    for (int neighbour : adjacent) {
+                        sum += position[neighbour];
+                    }
+                    barycenter.put(node, sum / adjacent.size());
+                }
+            }
+            rank.sort(Comparator.comparingDouble(barycenter::get));
+            for (int i = 0; i < rank.size(); i++) {
+                position[rank.get(i)] = i;
+            }
+        }
+
+        private void assignCoordinates() {
+            x = new int[layer.length];
+            y = new int[layer.length];
+            var rowWidths = new int[layers.size()];
+            var rowHeights = new int[layers.size()];
+            int widest = 0;
+            for (int r = 0; r < layers.size(); r++) {
+                for (int node : layers.get(r)) {
+                    rowWidths[r] += width(node) + NODE_SEPARATION;
+                    rowHeights[r] = Math.max(rowHeights[r], height(node));
+                }
+                rowWidths[r] = Math.max(0, rowWidths[r] - NODE_SEPARATION);
+                widest = Math.max(widest, rowWidths[r]);
+            }
+
+            int top = MARGIN;
+            for (int r = 0; r < layers.size(); r++) {
+                int left = MARGIN + (widest - rowWidths[r]) / 2;
+                for (int node : layers.get(r)) {
+                    x[node] = left;
+                    y[node] = top + (rowHeights[r] - height(node)) / 2;
+                    left += width(node) + NODE_SEPARATION;
+                }
+                top += rowHeights[r] + RANK_SEPARATION;
+            }
+            view.setPaperSize(paperSizeFor(widest + 2 * MARGIN, top - RANK_SEPARATION + MARGIN));
+        }
+
+        private void writeBack() {
+            for (int node = 0; node < nodeCount; node++) {
+                elements.get(node).setX(x[node]);
+                elements.get(node).setY(y[node]);
+            }
+            int next = nodeCount;
+            for (int i = 0; i < edges.size(); i++) {
+                int[] edge = edges.get(i);
+                var vertices = new ArrayList<Vertex>();
+                for (int rank = layer[edge[0]] + 1; rank < layer[edge[1]]; rank++, next++) {
+                    vertices.add(new Vertex(x[next], y[next]));
+                }
+                if (edge[2] == 1) {
+                    Collections.reverse(vertices);
+                }
+                edgeRelationships.get(i).setVertices(vertices);
+            }
+        }
+
+        private int[] sizeOf(Element element) {
+            int width = DEFAULT_WIDTH;
+            int height = DEFAULT_HEIGHT;
+            Set<String> tags = new HashSet<>(element.getTagsAsSet());
+            for (ElementStyle style : view.getViewSet().getConfiguration().getStyles().getElements()) {
+                if (tags.contains(style.getTag())) {
+                    width = nonNull(style.getWidth()) ? style.getWidth() : width;
+                    height = nonNull(style.getHeight()) ? style.getHeight() : height;
+                }
+            }
+            return new int[]{width, height};
+        }
+
+        private int width(int node) {
+            return node < nodeCount ? widths[node] : 0;
+        }
+
+        private int height(int node) {
+            return node < nodeCount ? heights[node] : 0;
+        }
+
+        private void link(int source, int destination) {
+            successors.get(source).add(destination);
+            predecessors.get(destination).add(source);
+        }
+
+        private List<List<Integer>> outgoingEdges() {
+            var adjacency = emptyLists(nodeCount);
+            for (int i = 0; i < edges.size(); i++) {
+                adjacency.get(edges.get(i)[0]).add(i);
+            }
+            return adjacency;
+        }
+
+        private static void reverse(int[] edge) {
+            int source = edge[0];
+            edge[0] = edge[1];
+            edge[1] = source;
+            edge[2] = 1 - edge[2];
+        }
+
+        private static List<List<Integer>> emptyLists(int size) {
+            var lists = new ArrayList<List<Integer>>(size);
+            for (int i = 0; i < size; i++) {
+                lists.add(new ArrayList<>());
+            }
+            return lists;
+        }
+
+        private static long numericId(String id) {
+            try {
+                return Long.parseLong(id);
+            } catch (NumberFormatException e) {
+                return Long.MAX_VALUE;
+            }
+        }
+
+        private static PaperSize paperSizeFor(int width, int height) {
+            PaperSize best = PaperSize.A0_Landscape;
+            for (PaperSize paperSize : PaperSize.values()) {
+                boolean fits = paperSize.getWidth() >= width && paperSize.getHeight() >= height;
+                if (fits && paperSize.getWidth() * (long) paperSize.getHeight()
+                        < best.getWidth() * (long) best.getHeight()) {
+                    best = paperSize;
+                }
+            }
+            return best;
+        }
+    }
+}
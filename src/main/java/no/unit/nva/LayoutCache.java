@@ -0,0 +1,122 @@
+package no.unit.nva;
+
+import com.structurizr.view.ElementView;
+import com.structurizr.view.PaperSize;
+import com.structurizr.view.RelationshipView;
+import com.structurizr.view.Vertex;
+import com.structurizr.view.View;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Properties;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Stores the coordinates produced by an automatic layout, keyed by the view fingerprint, so that unchanged views can
+ * be restored without running the layout again. Like the fingerprint, the coordinates are keyed by element and
+ * relationship rather than by ID, so they are restored onto the right elements when the IDs have been renumbered.
+ */
+public class LayoutCache {
+
+    private static final String FINGERPRINT = "fingerprint";
+    private static final String PAPER_SIZE = "paperSize";
+    private static final String ELEMENT_PREFIX = "element.";
+    private static final String RELATIONSHIP_PREFIX = "relationship.";
+
+    private final Path directory;
+
+    public LayoutCache(File directory) {
+        this.directory = directory.toPath();
+    }
+
+    public boolean restore(View view, String fingerprint) throws IOException {
+        var file = fileFor(view);
+        if (!Files.isRegularFile(file)) {
+            return false;
+        }
+        var layout = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            layout.load(reader);
+        }
+        if (!fingerprint.equals(layout.getProperty(FINGERPRINT))) {
+            return false;
+        }
+        for (ElementView elementView : view.getElements()) {
+            var position = layout.getProperty(ELEMENT_PREFIX + Fingerprints.elementKey(elementView.getElement()));
+            if (isNull(position)) {
+                return false;
+            }
+            var coordinates = position.split(",");
+            elementView.setX(Integer.parseInt(coordinates[0]));
+            elementView.setY(Integer.parseInt(coordinates[1]));
+        }
+        for (RelationshipView relationshipView : view.getRelationships()) {
+            relationshipView.setVertices(parseVertices(layout.getProperty(
+                    RELATIONSHIP_PREFIX + Fingerprints.relationshipKey(relationshipView), "")));
+        }
+        var paperSize = layout.getProperty(PAPER_SIZE);
+        if (nonNull(paperSize)) {
+            view.setPaperSize(PaperSize.valueOf(paperSize));
+        }
+        return true;
+    }
+
+    public void store(View view, String fingerprint) throws IOException {
+        var layout = new Properties();
+        layout.setProperty(FINGERPRINT, fingerprint);
+        if (nonNull(view.getPaperSize())) {
+            layout.setProperty(PAPER_SIZE, view.getPaperSize().name());
+        }
+        for (ElementView elementView : view.getElements()) {
+            layout.setProperty(ELEMENT_PREFIX + Fingerprints.elementKey(elementView.getElement()),
+                    elementView.getX() + "," + elementView.getY());
+        }
+        for (RelationshipView relationshipView : view.getRelationships()) {
+            layout.setProperty(RELATIONSHIP_PREFIX + Fingerprints.relationshipKey(relationshipView),
+                    formatVertices(relationshipView));
+        }
+        Files.createDirectories(directory);
+        var file = fileFor(view);
+        var temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            layout.store(writer, view.getKey());
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path fileFor(View view) {
+        return directory.resolve(view.getKey().replaceAll("[^A-Za-z0-9._-]", "_") + ".layout");
+    }
+
+    private static String formatVertices(RelationshipView relationshipView) {
+        var vertices = new StringBuilder();
+        for (Vertex vertex : relationshipView.getVertices()) {
+            if (vertices.length() > 0) {
+                vertices.append(';');
+            }
+            vertices.append(vertex.getX()).append(',').append(vertex.getY());
+        }
+        return vertices.toString();
+    }
+
+    private static ArrayList<Vertex> parseVertices(String value) {
+        var vertices = new ArrayList<Vertex>();
+        if (value.isEmpty()) {
+            return vertices;
+        }
+        for (String vertex : value.split(";")) {
+            var coordinates = vertex.split(",");
+            vertices.add(new Vertex(Integer.parseInt(coordinates[0]), Integer.parseInt(coordinates[1])));
+        }
+        return vertices;
+    }
+}
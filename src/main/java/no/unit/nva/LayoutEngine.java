@@ -0,0 +1,31 @@
+package no.unit.nva;
+
+import com.structurizr.view.View;
+
+import java.io.File;
+
+public interface LayoutEngine {
+
+    /**
+     * A short, stable name that is part of the view fingerprint, so that switching engine invalidates cached layouts.
+     */
+    String getName();
+
+    void apply(View view) throws Exception;
+
+    /**
+     * Lays out {@code view} within {@code timeout}. Engines that wait for a shared resource before laying out start
+     * the clock once they have it.
+     */
+    default void apply(View view, LayoutTimeout timeout) throws Exception {
+        timeout.run(view, () -> apply(view));
+    }
+
+    /**
+     * Returns an engine that writes its intermediate files to {@code directory} and shares any limit on concurrent
+     * layouts with this one. Engines that write no files return themselves.
+     */
+    default LayoutEngine withOutputDirectory(File directory) {
+        return this;
+    }
+}
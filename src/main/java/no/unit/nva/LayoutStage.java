@@ -0,0 +1,113 @@
+package no.unit.nva;
+
+import com.structurizr.Workspace;
+import com.structurizr.view.View;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * Lays out every view of a workspace on a bounded worker pool. Views are independent, so each worker only touches
+ * the element and relationship views of its own view; cache writes and error reporting happen afterwards on the
+ * calling thread in view key order, so the outcome does not depend on scheduling.
+ */
+public class LayoutStage {
+
+    private final LayoutEngine layoutEngine;
+    private final LayoutCache layoutCache;
+    private final int workers;
+    private final Duration viewTimeout;
+
+    public LayoutStage(LayoutEngine layoutEngine, LayoutCache layoutCache, int workers, Duration viewTimeout) {
+        this.layoutEngine = layoutEngine;
+        this.layoutCache = layoutCache;
+        this.workers = workers;
+        this.viewTimeout = viewTimeout;
+    }
+
+    public void apply(Workspace workspace) throws Exception {
+        apply(workspace.getViews().getViews());
+    }
+
+    public void apply(Iterable<? extends View> views) throws Exception {
+        List<View> orderedViews = new ArrayList<>();
+        views.forEach(orderedViews::add);
+        orderedViews.sort(Comparator.comparing(View::getKey));
+        if (orderedViews.isEmpty()) {
+            return;
+        }
+
+        var executor = Executors.newFixedThreadPool(Math.min(workers, orderedViews.size()));
+        var watchdog = Executors.newSingleThreadScheduledExecutor();
+        try {
+            var results = submitAll(orderedViews, executor, new LayoutTimeout(watchdog, viewTimeout));
+            mergeResults(orderedViews, results);
+        } finally {
+            executor.shutdownNow();
+            watchdog.shutdownNow();
+        }
+    }
+
+    private List<Future<LaidOutView>> submitAll(List<View> views, ExecutorService executor, LayoutTimeout timeout) {
+        return views.stream()
+                .map(view -> executor.submit(PhaseInstrumentation.measured(() -> layout(view, timeout))))
+                .collect(Collectors.toList());
+    }
+
+    private LaidOutView layout(View view, LayoutTimeout timeout) throws Exception {
+        var fingerprint = Fingerprints.view(view, layoutEngine.getName());
+        if (layoutCache.restore(view, fingerprint)) {
+            return new LaidOutView(fingerprint, false);
+        }
+        layoutEngine.apply(view, timeout);
+        return new LaidOutView(fingerprint, true);
+    }
+
+    private void mergeResults(List<View> views, List<Future<LaidOutView>> results) throws Exception {
+        Exception failure = null;
+        for (int i = 0; i < views.size(); i++) {
+            var view = views.get(i);
+            try {
+                var result = results.get(i).get();
+                if (result.changed) {
+                    layoutCache.store(view, result.fingerprint);
+                }
+            } catch (ExecutionException e) {
+                var cause = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                if (failure == null) {
+                    failure = new LayoutException("Could not lay out view \"" + view.getKey() + "\"", cause);
+                } else {
+                    failure.addSuppressed(cause);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static final class LaidOutView {
+
+        private final String fingerprint;
+        private final boolean changed;
+
+        private LaidOutView(String fingerprint, boolean changed) {
+            this.fingerprint = fingerprint;
+            this.changed = changed;
+        }
+    }
+
+    public static class LayoutException extends Exception {
+
+        public LayoutException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package no.unit.nva;
+
+import com.structurizr.view.View;
+
+import java.time.Duration;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Limits how long the layout of one view may run. A layout engine starts the clock once the layout can actually
+ * run, for example after it has been given one of a limited number of {@code dot} processes, so that time spent
+ * waiting for its turn does not count against the view. When the time is up the worker is interrupted; the worker
+ * and the timer agree under a lock on whether the layout finished first, so an interrupt meant for one view never
+ * reaches the next task on a pooled worker.
+ */
+public class LayoutTimeout {
+
+    private static final int RUNNING = 0;
+    private static final int FINISHED = 1;
+    private static final int TIMED_OUT = 2;
+
+    private final ScheduledExecutorService timer;
+    private final Duration limit;
+
+    public LayoutTimeout(ScheduledExecutorService timer, Duration limit) {
+        this.timer = timer;
+        this.limit = limit;
+    }
+
+    /**
+     * Runs the layout of {@code view} on the calling thread, and throws a {@link TimeoutException} if it has not
+     * finished within the limit.
+     */
+    public void run(View view, Layout layout) throws Exception {
+        var state = new State(Thread.currentThread());
+        var scheduled = timer.schedule(state::timeOut, limit.toMillis(), TimeUnit.MILLISECONDS);
+        try {
+            layout.run();
+        } catch (InterruptedException e) {
+            if (!state.finish()) {
+                throw e;
+            }
+        } finally {
+            scheduled.cancel(false);
+            state.finish();
+        }
+        if (state.finish()) {
+            throw new TimeoutException("Layout of view \"" + view.getKey() + "\" exceeded " + limit);
+        }
+    }
+
+    public interface Layout {
+
+        void run() throws Exception;
+    }
+
+    private static final class State {
+
+        private final Thread worker;
+        private int state = RUNNING;
+        private boolean timedOut;
+
+        private State(Thread worker) {
+            this.worker = worker;
+        }
+
+        private synchronized void timeOut() {
+            if (state == RUNNING) {
+                state = TIMED_OUT;
+                worker.interrupt();
+            }
+        }
+
+        /**
+         * Marks the layout as finished and returns whether it had timed out, in which case the interrupt the timer
+         * delivered is cleared. An interrupt from anyone else, such as the pool shutting down, is left alone.
+         */
+        private synchronized boolean finish() {
+            if (state == TIMED_OUT) {
+                Thread.interrupted();
+            }
+            if (state != FINISHED) {
+                timedOut = state == TIMED_OUT;
+                state = FINISHED;
+            }
+            return timedOut;
+        }
+    }
+}
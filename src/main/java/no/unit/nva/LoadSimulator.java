@@ -0,0 +1,540 @@
+package no.unit.nva;
+
+import com.structurizr.model.Container;
+import com.structurizr.model.Element;
+import com.structurizr.model.Model;
+import com.structurizr.model.Person;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * A discrete-event simulation of requests flowing through the model. Every element is a queue with a number of servers
+ * and an exponentially distributed service time. A container without settings in the scenario takes its
+ * {@value CriticalPathAnalyzer#LATENCY_BUDGET} as the mean service time and has unlimited concurrency, and people pass
+ * requests on at once. When a request has been served it calls one synchronous successor and holds its server until
+ * the call returns, so that a slow dependency ties up the concurrency of its callers. The successor is chosen in
+ * proportion to the weights of the scenario, or else to the {@code traffic.requests} of the relationships when the
+ * traffic is known, and else at random. A served request also hands a new request to every asynchronous successor
+ * without waiting. Events at the same time are processed in the order they were scheduled, and every element and
+ * arrival stream draws from its own split of the scenario's random generator, so a scenario gives the same result for
+ * the same seed however many run at once.
+ */
+public class LoadSimulator {
+
+    private static final String TRAFFIC_REQUESTS = "traffic.requests";
+    private static final int MAX_ASYNCHRONOUS_HOPS = 16;
+
+    private final Model model;
+    private final DependencyGraph graph;
+    private final double[] weights;
+
+    public LoadSimulator(Model model) {
+        this.model = model;
+        this.graph = DependencyGraph.of(model);
+        this.weights = new double[graph.edges()];
+        for (int node = 0; node < graph.size(); node++) {
+            boolean anyTraffic = false;
+            for (int edge = graph.start(node); edge < graph.end(node); edge++) {
+                weights[edge] = trafficOf(graph.getElement(node), graph.getElement(graph.target(edge)));
+                anyTraffic |= weights[edge] > 0;
+            }
+            if (!anyTraffic) {
+                for (int edge = graph.start(node); edge < graph.end(node); edge++) {
+                    weights[edge] = 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the scenarios on a pool of workers and returns their results in the order of the scenarios.
+     */
+    public List<Result> runAll(List<SimulationScenario> scenarios, int workers) throws Exception {
+        if (scenarios.isEmpty()) {
+            return List.of();
+        }
+        var tasks = new ArrayList<Callable<Result>>();
+        for (SimulationScenario scenario : scenarios) {
+            tasks.add(() -> run(scenario));
+        }
+        var executor = Executors.newFixedThreadPool(Math.min(workers, scenarios.size()));
+        try {
+            var results = new ArrayList<Result>();
+            for (Future<Result> result : executor.invokeAll(tasks)) {
+                try {
+                    results.add(result.get());
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public Result run(SimulationScenario scenario) {
+        return new Run(scenario).simulate();
+    }
+
+    private static double trafficOf(Element source, Element destination) {
+        for (var relationship : source.getRelationships()) {
+            if (relationship.getDestination() == destination) {
+                var requests = relationship.getProperties().get(TRAFFIC_REQUESTS);
+                if (nonNull(requests)) {
+                    return Double.parseDouble(requests);
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * The state of one simulation: the event queue, the queues and servers of every element and their statistics.
+     */
+    private final class Run {
+
+        private final SimulationScenario scenario;
+        private final PriorityQueue<Event> events = new PriorityQueue<>();
+        private final int[] servers;
+        private final int[] busy;
+        private final double[] serviceTimes;
+        private final List<ArrayDeque<Job>> queues = new ArrayList<>();
+        private final SplittableRandom[] randoms;
+        private final long[] arrivals;
+        private final long[] completions;
+        private final int[] maxQueue;
+        private final double[] queueArea;
+        private final double[] busyArea;
+        private final double[] lastChange;
+        private final LatencySketch[] latencies;
+        private final double[] weights;
+        private final int[] sources;
+        private final SplittableRandom[] streamRandoms;
+        private final int[] recordedPositions;
+        private final LatencySketch endToEnd = new LatencySketch();
+        private long sequence;
+
+        private Run(SimulationScenario scenario) {
+            this.scenario = scenario;
+            int size = graph.size();
+            servers = new int[size];
+            busy = new int[size];
+            serviceTimes = new double[size];
+            randoms = new SplittableRandom[size];
+            arrivals = new long[size];
+            completions = new long[size];
+            maxQueue = new int[size];
+            queueArea = new double[size];
+            busyArea = new double[size];
+            lastChange = new double[size];
+            latencies = new LatencySketch[size];
+
+            var root = new SplittableRandom(scenario.getSeed());
+            for (int node = 0; node < size; node++) {
+                var element = graph.getElement(node);
+                servers[node] = Integer.MAX_VALUE;
+                serviceTimes[node] = element instanceof Person ? 0 : budgetOf(element);
+                queues.add(new ArrayDeque<>());
+                randoms[node] = root.split();
+                latencies[node] = new LatencySketch();
+            }
+            var registry = new ElementRegistry(model);
+            weights = weightsOf(scenario, registry);
+            scenario.getCapacities().forEach((reference, capacity) -> {
+                int node = graph.indexOf(registry.getElement(reference));
+                if (nonNull(capacity.getServiceTimeMillis())) {
+                    serviceTimes[node] = capacity.getServiceTimeMillis();
+                }
+                if (nonNull(capacity.getConcurrency())) {
+                    servers[node] = capacity.getConcurrency();
+                }
+            });
+
+            var streams = scenario.getArrivals();
+            sources = new int[streams.size()];
+            streamRandoms = new SplittableRandom[streams.size()];
+            recordedPositions = new int[streams.size()];
+            for (int stream = 0; stream < streams.size(); stream++) {
+                sources[stream] = graph.indexOf(registry.getElement(streams.get(stream).getSource()));
+                streamRandoms[stream] = root.split();
+            }
+        }
+
+        private double[] weightsOf(SimulationScenario scenario, ElementRegistry registry) {
+            var weights = Arrays.copyOf(LoadSimulator.this.weights, LoadSimulator.this.weights.length);
+            var weighted = new boolean[graph.edges()];
+            var configured = new boolean[graph.size()];
+            scenario.getWeights().forEach((reference, weight) -> {
+                var ends = reference.split(" -> ", 2);
+                if (ends.length != 2) {
+                    throw new IllegalArgumentException("The weight \"" + reference + "\" of scenario \""
+                            + scenario.getName() + "\" does not name a relationship as \"source -> destination\"");
+                }
+                int source = graph.indexOf(registry.getElement(ends[0].trim()));
+                int destination = graph.indexOf(registry.getElement(ends[1].trim()));
+                int edge = graph.start(source);
+                while (edge < graph.end(source) && graph.target(edge) != destination) {
+                    edge++;
+                }
+                if (edge == graph.end(source)) {
+                    throw new IllegalArgumentException("No relationship \"" + reference + "\" exists, weighted in "
+                            + "scenario \"" + scenario.getName() + "\"");
+                }
+                weights[edge] = weight;
+                weighted[edge] = true;
+                configured[source] = true;
+            });
+            for (int node = 0; node < graph.size(); node++) {
+                for (int edge = graph.start(node); configured[node] && edge < graph.end(node); edge++) {
+                    if (!weighted[edge]) {
+                        weights[edge] = 0;
+                    }
+                }
+            }
+            return weights;
+        }
+
+        private Result simulate() {
+            for (int stream = 0; stream < sources.length; stream++) {
+                scheduleArrival(stream, scenario.getArrivals().get(stream).getFromMillis());
+            }
+            double horizon = scenario.getDurationMillis();
+            while (!events.isEmpty() && events.peek().time <= horizon) {
+                var event = events.poll();
+                if (isNull(event.job)) {
+                    var job = new Job(event.time, true, 0);
+                    scheduleArrival(event.node, event.time);
+                    enter(job, sources[event.node], event.time);
+                } else {
+                    served(event.job, event.node, event.time);
+                }
+            }
+            for (int node = 0; node < graph.size(); node++) {
+                account(node, horizon);
+            }
+            return result(horizon);
+        }
+
+        /**
+         * Schedules the next arrival of a stream after the given time; for an arrival event the node is the stream.
+         */
+        private void scheduleArrival(int stream, double after) {
+            var arrivals = scenario.getArrivals().get(stream);
+            double time;
+            if (nonNull(arrivals.getRecordedMillis())) {
+                var recorded = arrivals.getRecordedMillis();
+                int position = recordedPositions[stream];
+                while (position < recorded.length && recorded[position] < arrivals.getFromMillis()) {
+                    position++;
+                }
+                if (position >= recorded.length) {
+                    return;
+                }
+                time = recorded[position];
+                recordedPositions[stream] = position + 1;
+            } else {
+                time = after + exponential(streamRandoms[stream], 1000 / arrivals.getRatePerSecond());
+            }
+            if (time <= arrivals.getToMillis()) {
+                events.add(new Event(time, sequence++, null, stream));
+            }
+        }
+
+        private void enter(Job job, int node, double time) {
+            job.push(node, time);
+            arrivals[node]++;
+            if (busy[node] < servers[node]) {
+                startService(job, node, time);
+            } else {
+                account(node, time);
+                var queue = queues.get(node);
+                queue.add(job);
+                maxQueue[node] = Math.max(maxQueue[node], queue.size());
+            }
+        }
+
+        private void startService(Job job, int node, double time) {
+            account(node, time);
+            busy[node]++;
+            double serviceTime = serviceTimes[node] > 0 ? exponential(randoms[node], serviceTimes[node]) : 0;
+            events.add(new Event(time + serviceTime, sequence++, job, node));
+        }
+
+        private void served(Job job, int node, double time) {
+            if (job.hops < MAX_ASYNCHRONOUS_HOPS) {
+                for (int edge = graph.start(node); edge < graph.end(node); edge++) {
+                    if (graph.isAsynchronous(edge)) {
+                        enter(new Job(time, false, job.hops + 1), graph.target(edge), time);
+                    }
+                }
+            }
+            int next = chooseSynchronousCall(job, node);
+            if (next >= 0) {
+                enter(job, next, time);
+                return;
+            }
+            for (int level = job.depth - 1; level >= 0; level--) {
+                int caller = job.nodes[level];
+                completions[caller]++;
+                latencies[caller].add(time - job.arrivedAt[level]);
+                release(caller, time);
+            }
+            if (job.measured) {
+                endToEnd.add(time - job.start);
+            }
+        }
+
+        private int chooseSynchronousCall(Job job, int node) {
+            double total = 0;
+            for (int edge = graph.start(node); edge < graph.end(node); edge++) {
+                if (isCallable(job, edge)) {
+                    total += weights[edge];
+                }
+            }
+            if (total <= 0) {
+                return -1;
+            }
+            double choice = randoms[node].nextDouble() * total;
+            int last = -1;
+            for (int edge = graph.start(node); edge < graph.end(node); edge++) {
+                if (isCallable(job, edge)) {
+                    last = graph.target(edge);
+                    choice -= weights[edge];
+                    if (choice < 0) {
+                        return last;
+                    }
+                }
+            }
+            return last;
+        }
+
+        private boolean isCallable(Job job, int edge) {
+            return !graph.isAsynchronous(edge) && weights[edge] > 0 && !job.isCalling(graph.target(edge));
+        }
+
+        private void release(int node, double time) {
+            account(node, time);
+            busy[node]--;
+            var queue = queues.get(node);
+            if (!queue.isEmpty()) {
+                startService(queue.poll(), node, time);
+            }
+        }
+
+        private void account(int node, double time) {
+            double elapsed = time - lastChange[node];
+            queueArea[node] += queues.get(node).size() * elapsed;
+            busyArea[node] += busy[node] * elapsed;
+            lastChange[node] = time;
+        }
+
+        private Result result(double horizon) {
+            var stations = new ArrayList<Station>();
+            for (int node = 0; node < graph.size(); node++) {
+                var element = graph.getElement(node);
+                if (arrivals[node] == 0 || element instanceof Person) {
+                    continue;
+                }
+                boolean limited = servers[node] != Integer.MAX_VALUE;
+                stations.add(new Station(element, arrivals[node], completions[node],
+                        completions[node] * 1000 / horizon, queueArea[node] / horizon, maxQueue[node],
+                        queues.get(node).size(), busyArea[node] / horizon,
+                        limited ? busyArea[node] / horizon / servers[node] : Double.NaN, latencies[node]));
+            }
+            return new Result(scenario, endToEnd, stations);
+        }
+    }
+
+    private static double exponential(SplittableRandom random, double mean) {
+        return -mean * Math.log(1 - random.nextDouble());
+    }
+
+    private static double budgetOf(Element element) {
+        var budget = element instanceof Container ? element.getProperties().get(CriticalPathAnalyzer.LATENCY_BUDGET)
+                : null;
+        return isNull(budget) ? 0 : Double.parseDouble(budget);
+    }
+
+    /**
+     * A scheduled event: an arrival from the stream {@code node} when there is no job yet, otherwise the end of the
+     * service of a job at {@code node}.
+     */
+    private static final class Event implements Comparable<Event> {
+
+        private final double time;
+        private final long sequence;
+        private final Job job;
+        private final int node;
+
+        private Event(double time, long sequence, Job job, int node) {
+            this.time = time;
+            this.sequence = sequence;
+            this.job = job;
+            this.node = node;
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            int byTime = Double.compare(time, other.time);
+            return byTime != 0 ? byTime : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * A request and the chain of synchronous calls it is in, innermost last.
+     */
+    private static final class Job {
+
+        private final double start;
+        private final boolean measured;
+        private final int hops;
+        private int[] nodes = new int[4];
+        private double[] arrivedAt = new double[4];
+        private int depth;
+
+        private Job(double start, boolean measured, int hops) {
+            this.start = start;
+            this.measured = measured;
+            this.hops = hops;
+        }
+
+        private void push(int node, double time) {
+            if (depth == nodes.length) {
+                nodes = Arrays.copyOf(nodes, depth * 2);
+                arrivedAt = Arrays.copyOf(arrivedAt, depth * 2);
+            }
+            nodes[depth] = node;
+            arrivedAt[depth] = time;
+            depth++;
+        }
+
+        private boolean isCalling(int node) {
+            for (int level = 0; level < depth; level++) {
+                if (nodes[level] == node) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * The outcome of a scenario: the end-to-end latency of the requests from its arrival streams that completed, and
+     * the statistics of every element that received requests.
+     */
+    public static final class Result {
+
+        private final SimulationScenario scenario;
+        private final LatencySketch endToEnd;
+        private final List<Station> stations;
+
+        private Result(SimulationScenario scenario, LatencySketch endToEnd, List<Station> stations) {
+            this.scenario = scenario;
+            this.endToEnd = endToEnd;
+            this.stations = Collections.unmodifiableList(stations);
+        }
+
+        public SimulationScenario getScenario() {
+            return scenario;
+        }
+
+        public LatencySketch getEndToEnd() {
+            return endToEnd;
+        }
+
+        public List<Station> getStations() {
+            return stations;
+        }
+    }
+
+    /**
+     * The statistics of one element over a scenario. The latency is the time from arriving at the element until it
+     * has answered, including waiting in its queue and for its synchronous calls; utilization is NaN for elements
+     * with unlimited concurrency.
+     */
+    public static final class Station {
+
+        private final Element element;
+        private final long arrivals;
+        private final long completions;
+        private final double throughputPerSecond;
+        private final double meanQueue;
+        private final int maxQueue;
+        private final int backlog;
+        private final double meanBusy;
+        private final double utilization;
+        private final LatencySketch latency;
+
+        private Station(Element element, long arrivals, long completions, double throughputPerSecond,
+                        double meanQueue, int maxQueue, int backlog, double meanBusy, double utilization,
+                        LatencySketch latency) {
+            this.element = element;
+            this.arrivals = arrivals;
+            this.completions = completions;
+            this.throughputPerSecond = throughputPerSecond;
+            this.meanQueue = meanQueue;
+            this.maxQueue = maxQueue;
+            this.backlog = backlog;
+            this.meanBusy = meanBusy;
+            this.utilization = utilization;
+            this.latency = latency;
+        }
+
+        public Element getElement() {
+            return element;
+        }
+
+        public long getArrivals() {
+            return arrivals;
+        }
+
+        public long getCompletions() {
+            return completions;
+        }
+
+        public double getThroughputPerSecond() {
+            return throughputPerSecond;
+        }
+
+        public double getMeanQueue() {
+            return meanQueue;
+        }
+
+        public int getMaxQueue() {
+            return maxQueue;
+        }
+
+        /**
+         * The number of requests still waiting in the queue when the scenario ended.
+         */
+        public int getBacklog() {
+            return backlog;
+        }
+
+        public double getMeanBusy() {
+            return meanBusy;
+        }
+
+        public double getUtilization() {
+            return utilization;
+        }
+
+        public LatencySketch getLatency() {
+            return latency;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package no.unit.nva;
+
+import com.structurizr.model.Component;
+import com.structurizr.model.Container;
+import com.structurizr.model.Element;
+import com.structurizr.model.Person;
+import com.structurizr.model.Relationship;
+import com.structurizr.model.SoftwareSystem;
+import com.structurizr.model.StaticStructureElement;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Builds a model from definitions in two passes: elements are created as soon as they arrive, relationships are
+ * queued and resolved through the {@link ElementRegistry} name index once every element exists. Relationships are
+ * created in the order they were declared, because Structurizr derives implied relationships from that order.
+ */
+public class ModelBuilder implements ModelDefinitionHandler {
+
+    private final ElementRegistry registry;
+    private final List<RelationshipDefinition> pendingRelationships = new ArrayList<>();
+
+    public ModelBuilder(ElementRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void element(ElementDefinition definition) {
+        Element element;
+        switch (definition.getKind()) {
+            case SOFTWARE_SYSTEM:
+                element = registry.addSoftwareSystem(definition.getName(), definition.getDescription());
+                break;
+            case PERSON:
+                element = registry.addPerson(definition.getName(), definition.getDescription());
+                break;
+            case CONTAINER:
+                element = registry.addContainer(registry.getSoftwareSystem(definition.getParent()),
+                        definition.getName(), definition.getDescription(), definition.getTechnology());
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported element kind " + definition.getKind());
+        }
+        element.addTags(definition.getTags().toArray(new String[0]));
+        definition.getProperties().forEach(element::addProperty);
+    }
+
+    @Override
+    public void relationship(RelationshipDefinition definition) {
+        pendingRelationships.add(definition);
+    }
+
+    public void resolveRelationships() {
+        for (RelationshipDefinition definition : pendingRelationships) {
+            createRelationship(definition);
+        }
+        pendingRelationships.clear();
+    }
+
+    private void createRelationship(RelationshipDefinition definition) {
+        var source = registry.getElement(definition.getSource());
+        var destination = registry.getElement(definition.getDestination());
+        if (!(source instanceof StaticStructureElement)) {
+            throw new IllegalArgumentException("\"" + definition.getSource() + "\" cannot be the source of a relationship");
+        }
+        var relationship = uses((StaticStructureElement) source, destination, definition);
+        if (isNull(relationship)) {
+            throw new IllegalArgumentException("The relationship \"" + definition.getSource() + "\" -> \""
+                    + definition.getDestination() + "\" (" + definition.getDescription() + ") already exists");
+        }
+        relationship.addTags(definition.getTags().toArray(new String[0]));
+        definition.getProperties().forEach(relationship::addProperty);
+    }
+
+    private static Relationship uses(StaticStructureElement source, Element destination,
+                                     RelationshipDefinition definition) {
+        var description = definition.getDescription();
+        var technology = definition.getTechnology();
+        var interactionStyle = definition.getInteractionStyle();
+        if (destination instanceof SoftwareSystem) {
+            return source.uses((SoftwareSystem) destination, description, technology, interactionStyle);
+        } else if (destination instanceof Container) {
+            return source.uses((Container) destination, description, technology, interactionStyle);
+        } else if (destination instanceof Component) {
+            return source.uses((Component) destination, description, technology, interactionStyle);
+        } else if (destination instanceof Person) {
+            return source instanceof Person
+                    ? ((Person) source).interactsWith((Person) destination, description, technology, interactionStyle)
+                    : source.delivers((Person) destination, description, technology, interactionStyle);
+        }
+        throw new IllegalArgumentException("\"" + definition.getDestination() + "\" cannot be the destination of a "
+                + "relationship");
+    }
+}
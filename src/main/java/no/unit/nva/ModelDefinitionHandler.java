@@ -0,0 +1,29 @@
+package no.unit.nva;
+
+/**
+ * Receives element and relationship definitions, in document order, while model fragments are being parsed.
+ */
+public interface ModelDefinitionHandler {
+
+    void element(ElementDefinition element);
+
+    void relationship(RelationshipDefinition relationship);
+
+    /**
+     * Receives the removal of an element, and with it its relationships, by element reference. Only variant overlays
+     * remove what the base model defines.
+     */
+    default void removeElement(String reference) {
+        throw new IllegalArgumentException("Cannot remove \"" + reference + "\": removals are only allowed in "
+                + "variant overlays");
+    }
+
+    /**
+     * Receives the removal of the relationship between two elements with the given description, or of all their
+     * relationships when the description is null.
+     */
+    default void removeRelationship(RelationshipDefinition relationship) {
+        throw new IllegalArgumentException("Cannot remove the relationship \"" + relationship.getSource() + "\" -> \""
+                + relationship.getDestination() + "\": removals are only allowed in variant overlays");
+    }
+}
@@ -0,0 +1,227 @@
+package no.unit.nva;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * The element and relationship definitions of a directory of model fragments, read once and kept as immutable lists,
+ * so that any number of workspaces, such as the variants of a model, can be built from them without parsing the
+ * fragments again. An overlay adds definitions, replaces the definitions of the same element or of the same
+ * relationship in place, and removes elements, with their containers and the relationships of all of them, and single
+ * relationships.
+ */
+public final class ModelDefinitions {
+
+    private final List<ElementDefinition> elements;
+    private final List<RelationshipDefinition> relationships;
+
+    public ModelDefinitions(List<ElementDefinition> elements, List<RelationshipDefinition> relationships) {
+        this.elements = List.copyOf(elements);
+        this.relationships = List.copyOf(relationships);
+    }
+
+    public static ModelDefinitions read(Path directory) throws IOException {
+        var recorder = new Recorder();
+        new ModelLoader().read(directory, recorder);
+        return recorder.toDefinitions(directory);
+    }
+
+    /**
+     * Reads a single fragment, so that a model can be kept up to date by reading only the fragments that changed and
+     * joining the definitions of all of them with {@link #join(List)}.
+     */
+    public static ModelDefinitions readFragment(Path fragment) throws IOException {
+        var recorder = new Recorder();
+        new ModelFragmentParser().parse(fragment, recorder);
+        return recorder.toDefinitions(fragment);
+    }
+
+    /**
+     * Returns the definitions of every part, in order, as if they had been read from one directory.
+     */
+    public static ModelDefinitions join(List<ModelDefinitions> parts) {
+        var elements = new ArrayList<ElementDefinition>();
+        var relationships = new ArrayList<RelationshipDefinition>();
+        for (ModelDefinitions part : parts) {
+            elements.addAll(part.elements);
+            relationships.addAll(part.relationships);
+        }
+        return new ModelDefinitions(elements, relationships);
+    }
+
+    /**
+     * Returns these definitions with the fragments in {@code directory} applied on top. Removing an element or a
+     * relationship that does not exist is an error, as it usually means the base model has been renamed under the
+     * overlay, and so is adding a container or a relationship to an element the overlay removes.
+     */
+    public ModelDefinitions withOverlay(Path directory) throws IOException {
+        var overlay = new Recorder();
+        new ModelLoader().read(directory, overlay);
+        var references = new References(elements, overlay.elements);
+
+        var mergedElements = new LinkedHashMap<String, ElementDefinition>();
+        elements.forEach(element -> mergedElements.put(keyOf(element), element));
+        var removedElements = new HashSet<String>();
+        for (String reference : overlay.removedElements) {
+            var key = references.resolve(reference);
+            if (isNull(mergedElements.remove(key))) {
+                throw new IOException(directory + " removes \"" + reference + "\", which is not in the model");
+            }
+            removedElements.add(key);
+            var children = mergedElements.keySet().stream()
+                    .filter(child -> child.startsWith(key + "/"))
+                    .collect(Collectors.toList());
+            children.forEach(mergedElements::remove);
+            removedElements.addAll(children);
+        }
+        var overlayKeys = overlay.elements.stream().map(ModelDefinitions::keyOf).collect(Collectors.toSet());
+        for (ElementDefinition element : overlay.elements) {
+            var parent = element.getParent();
+            if (nonNull(parent) && removedElements.contains(parent) && !overlayKeys.contains(parent)) {
+                throw new IOException(directory + " adds \"" + element.getName() + "\" to \"" + parent
+                        + "\", which it removes");
+            }
+            mergedElements.put(keyOf(element), element);
+        }
+
+        var mergedRelationships = new LinkedHashMap<String, RelationshipDefinition>();
+        for (RelationshipDefinition relationship : relationships) {
+            if (!removedElements.contains(references.resolve(relationship.getSource()))
+                    && !removedElements.contains(references.resolve(relationship.getDestination()))) {
+                mergedRelationships.put(references.relationshipKey(relationship), relationship);
+            }
+        }
+        for (RelationshipDefinition removal : overlay.removedRelationships) {
+            var endpoints = references.endpointsOf(removal);
+            boolean removed = isNull(removal.getDescription())
+                    ? mergedRelationships.keySet().removeIf(key -> key.startsWith(endpoints))
+                    : nonNull(mergedRelationships.remove(references.relationshipKey(removal)));
+            if (!removed) {
+                throw new IOException(directory + " removes the relationship \"" + removal.getSource() + "\" -> \""
+                        + removal.getDestination() + "\", which is not in the model");
+            }
+        }
+        for (RelationshipDefinition relationship : overlay.relationships) {
+            for (String reference : List.of(relationship.getSource(), relationship.getDestination())) {
+                var key = references.resolve(reference);
+                if (removedElements.contains(key) && !mergedElements.containsKey(key)) {
+                    throw new IOException(directory + " adds the relationship \"" + relationship.getSource()
+                            + "\" -> \"" + relationship.getDestination() + "\", but removes \"" + reference + "\"");
+                }
+            }
+            mergedRelationships.put(references.relationshipKey(relationship), relationship);
+        }
+        return new ModelDefinitions(new ArrayList<>(mergedElements.values()),
+                new ArrayList<>(mergedRelationships.values()));
+    }
+
+    public void addTo(ElementRegistry registry) {
+        var builder = new ModelBuilder(registry);
+        elements.forEach(builder::element);
+        relationships.forEach(builder::relationship);
+        builder.resolveRelationships();
+    }
+
+    public List<ElementDefinition> getElements() {
+        return elements;
+    }
+
+    public List<RelationshipDefinition> getRelationships() {
+        return relationships;
+    }
+
+    private static String keyOf(ElementDefinition element) {
+        return element.getKind() == ElementDefinition.Kind.CONTAINER
+                ? element.getParent() + "/" + element.getName()
+                : element.getName();
+    }
+
+    /**
+     * Resolves element references, which are either a unique name or {@code Software System/Container}, to the
+     * qualified key of the element, in the same way as the {@link ElementRegistry} does once the model is built.
+     */
+    private static final class References {
+
+        private final Map<String, String> keys = new HashMap<>();
+        private final Set<String> ambiguousNames = new HashSet<>();
+
+        private References(List<ElementDefinition> base, List<ElementDefinition> overlay) {
+            var names = new HashMap<String, String>();
+            for (List<ElementDefinition> definitions : List.of(base, overlay)) {
+                for (ElementDefinition element : definitions) {
+                    var key = keyOf(element);
+                    keys.put(key, key);
+                    var previous = names.putIfAbsent(element.getName(), key);
+                    if (nonNull(previous) && !previous.equals(key)) {
+                        ambiguousNames.add(element.getName());
+                    }
+                }
+            }
+            names.forEach((name, key) -> {
+                if (!ambiguousNames.contains(name)) {
+                    keys.putIfAbsent(name, key);
+                }
+            });
+        }
+
+        private String resolve(String reference) {
+            return keys.getOrDefault(reference, reference);
+        }
+
+        private String endpointsOf(RelationshipDefinition relationship) {
+            return resolve(relationship.getSource()) + " -> " + resolve(relationship.getDestination()) + ": ";
+        }
+
+        private String relationshipKey(RelationshipDefinition relationship) {
+            return endpointsOf(relationship) + Objects.toString(relationship.getDescription(), "");
+        }
+    }
+
+    private static final class Recorder implements ModelDefinitionHandler {
+
+        private final List<ElementDefinition> elements = new ArrayList<>();
+        private final List<RelationshipDefinition> relationships = new ArrayList<>();
+        private final List<String> removedElements = new ArrayList<>();
+        private final List<RelationshipDefinition> removedRelationships = new ArrayList<>();
+
+        @Override
+        public void element(ElementDefinition element) {
+            elements.add(element);
+        }
+
+        @Override
+        public void relationship(RelationshipDefinition relationship) {
+            relationships.add(relationship);
+        }
+
+        @Override
+        public void removeElement(String reference) {
+            removedElements.add(reference);
+        }
+
+        @Override
+        public void removeRelationship(RelationshipDefinition relationship) {
+            removedRelationships.add(relationship);
+        }
+
+        private ModelDefinitions toDefinitions(Path source) throws IOException {
+            if (!removedElements.isEmpty() || !removedRelationships.isEmpty()) {
+                throw new IOException("The model in " + source + " removes definitions, which only variant overlays "
+                        + "may do");
+            }
+            return new ModelDefinitions(elements, relationships);
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package no.unit.nva;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.structurizr.model.InteractionStyle;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Streams a YAML or JSON model fragment token by token and hands every element and relationship to a
+ * {@link ModelDefinitionHandler} as soon as it has been read; the document itself is never held in memory. A fragment
+ * is an object with any of the arrays {@code softwareSystems}, {@code people}, {@code containers} and
+ * {@code relationships}. Elements may declare their outgoing relationships inline in a {@code uses} array, and
+ * containers name their software system in {@code softwareSystem}. A variant overlay may also have a {@code remove}
+ * array of {@code element} references and of relationships by {@code source}, {@code destination} and, optionally,
+ * {@code description}.
+ */
+public class ModelFragmentParser {
+
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final YAMLFactory YAML = new YAMLFactory();
+
+    public static boolean isFragment(Path file) {
+        var name = file.getFileName().toString();
+        return name.endsWith(".yaml") || name.endsWith(".yml") || name.endsWith(".json");
+    }
+
+    public void parse(Path file, ModelDefinitionHandler handler) throws IOException {
+        var factory = file.getFileName().toString().endsWith(".json") ? JSON : YAML;
+        try (var reader = Files.newBufferedReader(file); var parser = factory.createParser(reader)) {
+            if (isNull(parser.nextToken())) {
+                return;
+            }
+            expect(parser, JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                var section = parser.getCurrentName();
+                expectNext(parser, JsonToken.START_ARRAY);
+                while (nextEntry(parser)) {
+                    parseEntry(parser, section, handler);
+                }
+            }
+        } catch (JsonParseException e) {
+            var location = e.getLocation();
+            throw new IOException("Invalid model fragment " + file
+                    + (nonNull(location) ? " at line " + location.getLineNr() + ", column " + location.getColumnNr()
+                    : "") + ": " + e.getOriginalMessage(), e);
+        }
+    }
+
+    private static void parseEntry(JsonParser parser, String section, ModelDefinitionHandler handler)
+            throws IOException {
+        switch (section) {
+            case "softwareSystems":
+                parseElement(parser, ElementDefinition.Kind.SOFTWARE_SYSTEM, handler);
+                break;
+            case "people":
+                parseElement(parser, ElementDefinition.Kind.PERSON, handler);
+                break;
+            case "containers":
+                parseElement(parser, ElementDefinition.Kind.CONTAINER, handler);
+                break;
+            case "relationships":
+                handler.relationship(new RelationshipFields(parser).toDefinition(null));
+                break;
+            case "remove":
+                parseRemoval(parser, handler);
+                break;
+            default:
+                throw new JsonParseException(parser, "Unknown section \"" + section + "\"");
+        }
+    }
+
+    private static void parseElement(JsonParser parser, ElementDefinition.Kind kind, ModelDefinitionHandler handler)
+            throws IOException {
+        String parent = null;
+        String name = null;
+        String description = null;
+        String technology = null;
+        List<String> tags = List.of();
+        Map<String, String> properties = Map.of();
+        List<RelationshipFields> uses = new ArrayList<>();
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            var field = parser.getCurrentName();
+            switch (field) {
+                case "softwareSystem":
+                    parent = nextText(parser);
+                    break;
+                case "name":
+                    name = nextText(parser);
+                    break;
+                case "description":
+                    description = nextText(parser);
+                    break;
+                case "technology":
+                    technology = nextText(parser);
+                    break;
+                case "tags":
+                    tags = parseStrings(parser);
+                    break;
+                case "properties":
+                    properties = parseProperties(parser);
+                    break;
+                case "uses":
+                    expectNext(parser, JsonToken.START_ARRAY);
+                    while (nextEntry(parser)) {
+                        uses.add(new RelationshipFields(parser));
+                    }
+                    break;
+                default:
+                    throw new JsonParseException(parser, "Unknown element field \"" + field + "\"");
+            }
+        }
+        if (isNull(name)) {
+            throw new JsonParseException(parser, "Element without a name");
+        }
+        if (kind == ElementDefinition.Kind.CONTAINER && isNull(parent)) {
+            throw new JsonParseException(parser, "Container \"" + name + "\" does not name its softwareSystem");
+        }
+        handler.element(new ElementDefinition(kind, parent, name, description, technology, tags, properties));
+        for (RelationshipFields relationship : uses) {
+            handler.relationship(relationship.toDefinition(kind == ElementDefinition.Kind.CONTAINER
+                    ? parent + "/" + name
+                    : name));
+        }
+    }
+
+    private static void parseRemoval(JsonParser parser, ModelDefinitionHandler handler) throws IOException {
+        String element = null;
+        String source = null;
+        String destination = null;
+        String description = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            var field = parser.getCurrentName();
+            switch (field) {
+                case "element":
+                    element = nextText(parser);
+                    break;
+                case "source":
+                    source = nextText(parser);
+                    break;
+                case "destination":
+                    destination = nextText(parser);
+                    break;
+                case "description":
+                    description = nextText(parser);
+                    break;
+                default:
+                    throw new JsonParseException(parser, "Unknown removal field \"" + field + "\"");
+            }
+        }
+        if (nonNull(element) && isNull(source) && isNull(destination) && isNull(description)) {
+            handler.removeElement(element);
+        } else if (isNull(element) && nonNull(source) && nonNull(destination)) {
+            handler.removeRelationship(new RelationshipDefinition(source, destination, description, null, null,
+                    List.of(), Map.of()));
+        } else {
+            throw new JsonParseException(parser, "A removal names either an element, or the source and destination "
+                    + "of a relationship");
+        }
+    }
+
+    /**
+     * Moves to the next entry of an array of objects, and returns false at the end of the array.
+     */
+    private static boolean nextEntry(JsonParser parser) throws IOException {
+        var token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            return false;
+        }
+        expect(parser, JsonToken.START_OBJECT);
+        return true;
+    }
+
+    private static List<String> parseStrings(JsonParser parser) throws IOException {
+        expectNext(parser, JsonToken.START_ARRAY);
+        var values = new ArrayList<String>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            values.add(parser.getValueAsString());
+        }
+        return values;
+    }
+
+    private static Map<String, String> parseProperties(JsonParser parser) throws IOException {
+        expectNext(parser, JsonToken.START_OBJECT);
+        var values = new LinkedHashMap<String, String>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            var key = parser.getCurrentName();
+            values.put(key, nextText(parser));
+        }
+        return values;
+    }
+
+    private static String nextText(JsonParser parser) throws IOException {
+        var token = parser.nextToken();
+        if (!token.isScalarValue()) {
+            throw new JsonParseException(parser, "Expected a value for \"" + parser.getCurrentName() + "\"");
+        }
+        return token == JsonToken.VALUE_NULL ? null : parser.getValueAsString();
+    }
+
+    private static void expectNext(JsonParser parser, JsonToken expected) throws IOException {
+        parser.nextToken();
+        expect(parser, expected);
+    }
+
+    private static void expect(JsonParser parser, JsonToken expected) throws IOException {
+        if (parser.currentToken() != expected) {
+            throw new JsonParseException(parser, "Expected " + expected + " but found " + parser.currentToken());
+        }
+    }
+
+    private static final class RelationshipFields {
+
+        private String source;
+        private String destination;
+        private String description;
+        private String technology;
+        private InteractionStyle interactionStyle;
+        private List<String> tags = List.of();
+        private Map<String, String> properties = Map.of();
+
+        private RelationshipFields(JsonParser parser) throws IOException {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                var field = parser.getCurrentName();
+                switch (field) {
+                    case "source":
+                        source = nextText(parser);
+                        break;
+                    case "destination":
+                        destination = nextText(parser);
+                        break;
+                    case "description":
+                        description = nextText(parser);
+                        break;
+                    case "technology":
+                        technology = nextText(parser);
+                        break;
+                    case "interactionStyle":
+                        interactionStyle = interactionStyle(parser, nextText(parser));
+                        break;
+                    case "tags":
+                        tags = parseStrings(parser);
+                        break;
+                    case "properties":
+                        properties = parseProperties(parser);
+                        break;
+                    default:
+                        throw new JsonParseException(parser, "Unknown relationship field \"" + field + "\"");
+                }
+            }
+            if (isNull(destination)) {
+                throw new JsonParseException(parser, "Relationship without a destination");
+            }
+        }
+
+        private static InteractionStyle interactionStyle(JsonParser parser, String value) throws IOException {
+            try {
+                return InteractionStyle.valueOf(String.valueOf(value));
+            } catch (IllegalArgumentException e) {
+                throw new JsonParseException(parser, "Unknown interactionStyle \"" + value + "\", expected one of "
+                        + Arrays.toString(InteractionStyle.values()), e);
+            }
+        }
+
+        private RelationshipDefinition toDefinition(String inlineSource) throws IOException {
+            var resolvedSource = isNull(source) ? inlineSource : source;
+            if (isNull(resolvedSource)) {
+                throw new IOException("Relationship to \"" + destination + "\" without a source");
+            }
+            return new RelationshipDefinition(resolvedSource, destination, description, technology,
+                    interactionStyle, tags, properties);
+        }
+    }
+}
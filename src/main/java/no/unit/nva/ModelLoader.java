@@ -0,0 +1,37 @@
+package no.unit.nva;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Loads a model from a directory of YAML/JSON fragments, typically one per service. Fragments are read in path order,
+ * so that relationships are created in a predictable order.
+ */
+public class ModelLoader {
+
+    private final ModelFragmentParser parser = new ModelFragmentParser();
+
+    public void load(Path directory, ElementRegistry registry) throws IOException {
+        var builder = new ModelBuilder(registry);
+        read(directory, builder);
+        builder.resolveRelationships();
+    }
+
+    public void read(Path directory, ModelDefinitionHandler handler) throws IOException {
+        for (Path fragment : fragments(directory)) {
+            parser.parse(fragment, handler);
+        }
+    }
+
+    public static List<Path> fragments(Path directory) throws IOException {
+        try (var files = Files.walk(directory)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(ModelFragmentParser::isFragment)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package no.unit.nva;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.nonNull;
+
+/**
+ * Watches a directory of model fragments, including subdirectories created later, and calls back with the paths that
+ * changed once the files have been quiet for the debounce interval, so that an editor writing several files, or one
+ * file in several steps, triggers a single rebuild. Changes to files that are not fragments, such as editor swap files,
+ * are ignored. A created or deleted directory is reported as a whole, and when events were lost the watched directory
+ * itself is reported, so the listener should treat a changed path as covering everything below it.
+ */
+public class ModelWatcher {
+
+    private final Path directory;
+    private final Duration debounce;
+    private final Set<Path> registeredDirectories = new HashSet<>();
+
+    public ModelWatcher(Path directory, Duration debounce) {
+        this.directory = directory;
+        this.debounce = debounce;
+    }
+
+    public void watch(Listener listener) throws IOException, InterruptedException {
+        try (var watchService = directory.getFileSystem().newWatchService()) {
+            registerAll(watchService, directory);
+            while (!Thread.currentThread().isInterrupted()) {
+                var changed = new HashSet<Path>();
+                drain(watchService, watchService.take(), changed);
+                WatchKey next;
+                while (nonNull(next = watchService.poll(debounce.toMillis(), TimeUnit.MILLISECONDS))) {
+                    drain(watchService, next, changed);
+                }
+                if (!changed.isEmpty()) {
+                    listener.changed(changed);
+                }
+            }
+        }
+    }
+
+    private void drain(WatchService watchService, WatchKey key, Set<Path> changed) throws IOException {
+        var parent = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                changed.add(directory);
+                continue;
+            }
+            var path = parent.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                registerAll(watchService, path);
+                changed.add(path);
+            } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE && registeredDirectories.contains(path)) {
+                registeredDirectories.removeIf(registered -> registered.startsWith(path));
+                changed.add(path);
+            } else if (ModelFragmentParser.isFragment(path)) {
+                changed.add(path);
+            }
+        }
+        key.reset();
+    }
+
+    private void registerAll(WatchService watchService, Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes)
+                    throws IOException {
+                directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                registeredDirectories.add(directory);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    public interface Listener {
+
+        void changed(Set<Path> paths);
+    }
+}
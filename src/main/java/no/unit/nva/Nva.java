@@ -1,17 +1,25 @@
 package no.unit.nva;
 
 import com.structurizr.Workspace;
-import com.structurizr.api.StructurizrClient;
-import com.structurizr.api.StructurizrClientException;
-import com.structurizr.graphviz.GraphvizAutomaticLayout;
 import com.structurizr.model.Container;
-import com.structurizr.model.Model;
+import com.structurizr.model.Element;
+import com.structurizr.model.InteractionStyle;
 import com.structurizr.model.SoftwareSystem;
+import com.structurizr.util.WorkspaceUtils;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Objects;
-
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.isNull;
 import static java.util.Objects.nonNull;
 
 public class Nva {
@@ -43,258 +51,558 @@ public class Nva {
     public static final String INSTITUTION_SERVICE = "Institution Service";
     private static final String INSTITUTION_SOURCE = "Institution Source";
     public static final String DATA_STREAM = "Data stream service";
+    public static final String DATABASE = "Database";
     public static final String BUILD_GENERATED_GRAPHVIZ = "./build/generated/graphviz/";
+    public static final String BUILD_GENERATED_CACHE = "./build/generated/graphviz-cache/";
+    public static final String BUILD_GENERATED = "./build/generated/";
+    public static final String BUILD_PHASE_TIMINGS = "./build/phase-timings.json";
+    private static final String CHECK_MODEL = "--check-model";
+    private static final String WATCH = "--watch";
+    private static final String ANALYZE = "--analyze";
+    private static final String SIMULATE = "--simulate";
+    private static final String SNAPSHOT = "--snapshot";
+    private static final String DIFF = "--diff";
+    private static final String VARIANTS = "--variants";
+    private static final String DEFAULT_VARIANTS_DIR = "variants";
+    private static final String BUILD_GENERATED_VARIANTS = "./build/generated/variants/";
+    private static final String DEFAULT_SCENARIOS = "simulation/scenarios.yaml";
+    private static final String DEFAULT_MODEL_DIR = "model";
+    private static final String DEFAULT_TRAFFIC_ROUTES = "traffic/routes.yaml";
+    private static final int DEFAULT_PREVIEW_PORT = 8080;
+    private static final int AVAILABLE_PROCESSORS = Runtime.getRuntime().availableProcessors();
+    private static final int DEFAULT_LAYOUT_TIMEOUT_SECONDS = 120;
+    private static final int DEFAULT_LATENCY_SLO_MILLIS = 1000;
+    private static final int DEFAULT_MAX_CHAINS = 10_000;
+    private static final int HOTSPOTS = 10;
+    private static final Set<String> PHASES = Set.of("softwareSystems", "users", "containers", "model", "components",
+            "views", "traffic", "layout", "export", "upload");
 
     public static void main(String[] args) throws Exception {
+        if (args.length == 2 && CHECK_MODEL.equals(args[0])) {
+            checkModel(Path.of(args[1]));
+            return;
+        }
+        if (args.length == 1 && ANALYZE.equals(args[0])) {
+            analyze(buildWorkspace());
+            return;
+        }
+        if (args.length >= 1 && SIMULATE.equals(args[0])) {
+            simulate(buildWorkspace(), Path.of(args.length == 2 ? args[1] : DEFAULT_SCENARIOS));
+            return;
+        }
+        if ((args.length == 2 || args.length == 3) && SNAPSHOT.equals(args[0])) {
+            var workspace = args.length == 3
+                    ? WorkspaceUtils.loadWorkspaceFromJson(new File(args[1])) : buildLaidOutWorkspace();
+            WorkspaceSnapshot.of(workspace).write(Path.of(args[args.length - 1]));
+            return;
+        }
+        if (args.length == 3 && DIFF.equals(args[0])) {
+            diff(loadSnapshot(Path.of(args[1])), loadSnapshot(Path.of(args[2])));
+            return;
+        }
+        if (args.length >= 1 && VARIANTS.equals(args[0])) {
+            buildVariants(Path.of(args.length == 2 ? args[1] : DEFAULT_VARIANTS_DIR));
+            return;
+        }
+        if (args.length >= 1 && WATCH.equals(args[0])) {
+            if (args.length > 2) {
+                throw new IllegalArgumentException("Usage: Nva " + WATCH + " [model directory]");
+            }
+            watch(Path.of(args.length == 2 ? args[1] : getSetting("NVA_MODEL_DIR", DEFAULT_MODEL_DIR)));
+            return;
+        }
+        var instrumentation = new PhaseInstrumentation(Path.of(BUILD_PHASE_TIMINGS),
+                PhaseInstrumentation.parseBudgets(System.getenv("NVA_PHASE_BUDGETS"), PHASES));
+        try {
+            var workspace = buildWorkspace(instrumentation);
+            instrumentation.run("traffic", () -> addTraffic(workspace));
+            var layoutCache = new LayoutCache(new File(BUILD_GENERATED_CACHE));
+            instrumentation.run("layout", () -> generateGraphViz(workspace, layoutCache));
+            instrumentation.run("export", () -> getExportStage().apply(workspace));
+            instrumentation.run("upload", () -> persistToStructurizrDotCom(workspace));
+        } finally {
+            instrumentation.writeSummary();
+        }
+        instrumentation.checkBudgets();
+    }
+
+    static Workspace buildWorkspace() throws Exception {
+        return buildWorkspace(PhaseInstrumentation.disabled());
+    }
+
+    static Workspace buildWorkspace(PhaseInstrumentation instrumentation) throws Exception {
+        var modelDirectory = System.getenv("NVA_MODEL_DIR");
+        return isNull(modelDirectory)
+                ? buildWorkspace(instrumentation, Nva::addHandWrittenModel)
+                : buildWorkspace(instrumentation, loadModel(Path.of(modelDirectory)));
+    }
+
+    static Workspace buildWorkspace(PhaseInstrumentation instrumentation, ModelSource modelSource) throws Exception {
+        return buildWorkspace(instrumentation, modelSource, Nva::addComponents);
+    }
+
+    static Workspace buildWorkspace(PhaseInstrumentation instrumentation, ModelSource modelSource,
+                                    ComponentSource componentSource) throws Exception {
         Workspace workspace = getNvaApplicationWorkspace();
+        var registry = new ElementRegistry(workspace.getModel());
+        modelSource.addTo(registry, instrumentation);
+        instrumentation.run("components", () -> componentSource.addTo(registry));
+        var nvaCore = registry.getSoftwareSystem(NVA_CORE);
+
+        instrumentation.run("views", () -> {
+            createSystemContextView(workspace, nvaCore);
+            createContainerView(workspace, nvaCore);
+            createComponentViews(workspace, nvaCore);
+        });
+        return workspace;
+    }
+
+    static void addHandWrittenModel(ElementRegistry registry, PhaseInstrumentation instrumentation) throws Exception {
+        var nvaCore = getNvaCoreApplication(registry);
+
+        instrumentation.run("softwareSystems", () -> addSoftwareSystems(registry, nvaCore));
+        instrumentation.run("users", () -> addUsers(registry, nvaCore));
+        instrumentation.run("containers", () -> addContainers(registry, nvaCore));
+    }
+
+    static ModelSource loadModel(Path modelDirectory) {
+        return (registry, instrumentation) -> instrumentation.run("model",
+                () -> new ModelLoader().load(modelDirectory, registry));
+    }
+
+    private static void checkModel(Path modelDirectory) throws Exception {
+        var handWritten = Fingerprints.modelLines(
+                buildWorkspace(PhaseInstrumentation.disabled(), Nva::addHandWrittenModel).getModel());
+        var loaded = Fingerprints.modelLines(
+                buildWorkspace(PhaseInstrumentation.disabled(), loadModel(modelDirectory)).getModel());
+        if (handWritten.equals(loaded)) {
+            System.out.println("The model in " + modelDirectory + " matches the hand-written NVA model");
+            return;
+        }
+        handWritten.stream().filter(line -> !loaded.contains(line)).forEach(line -> System.out.println("- " + line));
+        loaded.stream().filter(line -> !handWritten.contains(line)).forEach(line -> System.out.println("+ " + line));
+        throw new IllegalStateException("The model in " + modelDirectory + " differs from the hand-written NVA model");
+    }
+
+    private static void analyze(Workspace workspace) {
         var model = workspace.getModel();
-        var nvaCore = getNvaCoreApplication(model);
+        int slo = getIntegerSetting("NVA_LATENCY_SLO_MS", DEFAULT_LATENCY_SLO_MILLIS);
+        int maxChains = getIntegerSetting("NVA_MAX_CHAINS", DEFAULT_MAX_CHAINS);
+        var analyzer = new CriticalPathAnalyzer(DependencyGraph.of(model), slo);
+        var result = analyzer.chains(new ElementRegistry(model).getElement(PUBLIC_API),
+                element -> element.getTags().contains(DATABASE), maxChains);
+        var chains = new ArrayList<>(result.getChains());
+        chains.sort(Comparator.comparingInt(CriticalPathAnalyzer.Chain::getLatencyMillis).reversed());
+
+        System.out.println("Synchronous chains through " + PUBLIC_API + " to storage, SLO " + slo + " ms:");
+        for (CriticalPathAnalyzer.Chain chain : chains) {
+            System.out.printf("%s %5d ms  %s%n", chain.isOverSlo() ? "OVER" : "    ", chain.getLatencyMillis(),
+                    namesOf(chain.getElements(), " -> "));
+            System.out.printf("               used by %s%n", namesOf(chain.getPeople(), ", "));
+        }
+        if (result.isTruncated()) {
+            System.out.println("Stopped after " + maxChains + " chains, raise NVA_MAX_CHAINS to see more");
+        }
+        System.out.println("Containers by transitive fan-in + fan-out:");
+        analyzer.hotspots().stream().limit(HOTSPOTS).forEach(hotspot -> System.out.printf("%5d in %5d out  %s%n",
+                hotspot.getFanIn(), hotspot.getFanOut(), hotspot.getElement().getName()));
+
+        long unbudgeted = chains.stream().filter(chain -> !isBudgeted(chain)).count();
+        if (!chains.isEmpty() && unbudgeted == chains.size()) {
+            throw new IllegalStateException("No container on the synchronous chains has a "
+                    + CriticalPathAnalyzer.LATENCY_BUDGET + ", so they cannot be checked against the latency SLO");
+        }
+        if (unbudgeted > 0) {
+            System.out.println(unbudgeted + " chains have no " + CriticalPathAnalyzer.LATENCY_BUDGET
+                    + " on any container and count 0 ms");
+        }
+        long overSlo = chains.stream().filter(CriticalPathAnalyzer.Chain::isOverSlo).count();
+        if (overSlo > 0) {
+            throw new IllegalStateException(overSlo + " synchronous chains exceed the latency SLO of " + slo + " ms");
+        }
+    }
+
+    private static boolean isBudgeted(CriticalPathAnalyzer.Chain chain) {
+        return chain.getElements().stream()
+                .anyMatch(element -> element.getProperties().containsKey(CriticalPathAnalyzer.LATENCY_BUDGET));
+    }
+
+    private static String namesOf(List<Element> elements, String separator) {
+        return elements.stream().map(Element::getName).collect(Collectors.joining(separator));
+    }
+
+    private static void simulate(Workspace workspace, Path scenarioFile) throws Exception {
+        var scenarios = SimulationScenario.load(scenarioFile);
+        addTraffic(workspace);
+        var results = new LoadSimulator(workspace.getModel()).runAll(scenarios, AVAILABLE_PROCESSORS);
+        for (LoadSimulator.Result result : results) {
+            var scenario = result.getScenario();
+            var endToEnd = result.getEndToEnd();
+            System.out.printf(Locale.ROOT, "%n%s: %.0f s, seed %d, %d requests completed, p50 %.1f ms, p99 %.1f ms%n",
+                    scenario.getName(), scenario.getDurationMillis() / 1000, scenario.getSeed(), endToEnd.getCount(),
+                    endToEnd.quantile(0.50), endToEnd.quantile(0.99));
+            System.out.println("  util  busy  req/s   queue    max  backlog    p50 ms    p99 ms  container");
+            result.getStations().stream()
+                    .sorted(Comparator.comparingDouble((LoadSimulator.Station station) ->
+                            Double.isNaN(station.getUtilization()) ? -1 : station.getUtilization()).reversed())
+                    .forEach(station -> System.out.printf(Locale.ROOT,
+                            "  %4s %5.1f %6.1f %7.1f %6d %8d %9.1f %9.1f  %s%n",
+                            Double.isNaN(station.getUtilization())
+                                    ? "-" : Math.round(station.getUtilization() * 100) + "%",
+                            station.getMeanBusy(), station.getThroughputPerSecond(), station.getMeanQueue(),
+                            station.getMaxQueue(), station.getBacklog(), station.getLatency().quantile(0.50),
+                            station.getLatency().quantile(0.99), station.getElement().getName()));
+        }
+    }
+
+    private static WorkspaceSnapshot loadSnapshot(Path file) throws Exception {
+        return file.getFileName().toString().endsWith(".json")
+                ? WorkspaceSnapshot.of(WorkspaceUtils.loadWorkspaceFromJson(file.toFile()))
+                : WorkspaceSnapshot.read(file);
+    }
+
+    private static void diff(WorkspaceSnapshot before, WorkspaceSnapshot after) {
+        var changes = SnapshotDiff.between(before, after).getChanges();
+        changes.forEach(System.out::println);
+        var counts = changes.stream().collect(Collectors.groupingBy(SnapshotDiff.Change::getKind,
+                Collectors.counting()));
+        System.out.println(counts.getOrDefault(SnapshotDiff.Change.Kind.ADDED, 0L) + " added, "
+                + counts.getOrDefault(SnapshotDiff.Change.Kind.REMOVED, 0L) + " removed, "
+                + counts.getOrDefault(SnapshotDiff.Change.Kind.CHANGED, 0L) + " changed");
+    }
+
+    private static void addTraffic(Workspace workspace) throws Exception {
+        var trafficLogs = System.getenv("NVA_TRAFFIC_LOGS");
+        if (isNull(trafficLogs)) {
+            return;
+        }
+        var routes = TrafficRoutes.load(Path.of(getSetting("NVA_TRAFFIC_ROUTES", DEFAULT_TRAFFIC_ROUTES)));
+        var ingestion = new TrafficIngestion(routes, AVAILABLE_PROCESSORS, TrafficIngestion.DEFAULT_CHUNK_SIZE);
+        var summary = ingestion.read(TrafficIngestion.logFiles(Path.of(trafficLogs)));
+        ingestion.apply(workspace, summary);
+        System.out.println("Read " + summary.getLines() + " log lines from " + trafficLogs + ", "
+                + summary.getUnmatched() + " unmatched and " + summary.getMalformed() + " malformed");
+    }
+
+    private static void addComponents(ElementRegistry registry) throws Exception {
+        var componentSources = System.getenv("NVA_COMPONENTS");
+        if (isNull(componentSources)) {
+            return;
+        }
+        System.out.println(getComponentScanner().apply(registry, ComponentSources.load(Path.of(componentSources))));
+    }
 
-        addSoftwareSystems(model, nvaCore);
-        addUsers(model, nvaCore);
-        addContainers(model, nvaCore);
+    private static ComponentScanner getComponentScanner() {
+        return new ComponentScanner(
+                Path.of(getSetting("NVA_COMPONENT_CACHE", ComponentScanner.DEFAULT_CACHE_DIRECTORY)),
+                AVAILABLE_PROCESSORS);
+    }
 
-        createSystemContextView(workspace, nvaCore);
-        createContainerView(workspace, nvaCore);
-        generateGraphViz(workspace);
-        persistToStructurizrDotCom(workspace);
+    private static void buildVariants(Path variantsDirectory) throws Exception {
+        var base = ModelDefinitions.read(Path.of(getSetting("NVA_MODEL_DIR", DEFAULT_MODEL_DIR)));
+        var componentSources = System.getenv("NVA_COMPONENTS");
+        ComponentSource components = registry -> { };
+        if (nonNull(componentSources)) {
+            var scanned = getComponentScanner().scan(ComponentSources.load(Path.of(componentSources)));
+            components = scanned::addTo;
+        }
+        var stage = new VariantStage(base, components, Path.of(BUILD_GENERATED_VARIANTS), getLayoutEngine(),
+                ExportFormat.parse(System.getenv("NVA_EXPORT_FORMATS")),
+                getIntegerSetting("NVA_VARIANT_WORKERS", AVAILABLE_PROCESSORS),
+                Duration.ofSeconds(getIntegerSetting("NVA_LAYOUT_TIMEOUT_SECONDS", DEFAULT_LAYOUT_TIMEOUT_SECONDS)));
+        stage.apply(VariantStage.variantsIn(variantsDirectory)).forEach(System.out::println);
     }
 
-    private static void persistToStructurizrDotCom(Workspace workspace) throws StructurizrClientException {
+    private static void persistToStructurizrDotCom(Workspace workspace) throws Exception {
         var structurizrApiKey = System.getenv("STRUCTURIZR_API_KEY");
         var structurizrSecretKey = System.getenv("STRUCTURIZR_SECRET_KEY");
         var structurizrWorkspaceId = System.getenv("STRUCTURIZR_WORKSPACE_ID");
 
         if (nonNull(structurizrApiKey) && nonNull(structurizrSecretKey) && nonNull(structurizrWorkspaceId)) {
-            var structurizrClient = new StructurizrClient(structurizrApiKey, structurizrSecretKey);
-            structurizrClient.putWorkspace(Integer.parseInt(structurizrWorkspaceId), workspace);
+            var uploader = new WorkspaceUploader(
+                    URI.create(getSetting("STRUCTURIZR_API_URL", WorkspaceUploader.DEFAULT_API_URL)),
+                    structurizrApiKey, structurizrSecretKey, Path.of(BUILD_GENERATED_CACHE));
+            uploader.setCompress(Boolean.parseBoolean(getSetting("STRUCTURIZR_GZIP", "false")));
+            var result = uploader.upload(Long.parseLong(structurizrWorkspaceId), workspace);
+            System.out.println(result);
         }
     }
 
-    private static void addContainers(Model model, SoftwareSystem softwareSystem) {
-        var publicApi = getPublicApi(softwareSystem);
-        addSinglePageAppContainer(model, softwareSystem, publicApi);
-        Container publicationService = addPublicationServiceContainer(softwareSystem, publicApi);
+    static void addContainers(ElementRegistry registry, SoftwareSystem softwareSystem) {
+        var publicApi = getPublicApi(registry, softwareSystem);
+        addSinglePageAppContainer(registry, softwareSystem, publicApi);
+        Container publicationService = addPublicationServiceContainer(registry, softwareSystem, publicApi);
 
-        addDataStorageContainer(softwareSystem, publicationService);
-        var dataStreamService = addDataStreamServiceContainer(softwareSystem, publicationService);
+        addDataStorageContainer(registry, softwareSystem, publicationService);
+        var dataStreamService = addDataStreamServiceContainer(registry, softwareSystem, publicationService);
 
-        addDoiIngressServiceContainer(model, softwareSystem, publicApi);
+        addDoiIngressServiceContainer(registry, softwareSystem, publicApi);
 
-        addDoiEgressServiceContainer(model, softwareSystem, dataStreamService);
+        addDoiEgressServiceContainer(registry, softwareSystem, dataStreamService);
 
-        addLibrarySystemServiceContainer(model, softwareSystem, publicApi);
+        addLibrarySystemServiceContainer(registry, softwareSystem, publicApi);
 
-        addProjectServiceContainer(model, softwareSystem, publicApi);
+        addProjectServiceContainer(registry, softwareSystem, publicApi);
 
-        addPublicationChannelServiceContainer(model, softwareSystem, publicApi);
+        addPublicationChannelServiceContainer(registry, softwareSystem, publicApi);
 
-        addAuthenticationServiceContainer(model, softwareSystem, publicApi);
-        addPostAuthenticationService(softwareSystem);
+        addAuthenticationServiceContainer(registry, softwareSystem, publicApi);
+        addPostAuthenticationService(registry, softwareSystem);
 
-        addInstitutionServiceContainer(model, softwareSystem, publicApi);
+        addInstitutionServiceContainer(registry, softwareSystem, publicApi);
 
-        addFileManagementServiceContainer(softwareSystem, publicApi);
+        addFileManagementServiceContainer(registry, softwareSystem, publicApi);
 
-        addSearchServiceContainer(softwareSystem, publicApi);
+        addSearchServiceContainer(registry, softwareSystem, publicApi);
     }
 
-    private static void addSearchServiceContainer(SoftwareSystem softwareSystem, Container userContainer) {
-        var searchService = addSearchService(softwareSystem);
+    private static void addSearchServiceContainer(ElementRegistry registry, SoftwareSystem softwareSystem, Container userContainer) {
+        var searchService = addSearchService(registry, softwareSystem);
         userContainer.uses(searchService, FORWARDS_REQUESTS_TO);
-        searchService.uses(Objects.requireNonNull(softwareSystem.getContainerWithName(DATA_STREAM)), "Observes events from");
+        searchService.uses(registry.getContainer(softwareSystem, DATA_STREAM), "Observes events from", null, InteractionStyle.Asynchronous);
     }
 
-    private static void addFileManagementServiceContainer(SoftwareSystem softwareSystem, Container userContainer) {
-        var fileManagementService = addFileManagementService(softwareSystem);
+    private static void addFileManagementServiceContainer(ElementRegistry registry, SoftwareSystem softwareSystem, Container userContainer) {
+        var fileManagementService = addFileManagementService(registry, softwareSystem);
         userContainer.uses(fileManagementService, FORWARDS_REQUESTS_TO);
     }
 
-    private static void addInstitutionServiceContainer(Model model, SoftwareSystem softwareSystem, Container userContainer) {
-        var institutionService = addInstitutionService(model, softwareSystem);
+    private static void addInstitutionServiceContainer(ElementRegistry registry, SoftwareSystem softwareSystem, Container userContainer) {
+        var institutionService = addInstitutionService(registry, softwareSystem);
         userContainer.uses(institutionService, FORWARDS_REQUESTS_TO);
     }
 
-    private static void addAuthenticationServiceContainer(Model model, SoftwareSystem softwareSystem, Container userContainer) {
-        var authenticationService = addAuthenticationService(model, softwareSystem);
+    private static void addAuthenticationServiceContainer(ElementRegistry registry, SoftwareSystem softwareSystem, Container userContainer) {
+        var authenticationService = addAuthenticationService(registry, softwareSystem);
         userContainer.uses(authenticationService, FORWARDS_REQUESTS_TO);
     }
 
-    private static void addPublicationChannelServiceContainer(Model model, SoftwareSystem softwareSystem, Container userContainer) {
-        var publicationChannelService = addPublicationChannelService(model, softwareSystem);
+    private static void addPublicationChannelServiceContainer(ElementRegistry registry, SoftwareSystem softwareSystem, Container userContainer) {
+        var publicationChannelService = addPublicationChannelService(registry, softwareSystem);
         userContainer.uses(publicationChannelService, FORWARDS_REQUESTS_TO);
     }
 
-    private static void addProjectServiceContainer(Model model, SoftwareSystem softwareSystem, Container userContainer) {
-        var projectsService = addProjectsService(model, softwareSystem);
+    private static void addProjectServiceContainer(ElementRegistry registry, SoftwareSystem softwareSystem, Container userContainer) {
+        var projectsService = addProjectsService(registry, softwareSystem);
         userContainer.uses(projectsService, FORWARDS_REQUESTS_TO);
     }
 
-    private static void addLibrarySystemServiceContainer(Model model, SoftwareSystem softwareSystem, Container userContainer) {
-        var librarySystemService = addLibrarySystemService(model, softwareSystem);
+    private static void addLibrarySystemServiceContainer(ElementRegistry registry, SoftwareSystem softwareSystem, Container userContainer) {
+        var librarySystemService = addLibrarySystemService(registry, softwareSystem);
         userContainer.uses(librarySystemService, FORWARDS_REQUESTS_TO);
     }
 
-    private static void addDoiEgressServiceContainer(Model model, SoftwareSystem softwareSystem, Container userContainer) {
-        var doiEgressService = addDoiEgressService(model, softwareSystem);
-        userContainer.uses(doiEgressService, "Listens to events from");
+    private static void addDoiEgressServiceContainer(ElementRegistry registry, SoftwareSystem softwareSystem, Container userContainer) {
+        var doiEgressService = addDoiEgressService(registry, softwareSystem);
+        userContainer.uses(doiEgressService, "Listens to events from", null, InteractionStyle.Asynchronous);
     }
 
-    private static void addDoiIngressServiceContainer(Model model, SoftwareSystem softwareSystem, Container userContainer) {
-        var doiIngressService = addDoiIngressService(model, softwareSystem);
+    private static void addDoiIngressServiceContainer(ElementRegistry registry, SoftwareSystem softwareSystem, Container userContainer) {
+        var doiIngressService = addDoiIngressService(registry, softwareSystem);
         userContainer.uses(doiIngressService, FORWARDS_REQUESTS_TO);
     }
 
-    private static void addDataStorageContainer(SoftwareSystem softwareSystem, Container userContainer) {
-        var dataStorage = getDataStorage(softwareSystem);
+    private static void addDataStorageContainer(ElementRegistry registry, SoftwareSystem softwareSystem, Container userContainer) {
+        var dataStorage = getDataStorage(registry, softwareSystem);
         userContainer.uses(dataStorage, "Creates, modifies and retrieves data in");
     }
 
-    private static Container addDataStreamServiceContainer(SoftwareSystem softwareSystem, Container usesContainer) {
-        var dataStream = getDataStreamService(softwareSystem);
-        dataStream.uses(usesContainer, "Observes changes in");
+    private static Container addDataStreamServiceContainer(ElementRegistry registry, SoftwareSystem softwareSystem, Container usesContainer) {
+        var dataStream = getDataStreamService(registry, softwareSystem);
+        dataStream.uses(usesContainer, "Observes changes in", null, InteractionStyle.Asynchronous);
         return dataStream;
     }
 
-    private static Container addPublicationServiceContainer(SoftwareSystem softwareSystem, Container userContainer) {
-        var publicationService = getPublicationService(softwareSystem);
+    private static Container addPublicationServiceContainer(ElementRegistry registry, SoftwareSystem softwareSystem, Container userContainer) {
+        var publicationService = getPublicationService(registry, softwareSystem);
         userContainer.uses(publicationService, FORWARDS_REQUESTS_TO);
         userContainer.uses(publicationService, FORWARDS_REQUESTS_TO);
         return publicationService;
     }
 
-    private static void addSinglePageAppContainer(Model model, SoftwareSystem softwareSystem, Container userContainer) {
-        var singlePageApp = getSinglePageApp(softwareSystem);
+    private static void addSinglePageAppContainer(ElementRegistry registry, SoftwareSystem softwareSystem, Container userContainer) {
+        var singlePageApp = getSinglePageApp(registry, softwareSystem);
         singlePageApp.uses(userContainer, "Gets data from");
-        singlePageApp.uses(Objects.requireNonNull(model.getSoftwareSystemWithName(AUTHENTICATION_SOURCE)), "Requests authentication from");
-        singlePageApp.uses(Objects.requireNonNull(model.getSoftwareSystemWithName(ORCID)), "Integrates with");
+        singlePageApp.uses(registry.getSoftwareSystem(AUTHENTICATION_SOURCE), "Requests authentication from");
+        singlePageApp.uses(registry.getSoftwareSystem(ORCID), "Integrates with");
     }
 
-    private static Container getDataStorage(SoftwareSystem softwareSystem) {
-        return softwareSystem.addContainer(DATA_STORAGE, "The data store for NVA", "AWS DynamoDB");
+    private static Container getDataStorage(ElementRegistry registry, SoftwareSystem softwareSystem) {
+        var dataStorage = registry.addContainer(softwareSystem, DATA_STORAGE, "The data store for NVA", "AWS DynamoDB");
+        dataStorage.addTags(DATABASE);
+        return dataStorage;
     }
 
-    private static Container getDataStreamService(SoftwareSystem softwareSystem) {
-        return softwareSystem.addContainer(DATA_STREAM, "Observer service for the data store", AWS_SERVERLESS_APPLICATION);
+    private static Container getDataStreamService(ElementRegistry registry, SoftwareSystem softwareSystem) {
+        return registry.addContainer(softwareSystem, DATA_STREAM, "Observer service for the data store", AWS_SERVERLESS_APPLICATION);
     }
 
-    private static Container getPublicationService(SoftwareSystem softwareSystem) {
-        return softwareSystem.addContainer(PUBLICATION_SERVICE, "Creates, updates and serves publication data", AWS_SERVERLESS_APPLICATION);
+    private static Container getPublicationService(ElementRegistry registry, SoftwareSystem softwareSystem) {
+        var publicationService = registry.addContainer(softwareSystem, PUBLICATION_SERVICE, "Creates, updates and serves publication data", AWS_SERVERLESS_APPLICATION);
+        return publicationService;
     }
 
-    private static Container getPublicApi(SoftwareSystem softwareSystem) {
-        return softwareSystem.addContainer(PUBLIC_API, "The public API for NVA", "AWS API Gateway");
+    private static Container getPublicApi(ElementRegistry registry, SoftwareSystem softwareSystem) {
+        var publicApi = registry.addContainer(softwareSystem, PUBLIC_API, "The public API for NVA", "AWS API Gateway");
+        return publicApi;
     }
 
-    private static Container getSinglePageApp(SoftwareSystem softwareSystem) {
-        return softwareSystem.addContainer(SINGLE_PAGE_APP, "The NVA web application", "React JS");
+    private static Container getSinglePageApp(ElementRegistry registry, SoftwareSystem softwareSystem) {
+        return registry.addContainer(softwareSystem, SINGLE_PAGE_APP, "The NVA web application", "React JS");
     }
 
-    private static Container addDoiIngressService(Model model, SoftwareSystem softwareSystem) {
-        var doiIngressService = softwareSystem.addContainer(DOI_INGRESS_SERVICE, "Requests and transforms data sourced from third-party DOI metadata services", AWS_SERVERLESS_APPLICATION);
-        doiIngressService.uses(Objects.requireNonNull(model.getSoftwareSystemWithName(DATACITE)), "Retrieves publication metdata from");
-        doiIngressService.uses(Objects.requireNonNull(model.getSoftwareSystemWithName(CROSS_REF)), "Retrieves publication metdata from");
-        doiIngressService.uses(Objects.requireNonNull(softwareSystem.getContainerWithName(PUBLICATION_SERVICE)), "Creates Publications in");
+    private static Container addDoiIngressService(ElementRegistry registry, SoftwareSystem softwareSystem) {
+        var doiIngressService = registry.addContainer(softwareSystem, DOI_INGRESS_SERVICE, "Requests and transforms data sourced from third-party DOI metadata services", AWS_SERVERLESS_APPLICATION);
+        doiIngressService.uses(registry.getSoftwareSystem(DATACITE), "Retrieves publication metdata from");
+        doiIngressService.uses(registry.getSoftwareSystem(CROSS_REF), "Retrieves publication metdata from");
+        doiIngressService.uses(registry.getContainer(softwareSystem, PUBLICATION_SERVICE), "Creates Publications in");
         return doiIngressService;
     }
 
-    private static Container addDoiEgressService(Model model, SoftwareSystem softwareSystem) {
-        var doiEgressService = softwareSystem.addContainer(DOI_EGRESS_SERVICE, "Mints DOI and updates metadata in DOI registrar third-party servicess", AWS_SERVERLESS_APPLICATION);
-        doiEgressService.uses(Objects.requireNonNull(model.getSoftwareSystemWithName(DATACITE)), "Mints DOIs, updates metdata data for DOIs in");
-        doiEgressService.uses(Objects.requireNonNull(softwareSystem.getContainerWithName(PUBLICATION_SERVICE)), "Observes changes in");
+    private static Container addDoiEgressService(ElementRegistry registry, SoftwareSystem softwareSystem) {
+        var doiEgressService = registry.addContainer(softwareSystem, DOI_EGRESS_SERVICE, "Mints DOI and updates metadata in DOI registrar third-party servicess", AWS_SERVERLESS_APPLICATION);
+        doiEgressService.uses(registry.getSoftwareSystem(DATACITE), "Mints DOIs, updates metdata data for DOIs in");
+        doiEgressService.uses(registry.getContainer(softwareSystem, PUBLICATION_SERVICE), "Observes changes in", null, InteractionStyle.Asynchronous);
         return doiEgressService;
     }
 
-    private static Container addLibrarySystemService(Model model, SoftwareSystem softwareSystem) {
-        var librarySystemService = softwareSystem.addContainer(LIBRARY_SYSTEM_SERVICE, "Gets last publication for an author name string", AWS_SERVERLESS_APPLICATION);
-        librarySystemService.uses(Objects.requireNonNull(model.getSoftwareSystemWithName(BIBSYS_LIBRARY_SYSTEM)), "Gets last publication for a author name from");
+    private static Container addLibrarySystemService(ElementRegistry registry, SoftwareSystem softwareSystem) {
+        var librarySystemService = registry.addContainer(softwareSystem, LIBRARY_SYSTEM_SERVICE, "Gets last publication for an author name string", AWS_SERVERLESS_APPLICATION);
+        librarySystemService.uses(registry.getSoftwareSystem(BIBSYS_LIBRARY_SYSTEM), "Gets last publication for a author name from");
         return librarySystemService;
     }
 
-    private static Container addProjectsService(Model model, SoftwareSystem softwareSystem) {
-        var projectsService = softwareSystem.addContainer(PROJECTS_SERVICE, "Gets project information by name string", AWS_SERVERLESS_APPLICATION);
-        projectsService.uses(Objects.requireNonNull(model.getSoftwareSystemWithName(CRISTIN_PROJECTS_API)), "Gets project data from");
+    private static Container addProjectsService(ElementRegistry registry, SoftwareSystem softwareSystem) {
+        var projectsService = registry.addContainer(softwareSystem, PROJECTS_SERVICE, "Gets project information by name string", AWS_SERVERLESS_APPLICATION);
+        projectsService.uses(registry.getSoftwareSystem(CRISTIN_PROJECTS_API), "Gets project data from");
         return projectsService;
     }
 
-    private static Container addPublicationChannelService(Model model, SoftwareSystem softwareSystem) {
-        var publicationChannelService = softwareSystem.addContainer(PUBLICATION_CHANNEL_SERVICE, "Gets publication channel data by ISSN/ISBN", AWS_SERVERLESS_APPLICATION);
-        publicationChannelService.uses(Objects.requireNonNull(model.getSoftwareSystemWithName(NSD_DBH)), "Gets publication channel data from");
+    private static Container addPublicationChannelService(ElementRegistry registry, SoftwareSystem softwareSystem) {
+        var publicationChannelService = registry.addContainer(softwareSystem, PUBLICATION_CHANNEL_SERVICE, "Gets publication channel data by ISSN/ISBN", AWS_SERVERLESS_APPLICATION);
+        publicationChannelService.uses(registry.getSoftwareSystem(NSD_DBH), "Gets publication channel data from");
         return publicationChannelService;
     }
 
-    private static Container addAuthenticationService(Model model, SoftwareSystem softwareSystem) {
-        var publicationChannelService = softwareSystem.addContainer(AUTHENTICATION_SERVICE, "Redirects users to authentication source, updates user record", "AWS Cognito");
-        publicationChannelService.uses(Objects.requireNonNull(model.getSoftwareSystemWithName(NSD_DBH)), "Gets publication channel data from");
+    private static Container addAuthenticationService(ElementRegistry registry, SoftwareSystem softwareSystem) {
+        var publicationChannelService = registry.addContainer(softwareSystem, AUTHENTICATION_SERVICE, "Redirects users to authentication source, updates user record", "AWS Cognito");
+        publicationChannelService.uses(registry.getSoftwareSystem(NSD_DBH), "Gets publication channel data from");
         return publicationChannelService;
     }
 
-    private static void addPostAuthenticationService(SoftwareSystem softwareSystem) {
-        var postAuthenticationService = softwareSystem.addContainer(POST_AUTHENTICATION_SERVICE, "Creates user data update request", AWS_SERVERLESS_APPLICATION);
-        postAuthenticationService.uses(Objects.requireNonNull(softwareSystem.getContainerWithName(AUTHENTICATION_SERVICE)), "Updates records in");
+    private static void addPostAuthenticationService(ElementRegistry registry, SoftwareSystem softwareSystem) {
+        var postAuthenticationService = registry.addContainer(softwareSystem, POST_AUTHENTICATION_SERVICE, "Creates user data update request", AWS_SERVERLESS_APPLICATION);
+        postAuthenticationService.uses(registry.getContainer(softwareSystem, AUTHENTICATION_SERVICE), "Updates records in");
     }
 
-    private static Container addInstitutionService(Model model, SoftwareSystem softwareSystem) {
-        var institutionService = softwareSystem.addContainer(INSTITUTION_SERVICE, "Requests institution by ID", AWS_SERVERLESS_APPLICATION);
-        institutionService.uses(Objects.requireNonNull(model.getSoftwareSystemWithName(INSTITUTION_SOURCE)), "Requests institution data from");
+    private static Container addInstitutionService(ElementRegistry registry, SoftwareSystem softwareSystem) {
+        var institutionService = registry.addContainer(softwareSystem, INSTITUTION_SERVICE, "Requests institution by ID", AWS_SERVERLESS_APPLICATION);
+        institutionService.uses(registry.getSoftwareSystem(INSTITUTION_SOURCE), "Requests institution data from");
         return institutionService;
     }
 
-    private static Container addFileManagementService(SoftwareSystem softwareSystem) {
-        var fileManagementService = softwareSystem.addContainer(FILE_SERVICE, "Creates and serves files", AWS_SERVERLESS_APPLICATION);
-        var blobStorage = softwareSystem.addContainer(BLOB_STORAGE, "The blob store for NVA", "AWS S3");
+    private static Container addFileManagementService(ElementRegistry registry, SoftwareSystem softwareSystem) {
+        var fileManagementService = registry.addContainer(softwareSystem, FILE_SERVICE, "Creates and serves files", AWS_SERVERLESS_APPLICATION);
+        var blobStorage = registry.addContainer(softwareSystem, BLOB_STORAGE, "The blob store for NVA", "AWS S3");
+        blobStorage.addTags(DATABASE);
         fileManagementService.uses(blobStorage, "Persists and retrieves data in");
         return fileManagementService;
     }
 
 
-    private static Container addSearchService(SoftwareSystem softwareSystem) {
-        var searchService = softwareSystem.addContainer("Search Service", "Searches the published Publications index", AWS_SERVERLESS_APPLICATION);
-        var indexService = softwareSystem.addContainer("Index service", "Index persistence for NVA", "AWS Elasticsearch");
+    private static Container addSearchService(ElementRegistry registry, SoftwareSystem softwareSystem) {
+        var searchService = registry.addContainer(softwareSystem, "Search Service", "Searches the published Publications index", AWS_SERVERLESS_APPLICATION);
+        var indexService = registry.addContainer(softwareSystem, "Index service", "Index persistence for NVA", "AWS Elasticsearch");
         searchService.uses(indexService, "Updates and reads from");
+        indexService.addTags(DATABASE);
         return searchService;
     }
 
-    private static void addUsers(Model model, SoftwareSystem nvaCore) {
-        addAnonymousUser(model, nvaCore);
-        addWebCrawlerUser(model, nvaCore);
-        addCreatorUser(model, nvaCore);
-        addCuratorUser(model, nvaCore);
-        addEditorUser(model, nvaCore);
-        addAdministratorUser(model, nvaCore);
-        addSystemAdministratorUser(model, nvaCore);
-        addExternalDataCreatorUser(model, nvaCore, "Student dissertations", "A source of data for student dissertations", "Imports student work data from");
-        addExternalDataCreatorUser(model, nvaCore, "Institutional archive", "A source of data for published academic work", "Imports data from");
+    static void addUsers(ElementRegistry registry, SoftwareSystem nvaCore) {
+        addAnonymousUser(registry, nvaCore);
+        addWebCrawlerUser(registry, nvaCore);
+        addCreatorUser(registry, nvaCore);
+        addCuratorUser(registry, nvaCore);
+        addEditorUser(registry, nvaCore);
+        addAdministratorUser(registry, nvaCore);
+        addSystemAdministratorUser(registry, nvaCore);
+        addExternalDataCreatorUser(registry, nvaCore, "Student dissertations", "A source of data for student dissertations", "Imports student work data from");
+        addExternalDataCreatorUser(registry, nvaCore, "Institutional archive", "A source of data for published academic work", "Imports data from");
     }
 
-    private static void addSoftwareSystems(Model model, SoftwareSystem nvaCore) {
-        addProjectSource(model, nvaCore);
-        addPersonaSource(model, nvaCore);
-        addAuthenticationSource(model, nvaCore);
-        addPersonIdentifierSource(model, nvaCore);
-        addLastPublicationDataSource(model, nvaCore);
-        addPublicationChannelSource(model, nvaCore);
-        addMetadataSources(model, nvaCore);
-        addInstitutionSource(model, nvaCore);
+    static void addSoftwareSystems(ElementRegistry registry, SoftwareSystem nvaCore) {
+        addProjectSource(registry, nvaCore);
+        addPersonaSource(registry, nvaCore);
+        addAuthenticationSource(registry, nvaCore);
+        addPersonIdentifierSource(registry, nvaCore);
+        addLastPublicationDataSource(registry, nvaCore);
+        addPublicationChannelSource(registry, nvaCore);
+        addMetadataSources(registry, nvaCore);
+        addInstitutionSource(registry, nvaCore);
     }
 
-    private static void addMetadataSources(Model model, SoftwareSystem nvaCore) {
-        var crossRef = getMetadataSource(CROSS_REF, model);
+    private static void addMetadataSources(ElementRegistry registry, SoftwareSystem nvaCore) {
+        var crossRef = getMetadataSource(CROSS_REF, registry);
         nvaCore.uses(crossRef, "Gets publication metadata from");
-        var dataCite = getMetadataSource(DATACITE, model);
+        var dataCite = getMetadataSource(DATACITE, registry);
         nvaCore.uses(dataCite, "Gets, creates and updates publication metadata in");
     }
 
-    private static void generateGraphViz(Workspace workspace) throws Exception {
-        File file = getFile();
+    private static void watch(Path modelDirectory) throws Exception {
+        var layoutEngine = getLayoutEngine();
+        var layoutStage = getLayoutStage(layoutEngine, new LayoutCache(new File(BUILD_GENERATED_CACHE)));
+        var previewServer = new PreviewServer(getFile().toPath(),
+                getIntegerSetting("NVA_PREVIEW_PORT", DEFAULT_PREVIEW_PORT));
+        new WatchMode(modelDirectory, layoutEngine, layoutStage, getExportStage(), previewServer).run();
+    }
+
+    private static ExportStage getExportStage() {
+        return new ExportStage(Path.of(BUILD_GENERATED), ExportFormat.parse(System.getenv("NVA_EXPORT_FORMATS")),
+                AVAILABLE_PROCESSORS);
+    }
+
+    /**
+     * Builds the workspace and lays out its views, from the layout cache where the views have not changed.
+     */
+    private static Workspace buildLaidOutWorkspace() throws Exception {
+        var workspace = buildWorkspace();
+        generateGraphViz(workspace, new LayoutCache(new File(BUILD_GENERATED_CACHE)));
+        return workspace;
+    }
+
+    private static void generateGraphViz(Workspace workspace, LayoutCache layoutCache) throws Exception {
+        getLayoutStage(getLayoutEngine(), layoutCache).apply(workspace);
+    }
+
+    private static LayoutStage getLayoutStage(LayoutEngine layoutEngine, LayoutCache layoutCache) {
+        return new LayoutStage(layoutEngine, layoutCache, AVAILABLE_PROCESSORS,
+                Duration.ofSeconds(getIntegerSetting("NVA_LAYOUT_TIMEOUT_SECONDS", DEFAULT_LAYOUT_TIMEOUT_SECONDS)));
+    }
+
+    private static LayoutEngine getLayoutEngine() throws IOException {
+        var layoutEngine = System.getenv("NVA_LAYOUT_ENGINE");
+        if (isNull(layoutEngine) || GraphvizLayoutEngine.NAME.equals(layoutEngine)) {
+            return new GraphvizLayoutEngine(getFile(), getIntegerSetting("NVA_LAYOUT_PROCESSES", AVAILABLE_PROCESSORS));
+        } else if (LayeredLayoutEngine.NAME.equals(layoutEngine)) {
+            return new LayeredLayoutEngine();
+        } else {
+            throw new IllegalArgumentException("Unknown layout engine: " + layoutEngine);
+        }
+    }
+
+    private static String getSetting(String name, String defaultValue) {
+        var value = System.getenv(name);
+        return nonNull(value) ? value : defaultValue;
+    }
 
-        var graphvizAutomaticLayout = new GraphvizAutomaticLayout(file);
-        graphvizAutomaticLayout.apply(workspace);
+    private static int getIntegerSetting(String name, int defaultValue) {
+        var value = System.getenv(name);
+        return nonNull(value) ? Integer.parseInt(value) : defaultValue;
     }
 
     private static File getFile() throws IOException {
         var file = new File(BUILD_GENERATED_GRAPHVIZ);
-        boolean created = file.mkdirs();
+        boolean created = file.isDirectory() || file.mkdirs();
         if (created) {
             return file;
         } else {
@@ -302,104 +610,126 @@ public class Nva {
         }
     }
 
-    private static void createSystemContextView(Workspace workspace, SoftwareSystem nvaCore) {
+    static void createSystemContextView(Workspace workspace, SoftwareSystem nvaCore) {
         var views = workspace.getViews();
         var systemContextView = views.createSystemContextView(nvaCore, "SystemContext", "System Context Diagram for NVA");
         systemContextView.addAllSoftwareSystems();
         systemContextView.addAllPeople();
     }
 
-    private static void createContainerView(Workspace workspace, SoftwareSystem nvaCore) {
+    static void createContainerView(Workspace workspace, SoftwareSystem nvaCore) {
         var views = workspace.getViews();
         var containerView = views.createContainerView(nvaCore, "Container view", "Container view for NVA");
         containerView.addAllContainers();
     }
 
-    private static SoftwareSystem getNvaCoreApplication(Model model) {
-        return model.addSoftwareSystem(NVA_CORE, "The NVA core application");
+    static void createComponentViews(Workspace workspace, SoftwareSystem nvaCore) {
+        var views = workspace.getViews();
+        nvaCore.getContainers().stream()
+                .filter(container -> !container.getComponents().isEmpty())
+                .sorted(Comparator.comparing(Container::getName))
+                .forEach(container -> {
+                    var componentView = views.createComponentView(container, "Component view " + container.getName(),
+                            "Component view for " + container.getName());
+                    componentView.addAllComponents();
+                });
+    }
+
+    static SoftwareSystem getNvaCoreApplication(ElementRegistry registry) {
+        return registry.addSoftwareSystem(NVA_CORE, "The NVA core application");
     }
 
-    private static void addAuthenticationSource(Model model, SoftwareSystem softwareSystem) {
-        var authenticationSource = model.addSoftwareSystem(AUTHENTICATION_SOURCE, "The FEIDE application");
+    private static void addAuthenticationSource(ElementRegistry registry, SoftwareSystem softwareSystem) {
+        var authenticationSource = registry.addSoftwareSystem(AUTHENTICATION_SOURCE, "The FEIDE application");
         softwareSystem.uses(authenticationSource, "Authenticates users with");
 
     }
 
-    private static void addPersonIdentifierSource(Model model, SoftwareSystem softwareSystem) {
-        var personIdentifierSource = model.addSoftwareSystem(ORCID, "The Orcid application");
+    private static void addPersonIdentifierSource(ElementRegistry registry, SoftwareSystem softwareSystem) {
+        var personIdentifierSource = registry.addSoftwareSystem(ORCID, "The Orcid application");
         softwareSystem.uses(personIdentifierSource, "Gets and creates ORCID identifier in");
     }
 
-    private static void addProjectSource(Model model, SoftwareSystem softwareSystem) {
-        var projectSource = model.addSoftwareSystem(CRISTIN_PROJECTS_API, "The application serving project data");
+    private static void addProjectSource(ElementRegistry registry, SoftwareSystem softwareSystem) {
+        var projectSource = registry.addSoftwareSystem(CRISTIN_PROJECTS_API, "The application serving project data");
         softwareSystem.uses(projectSource, "Gets project data from");
     }
 
-    private static void addPersonaSource(Model model, SoftwareSystem softwareSystem) {
-        var personaSource = model.addSoftwareSystem(BIBSYS_BARE_ARP, "The application serving persona data");
+    private static void addPersonaSource(ElementRegistry registry, SoftwareSystem softwareSystem) {
+        var personaSource = registry.addSoftwareSystem(BIBSYS_BARE_ARP, "The application serving persona data");
         softwareSystem.uses(personaSource, "Gets, creates and updates persona data in");
     }
 
-    private static void addLastPublicationDataSource(Model model, SoftwareSystem softwareSystem) {
-        var lastPublicationSource = model.addSoftwareSystem(BIBSYS_LIBRARY_SYSTEM, "The application serving library data");
+    private static void addLastPublicationDataSource(ElementRegistry registry, SoftwareSystem softwareSystem) {
+        var lastPublicationSource = registry.addSoftwareSystem(BIBSYS_LIBRARY_SYSTEM, "The application serving library data");
         softwareSystem.uses(lastPublicationSource, "Gets the last published item data for user in");
     }
 
-    private static SoftwareSystem getMetadataSource(String softwareSystem, Model model) {
-        return model.addSoftwareSystem(softwareSystem, "An application serving publication metadata");
+    private static SoftwareSystem getMetadataSource(String softwareSystem, ElementRegistry registry) {
+        return registry.addSoftwareSystem(softwareSystem, "An application serving publication metadata");
     }
 
-    private static void addPublicationChannelSource(Model model, SoftwareSystem softwareSystem) {
-        var publicationChannelSource = model.addSoftwareSystem(NSD_DBH, "Application serving publication channel data");
+    private static void addPublicationChannelSource(ElementRegistry registry, SoftwareSystem softwareSystem) {
+        var publicationChannelSource = registry.addSoftwareSystem(NSD_DBH, "Application serving publication channel data");
         softwareSystem.uses(publicationChannelSource, "Gets publication channel data from");
     }
 
-    private static void addInstitutionSource(Model model, SoftwareSystem softwareSystem) {
-        var institutionSource = model.addSoftwareSystem("Institution Source", "Applicaation");
+    private static void addInstitutionSource(ElementRegistry registry, SoftwareSystem softwareSystem) {
+        var institutionSource = registry.addSoftwareSystem("Institution Source", "Applicaation");
         softwareSystem.uses(institutionSource, "Gets institution data from");
     }
 
-    private static void addAnonymousUser(Model model, SoftwareSystem softwareSystem) {
-        var anonymousUser = model.addPerson("Anonymous User", "An anonymous user of the system");
+    private static void addAnonymousUser(ElementRegistry registry, SoftwareSystem softwareSystem) {
+        var anonymousUser = registry.addPerson("Anonymous User", "An anonymous user of the system");
         anonymousUser.uses(softwareSystem, "Views and searches for publicly available data for publications in");
     }
 
-    private static void addWebCrawlerUser(Model model, SoftwareSystem softwareSystem) {
-        var webCrawler = model.addPerson("Web crawler", "A web crawler from e.g. Google, Yandex");
+    private static void addWebCrawlerUser(ElementRegistry registry, SoftwareSystem softwareSystem) {
+        var webCrawler = registry.addPerson("Web crawler", "A web crawler from e.g. Google, Yandex");
         webCrawler.uses(softwareSystem, "Indexes information from");
     }
 
-    private static void addCreatorUser(Model model, SoftwareSystem softwareSystem) {
-        var creator = model.addPerson("Creator", "A user who adds Publications to NVA");
+    private static void addCreatorUser(ElementRegistry registry, SoftwareSystem softwareSystem) {
+        var creator = registry.addPerson("Creator", "A user who adds Publications to NVA");
         creator.uses(softwareSystem, "Creates and updates publications they own in");
     }
 
-    private static void addCuratorUser(Model model, SoftwareSystem softwareSystem) {
-        var curator = model.addPerson("Curator", "A user who curates NVA publications");
+    private static void addCuratorUser(ElementRegistry registry, SoftwareSystem softwareSystem) {
+        var curator = registry.addPerson("Curator", "A user who curates NVA publications");
         curator.uses(softwareSystem, "Administers, creates and updates publications in");
     }
 
-    private static void addEditorUser(Model model, SoftwareSystem softwareSystem) {
-        var editor = model.addPerson("Editor", "A user who edits NVA publications on behalf of users");
+    private static void addEditorUser(ElementRegistry registry, SoftwareSystem softwareSystem) {
+        var editor = registry.addPerson("Editor", "A user who edits NVA publications on behalf of users");
         editor.uses(softwareSystem, "Creates and updates publications in");
     }
 
-    private static void addAdministratorUser(Model model, SoftwareSystem softwareSystem) {
-        var administrator = model.addPerson("Aministrator", "A user who administers NVA users on behalf of an institution");
+    private static void addAdministratorUser(ElementRegistry registry, SoftwareSystem softwareSystem) {
+        var administrator = registry.addPerson("Aministrator", "A user who administers NVA users on behalf of an institution");
         administrator.uses(softwareSystem, "Administers users and publications in");
     }
 
-    private static void addSystemAdministratorUser(Model model, SoftwareSystem softwareSystem) {
-        var systemAdministrator = model.addPerson("System Aministrator", "A user who administers NVA on behalf of the system owner");
+    private static void addSystemAdministratorUser(ElementRegistry registry, SoftwareSystem softwareSystem) {
+        var systemAdministrator = registry.addPerson("System Aministrator", "A user who administers NVA on behalf of the system owner");
         systemAdministrator.uses(softwareSystem, "Administers institutions, users and publications in");
     }
 
-    private static void addExternalDataCreatorUser(Model model, SoftwareSystem softwareSystem, String name, String description, String relationDescription) {
-        var user = model.addPerson(name, description);
+    private static void addExternalDataCreatorUser(ElementRegistry registry, SoftwareSystem softwareSystem, String name, String description, String relationDescription) {
+        var user = registry.addPerson(name, description);
         user.uses(softwareSystem, relationDescription);
     }
 
-    private static Workspace getNvaApplicationWorkspace() {
+    static Workspace getNvaApplicationWorkspace() {
         return new Workspace("NVA", "The NVA application, allows users to create and administer their publications");
     }
+
+    interface ModelSource {
+
+        void addTo(ElementRegistry registry, PhaseInstrumentation instrumentation) throws Exception;
+    }
+
+    interface ComponentSource {
+
+        void addTo(ElementRegistry registry) throws Exception;
+    }
 }
@@ -0,0 +1,34 @@
+package no.unit.nva;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("no.unit.nva.Phase")
+@Label("NVA Pipeline Phase")
+@Category("NVA")
+@Description("One phase of the Nva generation pipeline")
+@StackTrace(false)
+class PhaseEvent extends jdk.jfr.Event {
+
+    @Label("Phase")
+    String phase;
+
+    @Label("CPU Time")
+    @Description("CPU time used by the whole process during the phase")
+    @Timespan(Timespan.NANOSECONDS)
+    long cpuTime;
+
+    @Label("Allocated")
+    @Description("Bytes allocated by the thread running the phase, or -1 for a phase that runs on a worker pool")
+    @DataAmount(DataAmount.BYTES)
+    long allocatedBytes;
+
+    @Label("Completed")
+    @Description("Whether the phase completed without throwing")
+    boolean completed;
+}
@@ -0,0 +1,238 @@
+package no.unit.nva;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Records wall time, CPU time and allocated bytes for each phase of the pipeline, emits them as {@link PhaseEvent}
+ * JFR events and writes a JSON summary. Phases run one after another, so CPU time is measured for the whole
+ * process and includes worker threads such as the layout pool. Allocation can only be measured per thread, so the
+ * allocation of a phase is that of the calling thread plus that of every task it hands to a pool wrapped with
+ * {@link #measured(Callable)}. Budgets are wall-time limits in milliseconds per phase, for example
+ * {@code layout=5000,upload=2000}.
+ */
+public class PhaseInstrumentation {
+
+    private static final LongAdder POOLED_ALLOCATION = new LongAdder();
+
+    private final Path summaryFile;
+    private final Map<String, Long> budgetsInMillis;
+    private final List<PhaseTiming> timings = new ArrayList<>();
+
+    public PhaseInstrumentation(Path summaryFile, Map<String, Long> budgetsInMillis) {
+        this.summaryFile = summaryFile;
+        this.budgetsInMillis = budgetsInMillis;
+    }
+
+    public static PhaseInstrumentation disabled() {
+        return new PhaseInstrumentation(null, Map.of());
+    }
+
+    /**
+     * Parses budgets for the phases in {@code phases}; a budget for any other phase is rejected, as it would never be
+     * checked.
+     */
+    public static Map<String, Long> parseBudgets(String budgets, Set<String> phases) {
+        var parsed = new HashMap<String, Long>();
+        if (isNull(budgets) || budgets.isBlank()) {
+            return parsed;
+        }
+        for (String budget : budgets.split(",")) {
+            var parts = budget.split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Phase budgets must look like phase=millis, got: " + budget);
+            }
+            var phase = parts[0].trim();
+            if (!phases.contains(phase)) {
+                throw new IllegalArgumentException("Unknown phase in budgets: " + phase + ", the phases are "
+                        + String.join(", ", new TreeSet<>(phases)));
+            }
+            parsed.put(phase, Long.parseLong(parts[1].trim()));
+        }
+        return parsed;
+    }
+
+    /**
+     * Wraps a task that is handed to a pool of worker threads, so that what it allocates is counted towards the
+     * phase that waits for it. The allocation is recorded before the task completes, and so before the phase can end.
+     */
+    public static <T> Callable<T> measured(Callable<T> task) {
+        return () -> {
+            var threadId = Thread.currentThread().getId();
+            var allocatedBefore = allocatedBytes(threadId);
+            try {
+                return task.call();
+            } finally {
+                POOLED_ALLOCATION.add(allocatedBytes(threadId) - allocatedBefore);
+            }
+        };
+    }
+
+    public static <T> List<Callable<T>> measured(List<Callable<T>> tasks) {
+        return tasks.stream().map(PhaseInstrumentation::measured).collect(Collectors.toList());
+    }
+
+    public void run(String phase, Phase work) throws Exception {
+        if (isNull(summaryFile)) {
+            work.run();
+            return;
+        }
+        var event = new PhaseEvent();
+        var threadId = Thread.currentThread().getId();
+        var allocatedBefore = allocatedBytes(threadId);
+        var pooledBefore = POOLED_ALLOCATION.sum();
+        var cpuBefore = processCpuTime();
+        var wallBefore = System.nanoTime();
+        boolean completed = false;
+        event.begin();
+        try {
+            work.run();
+            completed = true;
+        } finally {
+            event.end();
+            var timing = new PhaseTiming(phase,
+                    System.nanoTime() - wallBefore,
+                    processCpuTime() - cpuBefore,
+                    allocatedBytes(threadId) - allocatedBefore + POOLED_ALLOCATION.sum() - pooledBefore,
+                    completed);
+            timings.add(timing);
+            event.phase = phase;
+            event.cpuTime = timing.cpuNanos;
+            event.allocatedBytes = timing.allocatedBytes;
+            event.completed = completed;
+            event.commit();
+        }
+    }
+
+    public List<PhaseTiming> getTimings() {
+        return List.copyOf(timings);
+    }
+
+    /**
+     * Writes the timings recorded so far, including a phase that failed, to the summary file.
+     */
+    public void writeSummary() throws IOException {
+        if (isNull(summaryFile)) {
+            return;
+        }
+        var json = new StringBuilder("{\n  \"phases\": [");
+        for (int i = 0; i < timings.size(); i++) {
+            var timing = timings.get(i);
+            var budget = budgetsInMillis.get(timing.phase);
+            json.append(i == 0 ? "\n" : ",\n")
+                    .append("    {\"phase\": \"").append(escape(timing.phase)).append('"')
+                    .append(", \"completed\": ").append(timing.completed)
+                    .append(", \"wallTimeMs\": ").append(timing.wallMillis())
+                    .append(", \"cpuTimeMs\": ").append(timing.cpuNanos / 1_000_000)
+                    .append(", \"allocatedBytes\": ").append(timing.allocatedBytes)
+                    .append(", \"budgetMs\": ").append(nonNull(budget) ? budget.toString() : "null")
+                    .append(", \"withinBudget\": ").append(isWithinBudget(timing))
+                    .append('}');
+        }
+        json.append("\n  ]\n}\n");
+        if (nonNull(summaryFile.getParent())) {
+            Files.createDirectories(summaryFile.getParent());
+        }
+        Files.writeString(summaryFile, json, StandardCharsets.UTF_8);
+    }
+
+    public void checkBudgets() {
+        var exceeded = timings.stream()
+                .filter(timing -> !isWithinBudget(timing))
+                .map(timing -> timing.phase + " took " + timing.wallMillis() + " ms, budget is "
+                        + budgetsInMillis.get(timing.phase) + " ms")
+                .collect(Collectors.toList());
+        if (!exceeded.isEmpty()) {
+            throw new IllegalStateException("Phase budget exceeded: " + String.join("; ", exceeded));
+        }
+    }
+
+    private boolean isWithinBudget(PhaseTiming timing) {
+        var budget = budgetsInMillis.get(timing.phase);
+        return isNull(budget) || timing.wallMillis() <= budget;
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private static long processCpuTime() {
+        var operatingSystem = ManagementFactory.getOperatingSystemMXBean();
+        if (operatingSystem instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) operatingSystem).getProcessCpuTime();
+        }
+        return ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime();
+    }
+
+    private static long allocatedBytes(long threadId) {
+        var threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(threadId);
+        }
+        return 0L;
+    }
+
+    public interface Phase {
+
+        void run() throws Exception;
+    }
+
+    public static final class PhaseTiming {
+
+        private final String phase;
+        private final long wallNanos;
+        private final long cpuNanos;
+        private final long allocatedBytes;
+        private final boolean completed;
+
+        private PhaseTiming(String phase, long wallNanos, long cpuNanos, long allocatedBytes, boolean completed) {
+            this.phase = phase;
+            this.wallNanos = wallNanos;
+            this.cpuNanos = cpuNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.completed = completed;
+        }
+
+        public String getPhase() {
+            return phase;
+        }
+
+        public long getWallNanos() {
+            return wallNanos;
+        }
+
+        public long getCpuNanos() {
+            return cpuNanos;
+        }
+
+        /**
+         * The bytes allocated by the thread that ran the phase and by the pooled tasks it waited for.
+         */
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        public boolean isCompleted() {
+            return completed;
+        }
+
+        private long wallMillis() {
+            return wallNanos / 1_000_000;
+        }
+    }
+}
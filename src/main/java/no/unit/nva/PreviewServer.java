@@ -0,0 +1,165 @@
+package no.unit.nva;
+
+import com.structurizr.Workspace;
+import com.structurizr.io.json.JsonWriter;
+import com.structurizr.view.View;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Serves the output of the latest build on the loopback interface: every laid out view drawn as SVG under
+ * {@code /views/}, whichever layout engine was used, the .dot and .svg files in the Graphviz output directory, when
+ * Graphviz did the layout, the laid out workspace as {@code /workspace.json}, and an index linking to all of them.
+ */
+public class PreviewServer {
+
+    private static final String WORKSPACE_JSON = "/workspace.json";
+    private static final String VIEWS = "/views/";
+    private static final String SVG = ".svg";
+    private static final Map<String, String> CONTENT_TYPES = Map.of(
+            ".svg", "image/svg+xml",
+            ".dot", "text/vnd.graphviz; charset=utf-8");
+
+    private final Path directory;
+    private final HttpServer server;
+    private final ViewSvgRenderer viewRenderer = new ViewSvgRenderer();
+    private volatile byte[] workspaceJson = "{}".getBytes(StandardCharsets.UTF_8);
+    private volatile Map<String, byte[]> viewSvgs = Map.of();
+
+    public PreviewServer(Path directory, int port) throws IOException {
+        this.directory = directory.toAbsolutePath().normalize();
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/", this::handle);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void publish(Workspace workspace) throws Exception {
+        var json = new StringWriter();
+        new JsonWriter(false).write(workspace, json);
+        var svgs = new TreeMap<String, byte[]>();
+        for (View view : workspace.getViews().getViews()) {
+            svgs.put(view.getKey(), viewRenderer.render(view).getBytes(StandardCharsets.UTF_8));
+        }
+        workspaceJson = json.toString().getBytes(StandardCharsets.UTF_8);
+        viewSvgs = Collections.unmodifiableMap(svgs);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod()) && !"HEAD".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, "text/plain; charset=utf-8", new byte[0]);
+                return;
+            }
+            var path = exchange.getRequestURI().getPath();
+            if ("/".equals(path)) {
+                send(exchange, 200, "text/html; charset=utf-8", index().getBytes(StandardCharsets.UTF_8));
+            } else if (WORKSPACE_JSON.equals(path)) {
+                send(exchange, 200, "application/json", workspaceJson);
+            } else if (path.startsWith(VIEWS) && path.endsWith(SVG)) {
+                sendView(exchange, path.substring(VIEWS.length(), path.length() - SVG.length()));
+            } else {
+                sendFile(exchange, directory.resolve(path.substring(1)).normalize());
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void sendView(HttpExchange exchange, String key) throws IOException {
+        var svg = viewSvgs.get(key);
+        if (isNull(svg)) {
+            send(exchange, 404, "text/plain; charset=utf-8", "Not found".getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        send(exchange, 200, CONTENT_TYPES.get(SVG), svg);
+    }
+
+    private void sendFile(HttpExchange exchange, Path file) throws IOException {
+        var contentType = contentTypeOf(file);
+        if (!file.startsWith(directory) || !Files.isRegularFile(file) || isNull(contentType)) {
+            send(exchange, 404, "text/plain; charset=utf-8", "Not found".getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        send(exchange, 200, contentType, Files.readAllBytes(file));
+    }
+
+    private String index() throws IOException {
+        var html = new StringBuilder("<!DOCTYPE html>\n<html><head><title>NVA</title></head><body><ul>\n");
+        html.append("<li><a href=\"").append(WORKSPACE_JSON).append("\">workspace.json</a></li>\n");
+        for (String key : viewSvgs.keySet()) {
+            html.append("<li><a href=\"").append(link(VIEWS.substring(1) + key + SVG)).append("\">")
+                    .append(escape(key)).append("</a></li>\n");
+        }
+        for (Path file : outputFiles()) {
+            var name = file.getFileName().toString();
+            html.append("<li><a href=\"").append(link(name)).append("\">").append(escape(name)).append("</a></li>\n");
+        }
+        return html.append("</ul></body></html>\n").toString();
+    }
+
+    private List<Path> outputFiles() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (var files = Files.list(directory)) {
+            return files.filter(file -> nonNull(contentTypeOf(file))).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static String contentTypeOf(Path file) {
+        var name = file.getFileName().toString();
+        var extension = name.lastIndexOf('.');
+        return extension < 0 ? null : CONTENT_TYPES.get(name.substring(extension));
+    }
+
+    private static String link(String name) {
+        try {
+            return new URI(null, null, "/" + name, null).getRawPath();
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Cannot link to " + name, e);
+        }
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.getResponseHeaders().set("Cache-Control", "no-store");
+        var head = "HEAD".equals(exchange.getRequestMethod());
+        exchange.sendResponseHeaders(status, head || body.length == 0 ? -1 : body.length);
+        if (!head) {
+            exchange.getResponseBody().write(body);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package no.unit.nva;
+
+import com.structurizr.model.InteractionStyle;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable declaration of a relationship. Source and destination are element references that are resolved
+ * through an {@link ElementRegistry} once every element has been created.
+ */
+public final class RelationshipDefinition {
+
+    private final String source;
+    private final String destination;
+    private final String description;
+    private final String technology;
+    private final InteractionStyle interactionStyle;
+    private final List<String> tags;
+    private final Map<String, String> properties;
+
+    public RelationshipDefinition(String source, String destination, String description, String technology,
+                                  InteractionStyle interactionStyle, List<String> tags,
+                                  Map<String, String> properties) {
+        this.source = source;
+        this.destination = destination;
+        this.description = description;
+        this.technology = technology;
+        this.interactionStyle = interactionStyle;
+        this.tags = List.copyOf(tags);
+        this.properties = Map.copyOf(properties);
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getTechnology() {
+        return technology;
+    }
+
+    public InteractionStyle getInteractionStyle() {
+        return interactionStyle;
+    }
+
+    public List<String> getTags() {
+        return tags;
+    }
+
+    public Map<String, String> getProperties() {
+        return properties;
+    }
+}
@@ -0,0 +1,243 @@
+package no.unit.nva;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * One run of the {@link LoadSimulator}: how long to simulate, the random seed, the streams of requests arriving at
+ * elements of the model, the service time and concurrency of the containers, and the weights by which a request
+ * picks the relationship it follows, keyed {@code Source -> Destination}. A scenario file holds a list of scenarios,
+ * a default seed and duration, and container settings and weights shared by all scenarios that a scenario can
+ * override one by one. Durations and times are in seconds in the file and in milliseconds here.
+ */
+public final class SimulationScenario {
+
+    private static final long DEFAULT_SEED = 42L;
+    private static final double DEFAULT_DURATION_SECONDS = 600;
+
+    private final String name;
+    private final long seed;
+    private final double durationMillis;
+    private final List<Arrivals> arrivals;
+    private final Map<String, Capacity> capacities;
+    private final Map<String, Double> weights;
+
+    public SimulationScenario(String name, long seed, double durationMillis, List<Arrivals> arrivals,
+                              Map<String, Capacity> capacities, Map<String, Double> weights) {
+        this.name = name;
+        this.seed = seed;
+        this.durationMillis = durationMillis;
+        this.arrivals = List.copyOf(arrivals);
+        this.capacities = Collections.unmodifiableMap(new LinkedHashMap<>(capacities));
+        this.weights = Collections.unmodifiableMap(new LinkedHashMap<>(weights));
+    }
+
+    public static List<SimulationScenario> load(Path file) throws IOException {
+        var root = new ObjectMapper(new YAMLFactory()).readTree(file.toFile());
+        long seed = root.path("seed").asLong(DEFAULT_SEED);
+        double duration = root.path("duration").asDouble(DEFAULT_DURATION_SECONDS);
+        var defaults = capacities(root.path("containers"), Map.of(), file);
+        var defaultWeights = weights(root.path("weights"), Map.of(), file);
+        var scenarios = new ArrayList<SimulationScenario>();
+        for (JsonNode scenario : root.path("scenarios")) {
+            var name = required(scenario, "name", file).asText();
+            var arrivals = new ArrayList<Arrivals>();
+            for (JsonNode stream : scenario.path("arrivals")) {
+                arrivals.add(arrivals(stream, file));
+            }
+            if (arrivals.isEmpty()) {
+                throw new IOException("Scenario \"" + name + "\" in " + file + " has no arrivals");
+            }
+            scenarios.add(new SimulationScenario(name, scenario.path("seed").asLong(seed),
+                    scenario.path("duration").asDouble(duration) * 1000, arrivals,
+                    capacities(scenario.path("containers"), defaults, file),
+                    weights(scenario.path("weights"), defaultWeights, file)));
+        }
+        return scenarios;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public double getDurationMillis() {
+        return durationMillis;
+    }
+
+    public List<Arrivals> getArrivals() {
+        return arrivals;
+    }
+
+    /**
+     * The settings of the containers the scenario configures, by element reference.
+     */
+    public Map<String, Capacity> getCapacities() {
+        return capacities;
+    }
+
+    /**
+     * The weights of the relationships the scenario configures, by {@code Source -> Destination}. Once one
+     * relationship of an element has a weight, its relationships without one are not followed.
+     */
+    public Map<String, Double> getWeights() {
+        return weights;
+    }
+
+    private static Arrivals arrivals(JsonNode stream, Path file) throws IOException {
+        var source = required(stream, "source", file).asText();
+        double from = stream.path("from").asDouble(0) * 1000;
+        double to = stream.path("to").asDouble(Double.POSITIVE_INFINITY) * 1000;
+        if (stream.has("recorded")) {
+            return new Arrivals(source, 0, from, to, readOffsets(file.resolveSibling(stream.get("recorded").asText())));
+        }
+        double rate = required(stream, "rate", file).asDouble();
+        if (rate <= 0) {
+            throw new IOException("The arrivals at \"" + source + "\" in " + file + " need a positive rate");
+        }
+        return new Arrivals(source, rate, from, to, null);
+    }
+
+    private static double[] readOffsets(Path file) throws IOException {
+        var offsets = new ArrayList<Double>();
+        for (String line : Files.readAllLines(file)) {
+            var trimmed = line.trim();
+            if (!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+                offsets.add(Double.parseDouble(trimmed));
+            }
+        }
+        return offsets.stream().mapToDouble(Double::doubleValue).sorted().toArray();
+    }
+
+    private static Map<String, Capacity> capacities(JsonNode containers, Map<String, Capacity> defaults, Path file)
+            throws IOException {
+        var capacities = new LinkedHashMap<>(defaults);
+        var names = containers.fieldNames();
+        while (names.hasNext()) {
+            var name = names.next();
+            var settings = containers.get(name);
+            var inherited = capacities.getOrDefault(name, new Capacity(null, null));
+            var serviceTime = inherited.getServiceTimeMillis();
+            if (settings.has("serviceTime")) {
+                serviceTime = settings.get("serviceTime").asDouble();
+            }
+            var concurrency = inherited.getConcurrency();
+            if (settings.has("concurrency")) {
+                concurrency = settings.get("concurrency").asInt();
+            }
+            if ((nonNull(serviceTime) && serviceTime < 0) || (nonNull(concurrency) && concurrency < 1)) {
+                throw new IOException("\"" + name + "\" in " + file
+                        + " needs a non-negative serviceTime and a concurrency of at least 1");
+            }
+            capacities.put(name, new Capacity(serviceTime, concurrency));
+        }
+        return capacities;
+    }
+
+    private static Map<String, Double> weights(JsonNode weights, Map<String, Double> defaults, Path file)
+            throws IOException {
+        var merged = new LinkedHashMap<>(defaults);
+        var relationships = weights.fieldNames();
+        while (relationships.hasNext()) {
+            var relationship = relationships.next();
+            double weight = weights.get(relationship).asDouble(-1);
+            if (!relationship.contains(" -> ") || weight < 0) {
+                throw new IOException("The weight of \"" + relationship + "\" in " + file
+                        + " must be a non-negative number keyed by \"Source -> Destination\"");
+            }
+            merged.put(relationship, weight);
+        }
+        return merged;
+    }
+
+    private static JsonNode required(JsonNode node, String field, Path file) throws IOException {
+        if (!node.hasNonNull(field)) {
+            throw new IOException("An entry in " + file + " has no \"" + field + "\"");
+        }
+        return node.get(field);
+    }
+
+    /**
+     * Requests arriving at an element between two times: either a Poisson stream with a rate per second, or the
+     * recorded arrival times of a file with one offset in milliseconds per line.
+     */
+    public static final class Arrivals {
+
+        private final String source;
+        private final double ratePerSecond;
+        private final double fromMillis;
+        private final double toMillis;
+        private final double[] recordedMillis;
+
+        public Arrivals(String source, double ratePerSecond, double fromMillis, double toMillis,
+                        double[] recordedMillis) {
+            this.source = source;
+            this.ratePerSecond = ratePerSecond;
+            this.fromMillis = fromMillis;
+            this.toMillis = toMillis;
+            this.recordedMillis = recordedMillis;
+        }
+
+        public String getSource() {
+            return source;
+        }
+
+        public double getRatePerSecond() {
+            return ratePerSecond;
+        }
+
+        public double getFromMillis() {
+            return fromMillis;
+        }
+
+        public double getToMillis() {
+            return toMillis;
+        }
+
+        /**
+         * The recorded arrival times in ascending order, or null for a Poisson stream.
+         */
+        public double[] getRecordedMillis() {
+            return recordedMillis;
+        }
+    }
+
+    /**
+     * The mean service time and the number of requests a container serves at once, such as the reserved concurrency
+     * of a Lambda function or the capacity of a table. Either may be null, to use the default.
+     */
+    public static final class Capacity {
+
+        private final Double serviceTimeMillis;
+        private final Integer concurrency;
+
+        public Capacity(Double serviceTimeMillis, Integer concurrency) {
+            this.serviceTimeMillis = serviceTimeMillis;
+            this.concurrency = concurrency;
+        }
+
+        public Double getServiceTimeMillis() {
+            return serviceTimeMillis;
+        }
+
+        public Integer getConcurrency() {
+            return concurrency;
+        }
+    }
+}
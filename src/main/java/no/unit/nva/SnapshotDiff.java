@@ -0,0 +1,283 @@
+package no.unit.nva;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * The elements, relationships and views added, removed and changed between two {@link WorkspaceSnapshot}s. Elements
+ * are matched by canonical name, relationships by source, destination and description, and views by key, rather than
+ * by ID, since Structurizr numbers the elements in the order they are added. Each snapshot is indexed once in a hash
+ * map, so the comparison takes time linear in the size of the two snapshots; only the changes found are sorted, by
+ * key, for the report.
+ */
+public final class SnapshotDiff {
+
+    private static final String BEFORE = "first";
+    private static final String AFTER = "second";
+
+    private final List<Change> changes;
+
+    private SnapshotDiff(List<Change> changes) {
+        this.changes = Collections.unmodifiableList(changes);
+    }
+
+    public static SnapshotDiff between(WorkspaceSnapshot before, WorkspaceSnapshot after) {
+        var changes = new ArrayList<Change>();
+        var beforeNames = new Names(before);
+        var afterNames = new Names(after);
+
+        compare(Section.ELEMENT, index(BEFORE, Section.ELEMENT, before.getElements(),
+                WorkspaceSnapshot.ElementEntry::getCanonicalName),
+                index(AFTER, Section.ELEMENT, after.getElements(), WorkspaceSnapshot.ElementEntry::getCanonicalName),
+                (from, to, fields) -> {
+                    check(fields, "type", from.getType(), to.getType());
+                    check(fields, "name", from.getName(), to.getName());
+                    check(fields, "description", from.getDescription(), to.getDescription());
+                    check(fields, "technology", from.getTechnology(), to.getTechnology());
+                    check(fields, "url", from.getUrl(), to.getUrl());
+                    check(fields, "tags", tagSet(from.getTags()), tagSet(to.getTags()));
+                    checkProperties(fields, from.getProperties(), to.getProperties());
+                }, changes);
+        compare(Section.RELATIONSHIP, index(BEFORE, Section.RELATIONSHIP, before.getRelationships(),
+                beforeNames::relationshipKey),
+                index(AFTER, Section.RELATIONSHIP, after.getRelationships(), afterNames::relationshipKey),
+                (from, to, fields) -> {
+                    check(fields, "technology", from.getTechnology(), to.getTechnology());
+                    check(fields, "interactionStyle", from.getInteractionStyle(), to.getInteractionStyle());
+                    check(fields, "tags", tagSet(from.getTags()), tagSet(to.getTags()));
+                    check(fields, "implied", from.isImplied(), to.isImplied());
+                    checkProperties(fields, from.getProperties(), to.getProperties());
+                }, changes);
+        compare(Section.VIEW, index(BEFORE, Section.VIEW, before.getViews(), WorkspaceSnapshot.ViewEntry::getKey),
+                index(AFTER, Section.VIEW, after.getViews(), WorkspaceSnapshot.ViewEntry::getKey),
+                (from, to, fields) -> {
+                    check(fields, "type", from.getType(), to.getType());
+                    check(fields, "title", from.getTitle(), to.getTitle());
+                    check(fields, "description", from.getDescription(), to.getDescription());
+                    check(fields, "scope", beforeNames.element(from.getScope()), afterNames.element(to.getScope()));
+                    check(fields, "paperSize", from.getPaperSize(), to.getPaperSize());
+                    checkLayout(fields, "elements", "layout", beforeNames::element, from.getPositions(),
+                            afterNames::element, to.getPositions());
+                    checkLayout(fields, "relationships", "vertices", beforeNames::relationship, from.getVertices(),
+                            afterNames::relationship, to.getVertices());
+                }, changes);
+        return new SnapshotDiff(changes);
+    }
+
+    public List<Change> getChanges() {
+        return changes;
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    /**
+     * Indexes the entries of one section by key. Two entries with the same key could not be told apart, so the diff
+     * is refused rather than silently comparing only one of them.
+     */
+    private static <T> Map<String, T> index(String snapshot, Section section, List<T> entries,
+                                            Function<T, String> key) {
+        var index = new HashMap<String, T>(entries.size() * 2);
+        for (T entry : entries) {
+            var entryKey = key.apply(entry);
+            if (nonNull(index.put(entryKey, entry))) {
+                throw new IllegalArgumentException("The " + snapshot + " snapshot has more than one " + section
+                        + " \"" + entryKey + "\"");
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Reports the entries of {@code before} missing from {@code after}, then the entries of {@code after} that are
+     * new or differ, each sorted by key.
+     */
+    private static <T> void compare(Section section, Map<String, T> before, Map<String, T> after,
+                                    FieldComparison<T> comparison, List<Change> changes) {
+        var removed = new ArrayList<Change>();
+        var changed = new ArrayList<Change>();
+        for (String key : before.keySet()) {
+            if (!after.containsKey(key)) {
+                removed.add(new Change(Change.Kind.REMOVED, section, key, List.of()));
+            }
+        }
+        for (Map.Entry<String, T> entry : after.entrySet()) {
+            var previous = before.get(entry.getKey());
+            if (isNull(previous)) {
+                changed.add(new Change(Change.Kind.ADDED, section, entry.getKey(), List.of()));
+                continue;
+            }
+            var fields = new ArrayList<String>();
+            comparison.compare(previous, entry.getValue(), fields);
+            if (!fields.isEmpty()) {
+                changed.add(new Change(Change.Kind.CHANGED, section, entry.getKey(), fields));
+            }
+        }
+        removed.sort((a, b) -> a.getKey().compareTo(b.getKey()));
+        changed.sort((a, b) -> a.getKey().compareTo(b.getKey()));
+        changes.addAll(removed);
+        changes.addAll(changed);
+    }
+
+    private static void check(List<String> fields, String field, Object before, Object after) {
+        if (!Objects.equals(before, after)) {
+            fields.add(field);
+        }
+    }
+
+    private static void checkProperties(List<String> fields, Map<String, String> before, Map<String, String> after) {
+        var keys = new TreeSet<>(before.keySet());
+        keys.addAll(after.keySet());
+        for (String key : keys) {
+            check(fields, "property " + key, before.get(key), after.get(key));
+        }
+    }
+
+    /**
+     * Compares the members of a view by the names of the elements or relationships they show, and reports a layout
+     * change when a member shown in both has moved.
+     */
+    private static void checkLayout(List<String> fields, String membersField, String layoutField,
+                                    Function<String, String> beforeName, Map<String, int[]> before,
+                                    Function<String, String> afterName, Map<String, int[]> after) {
+        var beforeByName = new HashMap<String, int[]>(before.size() * 2);
+        before.forEach((id, coordinates) -> beforeByName.put(beforeName.apply(id), coordinates));
+        boolean moved = false;
+        int shared = 0;
+        for (Map.Entry<String, int[]> entry : after.entrySet()) {
+            var previous = beforeByName.get(afterName.apply(entry.getKey()));
+            if (nonNull(previous)) {
+                shared++;
+                moved |= !Arrays.equals(previous, entry.getValue());
+            }
+        }
+        if (shared != before.size() || shared != after.size()) {
+            fields.add(membersField);
+        }
+        if (moved) {
+            fields.add(layoutField);
+        }
+    }
+
+    private static Set<String> tagSet(String tags) {
+        var set = new HashSet<String>();
+        if (nonNull(tags)) {
+            for (String tag : tags.split(",")) {
+                if (!tag.isBlank()) {
+                    set.add(tag.trim());
+                }
+            }
+        }
+        return set;
+    }
+
+    private interface FieldComparison<T> {
+
+        void compare(T before, T after, List<String> fields);
+    }
+
+    /**
+     * Resolves the IDs of one snapshot to the names the snapshots are compared by.
+     */
+    private static final class Names {
+
+        private final Map<String, String> elements = new HashMap<>();
+        private final Map<String, String> relationships = new HashMap<>();
+
+        private Names(WorkspaceSnapshot snapshot) {
+            for (WorkspaceSnapshot.ElementEntry element : snapshot.getElements()) {
+                elements.put(element.getId(), element.getCanonicalName());
+            }
+            for (WorkspaceSnapshot.RelationshipEntry relationship : snapshot.getRelationships()) {
+                relationships.put(relationship.getId(), relationshipKey(relationship));
+            }
+        }
+
+        private String element(String id) {
+            return isNull(id) ? null : elements.getOrDefault(id, id);
+        }
+
+        private String relationship(String id) {
+            return relationships.getOrDefault(id, id);
+        }
+
+        private String relationshipKey(WorkspaceSnapshot.RelationshipEntry relationship) {
+            var key = element(relationship.getSourceId()) + " -> " + element(relationship.getDestinationId()) + ": "
+                    + Objects.toString(relationship.getDescription(), "");
+            return relationship.isImplied() ? key + " (implied)" : key;
+        }
+    }
+
+    public enum Section {
+        ELEMENT, RELATIONSHIP, VIEW;
+
+        @Override
+        public String toString() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * One added, removed or changed element, relationship or view, with the fields that changed.
+     */
+    public static final class Change {
+
+        public enum Kind {
+            ADDED("+"), REMOVED("-"), CHANGED("~");
+
+            private final String symbol;
+
+            Kind(String symbol) {
+                this.symbol = symbol;
+            }
+        }
+
+        private final Kind kind;
+        private final Section section;
+        private final String key;
+        private final List<String> fields;
+
+        private Change(Kind kind, Section section, String key, List<String> fields) {
+            this.kind = kind;
+            this.section = section;
+            this.key = key;
+            this.fields = List.copyOf(fields);
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public Section getSection() {
+            return section;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public List<String> getFields() {
+            return fields;
+        }
+
+        @Override
+        public String toString() {
+            var line = kind.symbol + " " + section + " " + key;
+            return fields.isEmpty() ? line : line + " (" + String.join(", ", fields) + ")";
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package no.unit.nva;
+
+import com.structurizr.Workspace;
+import com.structurizr.model.Relationship;
+import com.structurizr.view.RelationshipStyle;
+import com.structurizr.view.Styles;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Aggregates access logs into per-relationship traffic and attaches it to the model. Uncompressed logs are split into
+ * byte ranges and gzipped logs are read whole, all on a bounded worker pool; the partial results are merged in file
+ * order. Each relationship with traffic gets {@code traffic.*} properties, a volume tag that sets the line thickness
+ * and a latency tag that sets the line colour from the 99th percentile.
+ */
+public class TrafficIngestion {
+
+    public static final long DEFAULT_CHUNK_SIZE = 64L * 1024 * 1024;
+
+    static final String VOLUME_TAG = "Traffic volume ";
+    static final String LATENCY_OK_TAG = "Latency ok";
+    static final String LATENCY_SLOW_TAG = "Latency slow";
+    static final String LATENCY_CRITICAL_TAG = "Latency critical";
+
+    private static final int MAX_VOLUME = 5;
+    private static final double SLOW_P99_MILLIS = 500;
+    private static final double CRITICAL_P99_MILLIS = 2000;
+
+    private final TrafficRoutes routes;
+    private final int workers;
+    private final long chunkSize;
+
+    public TrafficIngestion(TrafficRoutes routes, int workers, long chunkSize) {
+        this.routes = routes;
+        this.workers = workers;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * The log files at a path: the path itself if it is a file, otherwise the {@code .json}, {@code .jsonl},
+     * {@code .log} and {@code .gz} files below it, in path order.
+     */
+    public static List<Path> logFiles(Path path) throws IOException {
+        if (Files.isRegularFile(path)) {
+            return List.of(path);
+        }
+        try (var files = Files.walk(path)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(file -> file.getFileName().toString().matches(".*\\.(json|jsonl|log|gz)"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    public TrafficLogReader.Summary read(List<Path> files) throws Exception {
+        var reader = new TrafficLogReader(routes);
+        var chunks = new ArrayList<Callable<TrafficLogReader.Summary>>();
+        for (Path file : files) {
+            long size = Files.size(file);
+            if (TrafficLogReader.isGzipped(file) || size <= chunkSize) {
+                chunks.add(() -> reader.read(file));
+            } else {
+                for (long start = 0; start < size; start += chunkSize) {
+                    long from = start;
+                    long to = Math.min(size, start + chunkSize);
+                    chunks.add(() -> reader.read(file, from, to));
+                }
+            }
+        }
+        var summary = new TrafficLogReader.Summary(routes.getRoutes().size());
+        if (chunks.isEmpty()) {
+            return summary;
+        }
+        var executor = Executors.newFixedThreadPool(Math.min(workers, chunks.size()));
+        try {
+            for (Future<TrafficLogReader.Summary> result : executor.invokeAll(PhaseInstrumentation.measured(chunks))) {
+                try {
+                    summary.merge(result.get());
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return summary;
+    }
+
+    public void apply(Workspace workspace, TrafficLogReader.Summary summary) {
+        var registry = new ElementRegistry(workspace.getModel());
+        var traffic = new LinkedHashMap<Relationship, TrafficStatistics>();
+        for (int i = 0; i < routes.getRoutes().size(); i++) {
+            var statistics = summary.getStatistics(i);
+            if (statistics.getRequests() > 0) {
+                traffic.computeIfAbsent(relationshipOf(routes.getRoutes().get(i), registry),
+                        relationship -> new TrafficStatistics()).merge(statistics);
+            }
+        }
+        var styles = workspace.getViews().getConfiguration().getStyles();
+        traffic.forEach((relationship, statistics) -> annotate(relationship, statistics, styles));
+    }
+
+    private static Relationship relationshipOf(TrafficRoutes.Route route, ElementRegistry registry) {
+        var source = registry.getElement(route.getSource());
+        var destination = registry.getElement(route.getDestination());
+        var relationship = isNull(route.getDescription())
+                ? source.getEfferentRelationshipWith(destination)
+                : source.getEfferentRelationshipWith(destination, route.getDescription());
+        if (isNull(relationship)) {
+            throw new IllegalArgumentException("No relationship from \"" + route.getSource() + "\" to \""
+                    + route.getDestination() + "\" exists");
+        }
+        return relationship;
+    }
+
+    private static void annotate(Relationship relationship, TrafficStatistics statistics, Styles styles) {
+        var latency = statistics.getLatency();
+        relationship.addProperty("traffic.requests", String.valueOf(statistics.getRequests()));
+        relationship.addProperty("traffic.errors", String.valueOf(statistics.getErrors()));
+        if (latency.getCount() > 0) {
+            relationship.addProperty("traffic.latency.p50", millis(latency.quantile(0.50)));
+            relationship.addProperty("traffic.latency.p95", millis(latency.quantile(0.95)));
+            relationship.addProperty("traffic.latency.p99", millis(latency.quantile(0.99)));
+        }
+
+        int volume = (int) Math.max(1, Math.min(MAX_VOLUME, Math.floor(Math.log10(statistics.getRequests()))));
+        var volumeTag = VOLUME_TAG + volume;
+        relationship.addTags(volumeTag);
+        styleOf(styles, volumeTag).setThickness(2 * volume);
+
+        if (latency.getCount() > 0) {
+            double p99 = latency.quantile(0.99);
+            if (p99 >= CRITICAL_P99_MILLIS) {
+                relationship.addTags(LATENCY_CRITICAL_TAG);
+                styleOf(styles, LATENCY_CRITICAL_TAG).setColor("#c62828");
+            } else if (p99 >= SLOW_P99_MILLIS) {
+                relationship.addTags(LATENCY_SLOW_TAG);
+                styleOf(styles, LATENCY_SLOW_TAG).setColor("#f9a825");
+            } else {
+                relationship.addTags(LATENCY_OK_TAG);
+                styleOf(styles, LATENCY_OK_TAG).setColor("#2e7d32");
+            }
+        }
+    }
+
+    private static RelationshipStyle styleOf(Styles styles, String tag) {
+        for (RelationshipStyle style : styles.getRelationships()) {
+            if (tag.equals(style.getTag())) {
+                return style;
+            }
+        }
+        return styles.addRelationshipStyle(tag);
+    }
+
+    private static String millis(double value) {
+        return String.format(Locale.ROOT, "%.1f", value);
+    }
+}
@@ -0,0 +1,238 @@
+package no.unit.nva;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Aggregates access logs with one JSON object per line into {@link TrafficStatistics} per route, in constant memory:
+ * lines are parsed one at a time with the streaming parser and only the fields the routes need are read. An
+ * uncompressed file can be read in byte ranges; a range starts at the first line that begins inside it and ends with
+ * the line that crosses its end, so ranges that meet cover every line exactly once. Gzipped files (ending in
+ * {@code .gz}) are always read whole.
+ */
+public class TrafficLogReader {
+
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final TrafficRoutes routes;
+    private final Map<String, Integer> fields;
+
+    public TrafficLogReader(TrafficRoutes routes) {
+        this.routes = routes;
+        this.fields = routes.getFields();
+    }
+
+    public static boolean isGzipped(Path file) {
+        return file.getFileName().toString().endsWith(".gz");
+    }
+
+    public Summary read(Path file) throws IOException {
+        return isGzipped(file) ? readGzipped(file) : read(file, 0, Long.MAX_VALUE);
+    }
+
+    public Summary read(Path file, long start, long end) throws IOException {
+        if (isGzipped(file)) {
+            throw new IllegalArgumentException("Gzipped logs cannot be read in ranges: " + file);
+        }
+        var summary = new Summary(routes.getRoutes().size());
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long from = alignToLine(channel, start);
+            long to = alignToLine(channel, end);
+            if (from < to) {
+                channel.position(from);
+                readLines(Channels.newInputStream(channel), to - from, summary);
+            }
+        }
+        return summary;
+    }
+
+    private Summary readGzipped(Path file) throws IOException {
+        var summary = new Summary(routes.getRoutes().size());
+        try (var in = new GZIPInputStream(Files.newInputStream(file), BUFFER_SIZE)) {
+            readLines(in, Long.MAX_VALUE, summary);
+        }
+        return summary;
+    }
+
+    private static long alignToLine(FileChannel channel, long offset) throws IOException {
+        long size = channel.size();
+        if (offset <= 0) {
+            return 0;
+        }
+        if (offset >= size) {
+            return size;
+        }
+        var buffer = ByteBuffer.allocate(8 * 1024);
+        long position = offset - 1;
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private void readLines(InputStream in, long limit, Summary summary) throws IOException {
+        var buffer = new byte[BUFFER_SIZE];
+        var pending = new byte[1024];
+        int pendingLength = 0;
+        var values = new String[fields.size()];
+        long remaining = limit;
+        while (remaining > 0) {
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read < 0) {
+                break;
+            }
+            remaining -= read;
+            int lineStart = 0;
+            for (int i = 0; i < read; i++) {
+                if (buffer[i] != '\n') {
+                    continue;
+                }
+                if (pendingLength == 0) {
+                    parseLine(buffer, lineStart, i - lineStart, values, summary);
+                } else {
+                    pending = append(pending, pendingLength, buffer, lineStart, i - lineStart);
+                    parseLine(pending, 0, pendingLength + i - lineStart, values, summary);
+                    pendingLength = 0;
+                }
+                lineStart = i + 1;
+            }
+            pending = append(pending, pendingLength, buffer, lineStart, read - lineStart);
+            pendingLength += read - lineStart;
+        }
+        if (pendingLength > 0) {
+            parseLine(pending, 0, pendingLength, values, summary);
+        }
+    }
+
+    private static byte[] append(byte[] target, int targetLength, byte[] source, int offset, int length) {
+        var grown = targetLength + length > target.length
+                ? Arrays.copyOf(target, Math.max(target.length * 2, targetLength + length))
+                : target;
+        System.arraycopy(source, offset, grown, targetLength, length);
+        return grown;
+    }
+
+    private void parseLine(byte[] bytes, int offset, int length, String[] values, Summary summary) throws IOException {
+        if (isBlank(bytes, offset, length)) {
+            return;
+        }
+        summary.lines++;
+        Arrays.fill(values, null);
+        try (var parser = JSON.createParser(bytes, offset, length)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                summary.malformed++;
+                return;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                var field = fields.get(parser.getCurrentName());
+                var token = parser.nextToken();
+                if (nonNull(field) && token.isScalarValue()) {
+                    values[field] = parser.getValueAsString();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (JsonProcessingException e) {
+            summary.malformed++;
+            return;
+        }
+        int route = routes.match(values);
+        if (route < 0) {
+            summary.unmatched++;
+            return;
+        }
+        summary.statistics[route].record(parseDouble(values[routes.getLatencyField(route)]),
+                (int) parseDouble(values[routes.getStatusField()]));
+    }
+
+    private static boolean isBlank(byte[] bytes, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            if (bytes[i] != ' ' && bytes[i] != '\t' && bytes[i] != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static double parseDouble(String value) {
+        if (isNull(value)) {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * The statistics per route of part of the logs, with the number of lines read, and of lines that were not JSON
+     * objects or matched no route.
+     */
+    public static final class Summary {
+
+        private final TrafficStatistics[] statistics;
+        private long lines;
+        private long malformed;
+        private long unmatched;
+
+        public Summary(int routes) {
+            statistics = new TrafficStatistics[routes];
+            for (int i = 0; i < routes; i++) {
+                statistics[i] = new TrafficStatistics();
+            }
+        }
+
+        public void merge(Summary other) {
+            for (int i = 0; i < statistics.length; i++) {
+                statistics[i].merge(other.statistics[i]);
+            }
+            lines += other.lines;
+            malformed += other.malformed;
+            unmatched += other.unmatched;
+        }
+
+        public TrafficStatistics getStatistics(int route) {
+            return statistics[route];
+        }
+
+        public long getLines() {
+            return lines;
+        }
+
+        public long getMalformed() {
+            return malformed;
+        }
+
+        public long getUnmatched() {
+            return unmatched;
+        }
+    }
+}
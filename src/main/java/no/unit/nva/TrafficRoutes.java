@@ -0,0 +1,136 @@
+package no.unit.nva;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Maps access log lines to relationships of the model. A route matches a line when the value of its top-level field
+ * starts with the route's prefix, and the first matching route wins. Besides the routes, the file names the fields
+ * that hold the latency in milliseconds and the HTTP status of a request; a route can read its latency from another
+ * field, for log lines of a different shape such as Lambda reports.
+ */
+public class TrafficRoutes {
+
+    private static final String DEFAULT_LATENCY_FIELD = "responseLatency";
+    private static final String DEFAULT_STATUS_FIELD = "status";
+
+    private final Map<String, Integer> fields = new LinkedHashMap<>();
+    private final List<Route> routes;
+    private final int[] routeFields;
+    private final int[] routeLatencyFields;
+    private final int latencyField;
+    private final int statusField;
+
+    public TrafficRoutes(String latencyField, String statusField, List<Route> routes) {
+        this.latencyField = fieldIndex(latencyField);
+        this.statusField = fieldIndex(statusField);
+        this.routes = List.copyOf(routes);
+        this.routeFields = new int[routes.size()];
+        this.routeLatencyFields = new int[routes.size()];
+        for (int i = 0; i < routes.size(); i++) {
+            var route = routes.get(i);
+            routeFields[i] = fieldIndex(route.field);
+            routeLatencyFields[i] = isNull(route.latencyField) ? this.latencyField : fieldIndex(route.latencyField);
+        }
+    }
+
+    public static TrafficRoutes load(Path file) throws IOException {
+        var root = new ObjectMapper(new YAMLFactory()).readTree(file.toFile());
+        var routes = new ArrayList<Route>();
+        for (JsonNode route : root.path("routes")) {
+            routes.add(new Route(required(route, "field", file), required(route, "prefix", file),
+                    required(route, "source", file), required(route, "destination", file),
+                    route.path("description").textValue(), route.path("latencyField").textValue()));
+        }
+        return new TrafficRoutes(root.path("latencyField").asText(DEFAULT_LATENCY_FIELD),
+                root.path("statusField").asText(DEFAULT_STATUS_FIELD), routes);
+    }
+
+    /**
+     * The top-level fields to read from each log line, in the order of the values passed to {@link #match}.
+     */
+    public Map<String, Integer> getFields() {
+        return Collections.unmodifiableMap(fields);
+    }
+
+    public List<Route> getRoutes() {
+        return routes;
+    }
+
+    public int getLatencyField(int route) {
+        return routeLatencyFields[route];
+    }
+
+    public int getStatusField() {
+        return statusField;
+    }
+
+    /**
+     * Returns the index of the first route matching the field values of a log line, or -1.
+     */
+    public int match(String[] values) {
+        for (int i = 0; i < routes.size(); i++) {
+            var value = values[routeFields[i]];
+            if (nonNull(value) && value.startsWith(routes.get(i).prefix)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int fieldIndex(String field) {
+        return fields.computeIfAbsent(field, key -> fields.size());
+    }
+
+    private static String required(JsonNode route, String field, Path file) throws IOException {
+        var value = route.path(field).textValue();
+        if (isNull(value)) {
+            throw new IOException("A route in " + file + " has no \"" + field + "\"");
+        }
+        return value;
+    }
+
+    public static final class Route {
+
+        private final String field;
+        private final String prefix;
+        private final String source;
+        private final String destination;
+        private final String description;
+        private final String latencyField;
+
+        public Route(String field, String prefix, String source, String destination, String description,
+                     String latencyField) {
+            this.field = field;
+            this.prefix = prefix;
+            this.source = source;
+            this.destination = destination;
+            this.description = description;
+            this.latencyField = latencyField;
+        }
+
+        public String getSource() {
+            return source;
+        }
+
+        public String getDestination() {
+            return destination;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package no.unit.nva;
+
+/**
+ * Request count, server error count and latency distribution of one edge. Statistics of the same edge from different
+ * parts of the logs are combined with {@link #merge}.
+ */
+public final class TrafficStatistics {
+
+    private long requests;
+    private long errors;
+    private final LatencySketch latency = new LatencySketch();
+
+    public void record(double latencyMillis, int status) {
+        requests++;
+        if (status >= 500) {
+            errors++;
+        }
+        if (!Double.isNaN(latencyMillis) && latencyMillis >= 0) {
+            latency.add(latencyMillis);
+        }
+    }
+
+    public void merge(TrafficStatistics other) {
+        requests += other.requests;
+        errors += other.errors;
+        latency.merge(other.latency);
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public LatencySketch getLatency() {
+        return latency;
+    }
+}
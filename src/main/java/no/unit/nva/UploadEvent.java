@@ -0,0 +1,39 @@
+package no.unit.nva;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("no.unit.nva.Upload")
+@Label("NVA Workspace Upload")
+@Category("NVA")
+@Description("One upload of the workspace to the Structurizr API, including retries")
+@StackTrace(false)
+class UploadEvent extends jdk.jfr.Event {
+
+    @Label("Workspace ID")
+    long workspaceId;
+
+    @Label("Skipped")
+    @Description("The workspace was already uploaded")
+    boolean skipped;
+
+    @Label("Attempts")
+    int attempts;
+
+    @Label("Compressed")
+    boolean compressed;
+
+    @Label("Payload")
+    @Description("Size of the workspace JSON")
+    @DataAmount(DataAmount.BYTES)
+    long payloadBytes;
+
+    @Label("Transferred")
+    @Description("Size of the request body that was sent")
+    @DataAmount(DataAmount.BYTES)
+    long transferredBytes;
+}
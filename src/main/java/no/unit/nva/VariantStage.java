@@ -0,0 +1,173 @@
+package no.unit.nva;
+
+import com.structurizr.Workspace;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * Builds, lays out and exports one workspace per variant of the model, such as a deployment environment, a team's
+ * part of the system or an architecture proposal. A variant is a directory of overlay fragments applied to the base
+ * definitions, which are parsed once and shared by every variant; the components are likewise scanned once, before
+ * the variants are built. Variants are processed concurrently on a bounded pool, each into a directory of its own
+ * under the output directory; only the workspaces in progress are held in memory, and the layout engines derived for
+ * the variants share one limit on concurrent {@code dot} processes.
+ */
+public class VariantStage {
+
+    private final ModelDefinitions base;
+    private final Nva.ComponentSource components;
+    private final Path outputDirectory;
+    private final LayoutEngine layoutEngine;
+    private final List<ExportFormat> formats;
+    private final int workers;
+    private final Duration viewTimeout;
+
+    public VariantStage(ModelDefinitions base, Nva.ComponentSource components, Path outputDirectory,
+                        LayoutEngine layoutEngine, List<ExportFormat> formats, int workers, Duration viewTimeout) {
+        this.base = base;
+        this.components = components;
+        this.outputDirectory = outputDirectory;
+        this.layoutEngine = layoutEngine;
+        this.formats = formats;
+        this.workers = workers;
+        this.viewTimeout = viewTimeout;
+    }
+
+    /**
+     * Returns the variant directories in {@code directory}, in name order.
+     */
+    public static List<Path> variantsIn(Path directory) throws IOException {
+        try (var files = Files.list(directory)) {
+            return files.filter(Files::isDirectory).sorted().collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Processes every variant, even when some fail, and returns the results in the order of {@code variants}.
+     */
+    public List<Result> apply(List<Path> variants) throws Exception {
+        if (variants.isEmpty()) {
+            return List.of();
+        }
+        int concurrentVariants = Math.min(workers, variants.size());
+        int workersPerVariant = Math.max(1, workers / concurrentVariants);
+        var tasks = new ArrayList<Callable<Result>>();
+        for (Path variant : variants) {
+            tasks.add(() -> build(variant, workersPerVariant));
+        }
+        var executor = Executors.newFixedThreadPool(concurrentVariants);
+        try {
+            return mergeResults(variants, executor.invokeAll(tasks));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Result build(Path variant, int variantWorkers) throws Exception {
+        long start = System.nanoTime();
+        var name = variant.getFileName().toString();
+        var definitions = base.withOverlay(variant);
+        var workspace = Nva.buildWorkspace(PhaseInstrumentation.disabled(),
+                (registry, instrumentation) -> definitions.addTo(registry), components);
+        workspace.setName(workspace.getName() + " (" + name + ")");
+
+        var directory = outputDirectory.resolve(name);
+        var graphvizDirectory = Files.createDirectories(directory.resolve("graphviz"));
+        new LayoutStage(layoutEngine.withOutputDirectory(graphvizDirectory.toFile()),
+                new LayoutCache(directory.resolve("graphviz-cache").toFile()), variantWorkers, viewTimeout)
+                .apply(workspace);
+        var changed = new ExportStage(directory, formats, variantWorkers).apply(workspace);
+        return new Result(name, workspace, changed.size(), Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private static List<Result> mergeResults(List<Path> variants, List<Future<Result>> results) throws Exception {
+        var merged = new ArrayList<Result>();
+        VariantException failure = null;
+        for (int i = 0; i < variants.size(); i++) {
+            try {
+                merged.add(results.get(i).get());
+            } catch (ExecutionException e) {
+                var cause = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                var variantFailure = new VariantException("Could not build the variant " + variants.get(i), cause);
+                if (failure == null) {
+                    failure = variantFailure;
+                } else {
+                    failure.addSuppressed(variantFailure);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return merged;
+    }
+
+    /**
+     * What was built for one variant. Only counts are kept, so the workspace can be collected once it is exported.
+     */
+    public static final class Result {
+
+        private final String name;
+        private final int elements;
+        private final int relationships;
+        private final int views;
+        private final int changedFiles;
+        private final Duration duration;
+
+        private Result(String name, Workspace workspace, int changedFiles, Duration duration) {
+            this.name = name;
+            this.elements = workspace.getModel().getElements().size();
+            this.relationships = workspace.getModel().getRelationships().size();
+            this.views = workspace.getViews().getViews().size();
+            this.changedFiles = changedFiles;
+            this.duration = duration;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getElements() {
+            return elements;
+        }
+
+        public int getRelationships() {
+            return relationships;
+        }
+
+        public int getViews() {
+            return views;
+        }
+
+        public int getChangedFiles() {
+            return changedFiles;
+        }
+
+        public Duration getDuration() {
+            return duration;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": " + elements + " elements, " + relationships + " relationships, " + views + " views, "
+                    + changedFiles + " files changed in " + duration.toMillis() + " ms";
+        }
+    }
+
+    public static class VariantException extends Exception {
+
+        public VariantException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package no.unit.nva;
+
+import com.structurizr.model.Component;
+import com.structurizr.model.Container;
+import com.structurizr.model.Element;
+import com.structurizr.view.ElementStyle;
+import com.structurizr.view.ElementView;
+import com.structurizr.view.RelationshipView;
+import com.structurizr.view.Vertex;
+import com.structurizr.view.View;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+
+import static java.util.Objects.nonNull;
+
+/**
+ * Draws a laid out view as SVG from the element positions and relationship vertices stored in the view, so the
+ * preview shows the layout of whichever engine produced it. Elements are boxes in the background and text colours of
+ * their styles, labelled with their name and technology; relationships are lines through their vertices, clipped to
+ * the boxes they connect, labelled with their description halfway along.
+ */
+public class ViewSvgRenderer {
+
+    private static final int DEFAULT_WIDTH = 450;
+    private static final int DEFAULT_HEIGHT = 300;
+    private static final int MARGIN = 50;
+    private static final String DEFAULT_BACKGROUND = "#dddddd";
+    private static final String DEFAULT_COLOR = "#000000";
+
+    public String render(View view) {
+        var boxes = new HashMap<String, Box>();
+        view.getElements().stream()
+                .sorted(Comparator.comparing(ElementView::getId))
+                .forEach(elementView -> boxes.put(elementView.getId(), boxOf(view, elementView)));
+
+        var lines = new ArrayList<Line>();
+        view.getRelationships().stream()
+                .sorted(Comparator.comparing(RelationshipView::getId))
+                .forEach(relationshipView -> {
+                    var relationship = relationshipView.getRelationship();
+                    var source = boxes.get(relationship.getSourceId());
+                    var destination = boxes.get(relationship.getDestinationId());
+                    if (nonNull(source) && nonNull(destination)) {
+                        lines.add(lineOf(relationshipView, source, destination));
+                    }
+                });
+
+        int width = MARGIN;
+        int height = MARGIN;
+        for (Box box : boxes.values()) {
+            width = Math.max(width, box.x + box.width + MARGIN);
+            height = Math.max(height, box.y + box.height + MARGIN);
+        }
+        for (Line line : lines) {
+            for (int[] point : line.points) {
+                width = Math.max(width, point[0] + MARGIN);
+                height = Math.max(height, point[1] + MARGIN);
+            }
+        }
+
+        var svg = new StringBuilder();
+        svg.append("<svg xmlns=\"http://www.w3.org/2000/svg\" viewBox=\"0 0 ").append(width).append(' ')
+                .append(height).append("\" font-family=\"sans-serif\">\n")
+                .append("<title>").append(escape(view.getKey())).append("</title>\n")
+                .append("<defs><marker id=\"arrow\" viewBox=\"0 0 10 10\" refX=\"10\" refY=\"5\" markerWidth=\"8\" ")
+                .append("markerHeight=\"8\" orient=\"auto\"><path d=\"M0,0 L10,5 L0,10 z\" fill=\"#707070\"/>")
+                .append("</marker></defs>\n")
+                .append("<rect width=\"100%\" height=\"100%\" fill=\"#ffffff\"/>\n");
+        for (Line line : lines) {
+            appendLine(svg, line);
+        }
+        boxes.values().stream()
+                .sorted(Comparator.comparing((Box box) -> box.y).thenComparing(box -> box.x))
+                .forEach(box -> appendBox(svg, box));
+        return svg.append("</svg>\n").toString();
+    }
+
+    private static Box boxOf(View view, ElementView elementView) {
+        var element = elementView.getElement();
+        int width = DEFAULT_WIDTH;
+        int height = DEFAULT_HEIGHT;
+        var background = DEFAULT_BACKGROUND;
+        var color = DEFAULT_COLOR;
+        var tags = new HashSet<>(element.getTagsAsSet());
+        for (ElementStyle style : view.getViewSet().getConfiguration().getStyles().getElements()) {
+            if (tags.contains(style.getTag())) {
+                width = nonNull(style.getWidth()) ? style.getWidth() : width;
+                height = nonNull(style.getHeight()) ? style.getHeight() : height;
+                background = nonNull(style.getBackground()) ? style.getBackground() : background;
+                color = nonNull(style.getColor()) ? style.getColor() : color;
+            }
+        }
+        return new Box(element, elementView.getX(), elementView.getY(), width, height, background, color);
+    }
+
+    private static Line lineOf(RelationshipView relationshipView, Box source, Box destination) {
+        var points = new ArrayList<int[]>();
+        points.add(source.center());
+        for (Vertex vertex : relationshipView.getVertices()) {
+            points.add(new int[]{vertex.getX(), vertex.getY()});
+        }
+        points.add(destination.center());
+        points.set(0, source.clip(points.get(1)));
+        points.set(points.size() - 1, destination.clip(points.get(points.size() - 2)));
+        var description = nonNull(relationshipView.getDescription()) && !relationshipView.getDescription().isEmpty()
+                ? relationshipView.getDescription() : relationshipView.getRelationship().getDescription();
+        return new Line(points, description);
+    }
+
+    private static void appendLine(StringBuilder svg, Line line) {
+        svg.append("<polyline fill=\"none\" stroke=\"#707070\" stroke-width=\"3\" marker-end=\"url(#arrow)\" ")
+                .append("points=\"");
+        for (int[] point : line.points) {
+            svg.append(point[0]).append(',').append(point[1]).append(' ');
+        }
+        svg.setLength(svg.length() - 1);
+        svg.append("\"/>\n");
+        if (nonNull(line.description) && !line.description.isEmpty()) {
+            var middle = line.middle();
+            appendText(svg, middle[0], middle[1], 20, "#707070", false, line.description);
+        }
+    }
+
+    private static void appendBox(StringBuilder svg, Box box) {
+        svg.append("<rect x=\"").append(box.x).append("\" y=\"").append(box.y).append("\" width=\"")
+                .append(box.width).append("\" height=\"").append(box.height).append("\" rx=\"10\" fill=\"")
+                .append(escape(box.background)).append("\" stroke=\"#9a9a9a\" stroke-width=\"2\"/>\n");
+        var center = box.center();
+        appendText(svg, center[0], center[1] - 14, 28, box.color, true, box.element.getName());
+        var type = box.element.getClass().getSimpleName();
+        var technology = technologyOf(box.element);
+        appendText(svg, center[0], center[1] + 26, 20, box.color, false,
+                "[" + (nonNull(technology) && !technology.isEmpty() ? type + ": " + technology : type) + "]");
+    }
+
+    private static void appendText(StringBuilder svg, int x, int y, int size, String color, boolean bold,
+                                   String text) {
+        svg.append("<text x=\"").append(x).append("\" y=\"").append(y).append("\" font-size=\"").append(size)
+                .append("\" fill=\"").append(escape(color)).append("\" text-anchor=\"middle\"")
+                .append(bold ? " font-weight=\"bold\"" : "").append('>').append(escape(text)).append("</text>\n");
+    }
+
+    private static String technologyOf(Element element) {
+        if (element instanceof Container) {
+            return ((Container) element).getTechnology();
+        } else if (element instanceof Component) {
+            return ((Component) element).getTechnology();
+        }
+        return null;
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    private static final class Box {
+
+        private final Element element;
+        private final int x;
+        private final int y;
+        private final int width;
+        private final int height;
+        private final String background;
+        private final String color;
+
+        private Box(Element element, int x, int y, int width, int height, String background, String color) {
+            this.element = element;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            this.background = background.toLowerCase(Locale.ROOT);
+            this.color = color.toLowerCase(Locale.ROOT);
+        }
+
+        private int[] center() {
+            return new int[]{x + width / 2, y + height / 2};
+        }
+
+        /**
+         * Returns where the line from the centre of the box towards {@code point} leaves the box.
+         */
+        private int[] clip(int[] point) {
+            var center = center();
+            double dx = point[0] - center[0];
+            double dy = point[1] - center[1];
+            if (dx == 0 && dy == 0) {
+                return center;
+            }
+            double scale = Math.min(dx == 0 ? Double.MAX_VALUE : (width / 2.0) / Math.abs(dx),
+                    dy == 0 ? Double.MAX_VALUE : (height / 2.0) / Math.abs(dy));
+            if (scale >= 1) {
+                return center;
+            }
+            return new int[]{(int) Math.round(center[0] + dx * scale), (int) Math.round(center[1] + dy * scale)};
+        }
+    }
+
+    private static final class Line {
+
+        private final List<int[]> points;
+        private final String description;
+
+        private Line(List<int[]> points, String description) {
+            this.points = points;
+            this.description = description;
+        }
+
+        private int[] middle() {
+            var from = points.get((points.size() - 1) / 2);
+            var to = points.get(points.size() / 2);
+            if (from == to) {
+                return from;
+            }
+            return new int[]{(from[0] + to[0]) / 2, (from[1] + to[1]) / 2};
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package no.unit.nva;
+
+import com.structurizr.view.View;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Keeps the JVM warm between edits of the model fragments. The definitions of every fragment are kept in memory, and a
+ * change only parses the fragments that changed or were added; the model is then rebuilt from the definitions and
+ * the view fingerprints are compared with the previous build. When no view changed nothing else happens, otherwise
+ * only the changed views are laid out again (the others are restored from the layout cache), exported files are
+ * rewritten only where their contents changed, and the result is published to the preview server. A broken fragment
+ * is reported and the previous output keeps being served.
+ */
+public class WatchMode {
+
+    private static final Duration DEBOUNCE = Duration.ofMillis(100);
+
+    private final Path modelDirectory;
+    private final LayoutEngine layoutEngine;
+    private final LayoutStage layoutStage;
+    private final ExportStage exportStage;
+    private final PreviewServer previewServer;
+    private final Map<Path, ModelDefinitions> fragments = new HashMap<>();
+    private Map<String, String> fingerprints = Map.of();
+
+    public WatchMode(Path modelDirectory, LayoutEngine layoutEngine, LayoutStage layoutStage, ExportStage exportStage,
+                     PreviewServer previewServer) {
+        this.modelDirectory = modelDirectory;
+        this.layoutEngine = layoutEngine;
+        this.layoutStage = layoutStage;
+        this.exportStage = exportStage;
+        this.previewServer = previewServer;
+    }
+
+    public void run() throws IOException, InterruptedException {
+        previewServer.start();
+        System.out.println("Serving the generated diagrams on http://localhost:" + previewServer.getPort() + "/");
+        regenerate(Set.of(modelDirectory));
+        new ModelWatcher(modelDirectory, DEBOUNCE).watch(this::regenerate);
+    }
+
+    void regenerate(Set<Path> changedPaths) {
+        var start = System.nanoTime();
+        try {
+            var definitions = updateDefinitions(changedPaths);
+            var workspace = Nva.buildWorkspace(PhaseInstrumentation.disabled(),
+                    (registry, instrumentation) -> definitions.addTo(registry));
+            var current = new HashMap<String, String>();
+            var changed = new ArrayList<String>();
+            for (View view : workspace.getViews().getViews()) {
+                var fingerprint = Fingerprints.view(view, layoutEngine.getName());
+                current.put(view.getKey(), fingerprint);
+                if (!fingerprint.equals(fingerprints.get(view.getKey()))) {
+                    changed.add(view.getKey());
+                }
+            }
+            if (changed.isEmpty() && current.keySet().equals(fingerprints.keySet())) {
+                System.out.println("No views changed");
+                return;
+            }
+            layoutStage.apply(workspace);
+            var exported = exportStage.apply(workspace);
+            previewServer.publish(workspace);
+            fingerprints = current;
+            System.out.println("Regenerated " + changed + " and rewrote " + exported.size() + " exported files in "
+                    + Duration.ofNanos(System.nanoTime() - start).toMillis() + " ms");
+        } catch (Exception e) {
+            System.err.println("Could not regenerate the model in " + modelDirectory + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Forgets the definitions of the fragments at or below the changed paths and of fragments that no longer exist,
+     * reads the fragments not known yet, and returns the definitions of all fragments in path order.
+     */
+    private ModelDefinitions updateDefinitions(Set<Path> changedPaths) throws IOException {
+        var current = ModelLoader.fragments(modelDirectory);
+        fragments.keySet().removeIf(fragment -> !current.contains(fragment)
+                || changedPaths.stream().anyMatch(fragment::startsWith));
+        var parts = new ArrayList<ModelDefinitions>();
+        for (Path fragment : current) {
+            var definitions = fragments.get(fragment);
+            if (isNull(definitions)) {
+                definitions = ModelDefinitions.readFragment(fragment);
+                fragments.put(fragment, definitions);
+            }
+            parts.add(definitions);
+        }
+        return ModelDefinitions.join(parts);
+    }
+}
@@ -0,0 +1,647 @@
+package no.unit.nva;
+
+import com.structurizr.Workspace;
+import com.structurizr.model.Component;
+import com.structurizr.model.Container;
+import com.structurizr.model.DeploymentNode;
+import com.structurizr.model.Element;
+import com.structurizr.model.InfrastructureNode;
+import com.structurizr.model.Relationship;
+import com.structurizr.view.ComponentView;
+import com.structurizr.view.DeploymentView;
+import com.structurizr.view.DynamicView;
+import com.structurizr.view.ElementView;
+import com.structurizr.view.RelationshipView;
+import com.structurizr.view.Vertex;
+import com.structurizr.view.View;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * The elements, relationships and views of a workspace in a compact binary file, for keeping a snapshot per release
+ * and comparing them with {@link SnapshotDiff}. Styles, documentation and decisions are not kept.
+ *
+ * <p>A file is a fixed header, the records, and a table of every distinct string, which the records refer to by index.
+ * Every number is a big-endian int and every string a UTF-8 byte length followed by the bytes. The records are written
+ * as they are produced and the string table after them, so writing never holds an encoded copy of the workspace; the
+ * reader maps the file into memory and decodes each distinct string once.
+ */
+public final class WorkspaceSnapshot {
+
+    private static final int MAGIC = 0x4e564153;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int NULL = -1;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final String name;
+    private final String description;
+    private final List<ElementEntry> elements;
+    private final List<RelationshipEntry> relationships;
+    private final List<ViewEntry> views;
+
+    public WorkspaceSnapshot(String name, String description, List<ElementEntry> elements,
+                             List<RelationshipEntry> relationships, List<ViewEntry> views) {
+        this.name = name;
+        this.description = description;
+        this.elements = List.copyOf(elements);
+        this.relationships = List.copyOf(relationships);
+        this.views = List.copyOf(views);
+    }
+
+    public static WorkspaceSnapshot of(Workspace workspace) {
+        var elements = new ArrayList<ElementEntry>();
+        for (Element element : sorted(workspace.getModel().getElements(), Element::getId)) {
+            elements.add(new ElementEntry(element.getId(), element.getClass().getSimpleName(),
+                    element.getCanonicalName(), isNull(element.getParent()) ? null : element.getParent().getId(),
+                    element.getName(), element.getDescription(), technologyOf(element), element.getUrl(),
+                    element.getTags(), element.getProperties()));
+        }
+        var relationships = new ArrayList<RelationshipEntry>();
+        for (Relationship relationship : sorted(workspace.getModel().getRelationships(), Relationship::getId)) {
+            relationships.add(new RelationshipEntry(relationship.getId(), relationship.getSourceId(),
+                    relationship.getDestinationId(), relationship.getDescription(), relationship.getTechnology(),
+                    isNull(relationship.getInteractionStyle()) ? null : relationship.getInteractionStyle().name(),
+                    relationship.getTags(), relationship.getLinkedRelationshipId(), relationship.getProperties()));
+        }
+        var views = new ArrayList<ViewEntry>();
+        for (View view : sorted(workspace.getViews().getViews(), View::getKey)) {
+            var positions = new LinkedHashMap<String, int[]>();
+            for (ElementView elementView : sorted(view.getElements(), ElementView::getId)) {
+                positions.put(elementView.getId(), new int[]{elementView.getX(), elementView.getY()});
+            }
+            var vertices = new LinkedHashMap<String, int[]>();
+            for (RelationshipView relationshipView : sorted(view.getRelationships(), RelationshipView::getId)) {
+                var coordinates = new int[relationshipView.getVertices().size() * 2];
+                int i = 0;
+                for (Vertex vertex : relationshipView.getVertices()) {
+                    coordinates[i++] = vertex.getX();
+                    coordinates[i++] = vertex.getY();
+                }
+                vertices.put(relationshipView.getId(), coordinates);
+            }
+            views.add(new ViewEntry(view.getKey(), view.getClass().getSimpleName(), view.getTitle(),
+                    view.getDescription(), scopeOf(view),
+                    isNull(view.getPaperSize()) ? null : view.getPaperSize().name(), positions, vertices));
+        }
+        return new WorkspaceSnapshot(workspace.getName(), workspace.getDescription(), elements, relationships,
+                views);
+    }
+
+    /**
+     * Returns {@code items} ordered by their IDs or keys, numbers in numeric order, so that the same workspace always
+     * gives the same bytes however its collections are ordered.
+     */
+    private static <T> List<T> sorted(Collection<T> items, Function<T, String> id) {
+        var sorted = new ArrayList<>(items);
+        sorted.sort(Comparator.comparing(id, Comparator.comparingInt(String::length)
+                .thenComparing(Comparator.naturalOrder())));
+        return sorted;
+    }
+
+    public static WorkspaceSnapshot read(Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is larger than 2 GB");
+            }
+            return new Reader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), file).read();
+        }
+    }
+
+    /**
+     * Writes the snapshot to a temporary file next to {@code file} and moves it into place, so a reader never sees
+     * a partly written snapshot.
+     */
+    public void write(Path file) throws IOException {
+        var directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        var temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (var channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                new Writer(channel).write(this);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public List<ElementEntry> getElements() {
+        return elements;
+    }
+
+    public List<RelationshipEntry> getRelationships() {
+        return relationships;
+    }
+
+    public List<ViewEntry> getViews() {
+        return views;
+    }
+
+    private static String technologyOf(Element element) {
+        if (element instanceof Container) {
+            return ((Container) element).getTechnology();
+        } else if (element instanceof Component) {
+            return ((Component) element).getTechnology();
+        } else if (element instanceof DeploymentNode) {
+            return ((DeploymentNode) element).getTechnology();
+        } else if (element instanceof InfrastructureNode) {
+            return ((InfrastructureNode) element).getTechnology();
+        }
+        return null;
+    }
+
+    private static String scopeOf(View view) {
+        if (view instanceof ComponentView) {
+            return ((ComponentView) view).getContainerId();
+        } else if (view instanceof DynamicView) {
+            return ((DynamicView) view).getElementId();
+        } else if (view instanceof DeploymentView) {
+            return ((DeploymentView) view).getEnvironment();
+        }
+        return view.getSoftwareSystemId();
+    }
+
+    private static final class Writer {
+
+        private final FileChannel channel;
+        private final DataOutputStream output;
+        private final Map<String, Integer> strings = new HashMap<>();
+        private final List<String> table = new ArrayList<>();
+
+        private Writer(FileChannel channel) {
+            this.channel = channel;
+            this.output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel),
+                    BUFFER_SIZE));
+        }
+
+        private void write(WorkspaceSnapshot snapshot) throws IOException {
+            channel.position(HEADER_SIZE);
+            writeString(snapshot.name);
+            writeString(snapshot.description);
+            for (ElementEntry element : snapshot.elements) {
+                writeStrings(element.id, element.type, element.canonicalName, element.parentId, element.name,
+                        element.description, element.technology, element.url, element.tags);
+                writeProperties(element.properties);
+            }
+            for (RelationshipEntry relationship : snapshot.relationships) {
+                writeStrings(relationship.id, relationship.sourceId, relationship.destinationId,
+                        relationship.description, relationship.technology, relationship.interactionStyle,
+                        relationship.tags, relationship.linkedRelationshipId);
+                writeProperties(relationship.properties);
+            }
+            for (ViewEntry view : snapshot.views) {
+                writeStrings(view.key, view.type, view.title, view.description, view.scope, view.paperSize);
+                output.writeInt(view.positions.size());
+                for (Map.Entry<String, int[]> position : view.positions.entrySet()) {
+                    writeString(position.getKey());
+                    output.writeInt(position.getValue()[0]);
+                    output.writeInt(position.getValue()[1]);
+                }
+                output.writeInt(view.vertices.size());
+                for (Map.Entry<String, int[]> vertices : view.vertices.entrySet()) {
+                    writeString(vertices.getKey());
+                    output.writeInt(vertices.getValue().length);
+                    for (int coordinate : vertices.getValue()) {
+                        output.writeInt(coordinate);
+                    }
+                }
+            }
+            output.flush();
+            long stringTable = channel.position();
+            for (String string : table) {
+                var bytes = string.getBytes(StandardCharsets.UTF_8);
+                output.writeInt(bytes.length);
+                output.write(bytes);
+            }
+            output.flush();
+
+            var header = ByteBuffer.allocate(HEADER_SIZE)
+                    .putInt(MAGIC)
+                    .putInt(FORMAT_VERSION)
+                    .putLong(stringTable)
+                    .putInt(snapshot.elements.size())
+                    .putInt(snapshot.relationships.size())
+                    .putInt(snapshot.views.size())
+                    .putInt(table.size())
+                    .flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+        }
+
+        private void writeProperties(Map<String, String> properties) throws IOException {
+            output.writeInt(properties.size());
+            for (Map.Entry<String, String> property : properties.entrySet()) {
+                writeString(property.getKey());
+                writeString(property.getValue());
+            }
+        }
+
+        private void writeStrings(String... values) throws IOException {
+            for (String value : values) {
+                writeString(value);
+            }
+        }
+
+        private void writeString(String value) throws IOException {
+            if (isNull(value)) {
+                output.writeInt(NULL);
+                return;
+            }
+            var index = strings.get(value);
+            if (isNull(index)) {
+                index = table.size();
+                strings.put(value, index);
+                table.add(value);
+            }
+            output.writeInt(index);
+        }
+    }
+
+    /**
+     * Decodes a mapped snapshot, checking every count, length and string index against the size of the file and of
+     * the string table, so that a truncated or corrupt file is reported as such rather than failing with a buffer
+     * exception or allocating whatever a corrupt count asks for.
+     */
+    private static final class Reader {
+
+        private static final int ELEMENT_SIZE = 10 * Integer.BYTES;
+        private static final int RELATIONSHIP_SIZE = 9 * Integer.BYTES;
+        private static final int VIEW_SIZE = 8 * Integer.BYTES;
+        private static final int POSITION_SIZE = 3 * Integer.BYTES;
+        private static final int VERTICES_SIZE = 2 * Integer.BYTES;
+        private static final int PROPERTY_SIZE = 2 * Integer.BYTES;
+
+        private final MappedByteBuffer buffer;
+        private final Path file;
+        private String[] strings;
+
+        private Reader(MappedByteBuffer buffer, Path file) {
+            this.buffer = buffer;
+            this.file = file;
+        }
+
+        private WorkspaceSnapshot read() throws IOException {
+            if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                throw new IOException(file + " is not a workspace snapshot");
+            }
+            if (buffer.getInt(4) != FORMAT_VERSION) {
+                throw new IOException(file + " is a version " + buffer.getInt(4) + " snapshot, expected version "
+                        + FORMAT_VERSION);
+            }
+            long stringTable = buffer.getLong(8);
+            if (stringTable < HEADER_SIZE || stringTable > buffer.limit()) {
+                throw corrupt("its string table starts at " + stringTable + ", outside the file");
+            }
+            readStrings((int) stringTable, buffer.getInt(28));
+            buffer.position(HEADER_SIZE).limit((int) stringTable);
+            var name = readString();
+            var description = readString();
+
+            int elementCount = count(buffer.getInt(16), ELEMENT_SIZE, "elements");
+            int relationshipCount = count(buffer.getInt(20), RELATIONSHIP_SIZE, "relationships");
+            int viewCount = count(buffer.getInt(24), VIEW_SIZE, "views");
+            var elements = new ArrayList<ElementEntry>(elementCount);
+            for (int i = elementCount; i > 0; i--) {
+                elements.add(new ElementEntry(readString(), readString(), readString(), readString(), readString(),
+                        readString(), readString(), readString(), readString(), readProperties()));
+            }
+            var relationships = new ArrayList<RelationshipEntry>(relationshipCount);
+            for (int i = relationshipCount; i > 0; i--) {
+                relationships.add(new RelationshipEntry(readString(), readString(), readString(), readString(),
+                        readString(), readString(), readString(), readString(), readProperties()));
+            }
+            var views = new ArrayList<ViewEntry>(viewCount);
+            for (int i = viewCount; i > 0; i--) {
+                var key = readString();
+                var type = readString();
+                var title = readString();
+                var viewDescription = readString();
+                var scope = readString();
+                var paperSize = readString();
+                var positions = new LinkedHashMap<String, int[]>();
+                for (int j = count(readInt(), POSITION_SIZE, "positions"); j > 0; j--) {
+                    positions.put(readString(), new int[]{readInt(), readInt()});
+                }
+                var vertices = new LinkedHashMap<String, int[]>();
+                for (int j = count(readInt(), VERTICES_SIZE, "vertices"); j > 0; j--) {
+                    var id = readString();
+                    var coordinates = new int[count(readInt(), Integer.BYTES, "coordinates")];
+                    for (int k = 0; k < coordinates.length; k++) {
+                        coordinates[k] = readInt();
+                    }
+                    vertices.put(id, coordinates);
+                }
+                views.add(new ViewEntry(key, type, title, viewDescription, scope, paperSize, positions, vertices));
+            }
+            if (buffer.hasRemaining()) {
+                throw corrupt("it has " + buffer.remaining() + " bytes between its records and its string table");
+            }
+            return new WorkspaceSnapshot(name, description, elements, relationships, views);
+        }
+
+        private void readStrings(int offset, int count) throws IOException {
+            buffer.position(offset);
+            strings = new String[count(count, Integer.BYTES, "strings")];
+            var bytes = new byte[256];
+            for (int i = 0; i < count; i++) {
+                int length = readInt();
+                if (length < 0 || length > buffer.remaining()) {
+                    throw corrupt("string " + i + " of " + length + " bytes runs past the end of the file");
+                }
+                if (length > bytes.length) {
+                    bytes = new byte[Math.max(length, bytes.length * 2)];
+                }
+                buffer.get(bytes, 0, length);
+                strings[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+            }
+        }
+
+        private Map<String, String> readProperties() throws IOException {
+            int count = count(readInt(), PROPERTY_SIZE, "properties");
+            if (count == 0) {
+                return Collections.emptyMap();
+            }
+            var properties = new LinkedHashMap<String, String>();
+            for (int i = 0; i < count; i++) {
+                properties.put(readString(), readString());
+            }
+            return properties;
+        }
+
+        private String readString() throws IOException {
+            int index = readInt();
+            if (index == NULL) {
+                return null;
+            }
+            if (index < 0 || index >= strings.length) {
+                throw corrupt("it refers to string " + index + " of a table of " + strings.length);
+            }
+            return strings[index];
+        }
+
+        private int readInt() throws IOException {
+            if (buffer.remaining() < Integer.BYTES) {
+                throw corrupt("it ends at byte " + buffer.position() + " in the middle of a record");
+            }
+            return buffer.getInt();
+        }
+
+        /**
+         * Checks that {@code count} entries of at least {@code entrySize} bytes each fit in what is left to read.
+         */
+        private int count(int count, int entrySize, String entries) throws IOException {
+            if (count < 0 || (long) count * entrySize > buffer.remaining()) {
+                throw corrupt("it claims " + count + " " + entries + ", which do not fit in the "
+                        + buffer.remaining() + " bytes left");
+            }
+            return count;
+        }
+
+        private IOException corrupt(String reason) {
+            return new IOException(file + " is truncated or corrupt: " + reason);
+        }
+    }
+
+    /**
+     * An element, with the ID of its parent and its tags as the comma-separated list Structurizr keeps.
+     */
+    public static final class ElementEntry {
+
+        private final String id;
+        private final String type;
+        private final String canonicalName;
+        private final String parentId;
+        private final String name;
+        private final String description;
+        private final String technology;
+        private final String url;
+        private final String tags;
+        private final Map<String, String> properties;
+
+        public ElementEntry(String id, String type, String canonicalName, String parentId, String name,
+                            String description, String technology, String url, String tags,
+                            Map<String, String> properties) {
+            this.id = id;
+            this.type = type;
+            this.canonicalName = canonicalName;
+            this.parentId = parentId;
+            this.name = name;
+            this.description = description;
+            this.technology = technology;
+            this.url = url;
+            this.tags = tags;
+            this.properties = Collections.unmodifiableMap(new TreeMap<>(properties));
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public String getCanonicalName() {
+            return canonicalName;
+        }
+
+        public String getParentId() {
+            return parentId;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public String getTechnology() {
+            return technology;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public String getTags() {
+            return tags;
+        }
+
+        public Map<String, String> getProperties() {
+            return properties;
+        }
+    }
+
+    /**
+     * A relationship between two elements by ID. Implied relationships carry the ID of the relationship they are
+     * implied by.
+     */
+    public static final class RelationshipEntry {
+
+        private final String id;
+        private final String sourceId;
+        private final String destinationId;
+        private final String description;
+        private final String technology;
+        private final String interactionStyle;
+        private final String tags;
+        private final String linkedRelationshipId;
+        private final Map<String, String> properties;
+
+        public RelationshipEntry(String id, String sourceId, String destinationId, String description,
+                                 String technology, String interactionStyle, String tags,
+                                 String linkedRelationshipId, Map<String, String> properties) {
+            this.id = id;
+            this.sourceId = sourceId;
+            this.destinationId = destinationId;
+            this.description = description;
+            this.technology = technology;
+            this.interactionStyle = interactionStyle;
+            this.tags = tags;
+            this.linkedRelationshipId = linkedRelationshipId;
+            this.properties = Collections.unmodifiableMap(new TreeMap<>(properties));
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getSourceId() {
+            return sourceId;
+        }
+
+        public String getDestinationId() {
+            return destinationId;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public String getTechnology() {
+            return technology;
+        }
+
+        public String getInteractionStyle() {
+            return interactionStyle;
+        }
+
+        public String getTags() {
+            return tags;
+        }
+
+        public String getLinkedRelationshipId() {
+            return linkedRelationshipId;
+        }
+
+        public boolean isImplied() {
+            return nonNull(linkedRelationshipId);
+        }
+
+        public Map<String, String> getProperties() {
+            return properties;
+        }
+    }
+
+    /**
+     * A view with the position of each element and the vertices of each relationship, by ID. The scope is the ID of
+     * the software system, container or element the view is about, or the environment of a deployment view.
+     */
+    public static final class ViewEntry {
+
+        private final String key;
+        private final String type;
+        private final String title;
+        private final String description;
+        private final String scope;
+        private final String paperSize;
+        private final Map<String, int[]> positions;
+        private final Map<String, int[]> vertices;
+
+        public ViewEntry(String key, String type, String title, String description, String scope, String paperSize,
+                         Map<String, int[]> positions, Map<String, int[]> vertices) {
+            this.key = key;
+            this.type = type;
+            this.title = title;
+            this.description = description;
+            this.scope = scope;
+            this.paperSize = paperSize;
+            this.positions = Collections.unmodifiableMap(positions);
+            this.vertices = Collections.unmodifiableMap(vertices);
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public String getScope() {
+            return scope;
+        }
+
+        public String getPaperSize() {
+            return paperSize;
+        }
+
+        /**
+         * The x and y coordinates of each element in the view, by element ID.
+         */
+        public Map<String, int[]> getPositions() {
+            return positions;
+        }
+
+        /**
+         * The coordinates of the vertices of each relationship in the view, x and y alternating, by relationship ID.
+         */
+        public Map<String, int[]> getVertices() {
+            return vertices;
+        }
+    }
+}
@@ -0,0 +1,399 @@
+package no.unit.nva;
+
+import com.structurizr.Workspace;
+import com.structurizr.io.WorkspaceReaderException;
+import com.structurizr.io.json.JsonReader;
+import com.structurizr.io.json.JsonWriter;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.GZIPOutputStream;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Uploads a workspace to the Structurizr API (or a compatible server at another URL) with the same HMAC
+ * authentication as {@code StructurizrClient}, and like it, copies the layout and configuration of the remote
+ * workspace into the workspace first, so that layout edited by hand in Structurizr is kept. A record of the last
+ * successful upload per workspace and URL is kept; an upload of a workspace with the fingerprint of the record is
+ * skipped without contacting the server, so delete the record to upload again after the workspace was replaced on the
+ * server. Gzipping the payload is off by default, as not every server accepts it; when it is on, the MD5 and the
+ * signature cover the compressed bytes that are sent, and a server that rejects the compressed request with 400 or
+ * 415 gets it uncompressed from then on. Connection failures, 429 and 5xx responses are retried with exponential
+ * backoff and jitter.
+ */
+public class WorkspaceUploader {
+
+    public static final String DEFAULT_API_URL = "https://api.structurizr.com";
+
+    static final String CONTENT_TYPE = "application/json; charset=UTF-8";
+
+    private static final String AGENT = "nva-c4-model";
+    private static final int MAX_ATTEMPTS = 5;
+    private static final Duration INITIAL_BACKOFF = Duration.ofMillis(500);
+    private static final Duration MAX_BACKOFF = Duration.ofSeconds(30);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofMinutes(2);
+
+    private final URI apiUrl;
+    private final String apiKey;
+    private final String apiSecret;
+    private final Path recordDirectory;
+    private final HttpClient httpClient;
+    private boolean compress;
+    private boolean mergeFromRemote = true;
+
+    public WorkspaceUploader(URI apiUrl, String apiKey, String apiSecret, Path recordDirectory) {
+        this.apiUrl = apiUrl;
+        this.apiKey = apiKey;
+        this.apiSecret = apiSecret;
+        this.recordDirectory = recordDirectory;
+        this.httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(30)).build();
+    }
+
+    /**
+     * Sets whether to gzip the payload, for servers that are known to accept {@code Content-Encoding: gzip}.
+     */
+    public void setCompress(boolean compress) {
+        this.compress = compress;
+    }
+
+    public void setMergeFromRemote(boolean mergeFromRemote) {
+        this.mergeFromRemote = mergeFromRemote;
+    }
+
+    public UploadResult upload(long workspaceId, Workspace workspace) throws UploadException, IOException,
+            InterruptedException {
+        var event = new UploadEvent();
+        event.begin();
+        event.workspaceId = workspaceId;
+        var fingerprint = Fingerprints.workspace(workspace);
+        var recordFile = recordDirectory.resolve("workspace-" + workspaceId + ".upload");
+        var record = readRecord(recordFile);
+        if (fingerprint.equals(record.getProperty("fingerprint"))
+                && apiUrl.toString().equals(record.getProperty("url"))) {
+            event.skipped = true;
+            event.commit();
+            return UploadResult.skipped();
+        }
+
+        if (mergeFromRemote) {
+            var remote = remoteWorkspace(workspaceId);
+            if (nonNull(remote)) {
+                workspace.getViews().copyLayoutInformationFrom(remote.getViews());
+                workspace.getViews().getConfiguration().copyConfigurationFrom(remote.getViews().getConfiguration());
+            }
+        }
+        workspace.setId(workspaceId);
+        workspace.setLastModifiedDate(new Date());
+        workspace.setLastModifiedAgent(AGENT);
+        workspace.setLastModifiedUser(System.getProperty("user.name"));
+        var json = toJson(workspace);
+        var gzippedJson = gzip(json);
+
+        var started = System.nanoTime();
+        int attempts = 0;
+        while (true) {
+            attempts++;
+            var compressed = compress;
+            var body = compressed ? gzippedJson : json;
+            HttpResponse<String> response;
+            try {
+                response = httpClient.send(request(workspaceId, body, compressed),
+                        HttpResponse.BodyHandlers.ofString());
+            } catch (IOException e) {
+                if (attempts >= MAX_ATTEMPTS) {
+                    throw new UploadException("Could not upload workspace " + workspaceId, e);
+                }
+                backOff(attempts, null);
+                continue;
+            }
+
+            int status = response.statusCode();
+            if (status == 200) {
+                var latency = Duration.ofNanos(System.nanoTime() - started);
+                var result = new UploadResult(false, attempts, compressed, json.length, body.length, latency,
+                        parseRevision(response.body()));
+                writeRecord(recordFile, fingerprint, result);
+                event.attempts = attempts;
+                event.compressed = compressed;
+                event.payloadBytes = json.length;
+                event.transferredBytes = body.length;
+                event.commit();
+                return result;
+            } else if (compressed && (status == 400 || status == 415)) {
+                compress = false;
+            } else if ((status == 429 || status >= 500) && attempts < MAX_ATTEMPTS) {
+                backOff(attempts, response.headers().firstValue("Retry-After").orElse(null));
+            } else {
+                throw new UploadException("Uploading workspace " + workspaceId + " failed with HTTP "
+                        + status + ": " + response.body());
+            }
+        }
+    }
+
+    /**
+     * Returns the workspace on the server, or {@code null} if there is none yet.
+     */
+    private Workspace remoteWorkspace(long workspaceId) throws UploadException, InterruptedException {
+        int attempts = 0;
+        while (true) {
+            attempts++;
+            HttpResponse<String> response;
+            try {
+                response = httpClient.send(getRequest(workspaceId), HttpResponse.BodyHandlers.ofString());
+            } catch (IOException e) {
+                if (attempts >= MAX_ATTEMPTS) {
+                    throw new UploadException("Could not read workspace " + workspaceId + " to merge its layout", e);
+                }
+                backOff(attempts, null);
+                continue;
+            }
+            int status = response.statusCode();
+            if (status == 200) {
+                try {
+                    return new JsonReader().read(new StringReader(response.body()));
+                } catch (WorkspaceReaderException e) {
+                    throw new UploadException("Could not read workspace " + workspaceId + " to merge its layout", e);
+                }
+            } else if (status == 404) {
+                return null;
+            } else if ((status == 429 || status >= 500) && attempts < MAX_ATTEMPTS) {
+                backOff(attempts, response.headers().firstValue("Retry-After").orElse(null));
+            } else {
+                throw new UploadException("Reading workspace " + workspaceId + " to merge its layout failed with HTTP "
+                        + status + ": " + response.body());
+            }
+        }
+    }
+
+    private URI workspaceUri(long workspaceId) {
+        return URI.create(apiUrl.toString().replaceAll("/+$", "") + "/workspace/" + workspaceId);
+    }
+
+    private HttpRequest getRequest(long workspaceId) {
+        var uri = workspaceUri(workspaceId);
+        var nonce = String.valueOf(System.currentTimeMillis());
+        var emptyMd5 = Fingerprints.hex(digest("MD5", new byte[0]));
+        return HttpRequest.newBuilder(uri)
+                .timeout(REQUEST_TIMEOUT)
+                .header("User-Agent", AGENT)
+                .header("X-Authorization", authorization(apiKey, apiSecret, "GET", uri.getRawPath(), emptyMd5, "",
+                        nonce))
+                .header("Nonce", nonce)
+                .GET()
+                .build();
+    }
+
+    /**
+     * Builds the PUT of {@code body}, with the MD5 and signature over exactly those bytes.
+     */
+    private HttpRequest request(long workspaceId, byte[] body, boolean compressed) {
+        var uri = workspaceUri(workspaceId);
+        var contentMd5 = Fingerprints.hex(digest("MD5", body));
+        var nonce = String.valueOf(System.currentTimeMillis());
+        var builder = HttpRequest.newBuilder(uri)
+                .timeout(REQUEST_TIMEOUT)
+                .header("User-Agent", AGENT)
+                .header("X-Authorization", authorization(apiKey, apiSecret,
+                        "PUT", uri.getRawPath(), contentMd5, CONTENT_TYPE, nonce))
+                .header("Nonce", nonce)
+                .header("Content-MD5", base64(contentMd5))
+                .header("Content-Type", CONTENT_TYPE)
+                .PUT(HttpRequest.BodyPublishers.ofByteArray(body));
+        if (compressed) {
+            builder.header("Content-Encoding", "gzip");
+        }
+        return builder.build();
+    }
+
+    /**
+     * The {@code X-Authorization} header of the Structurizr API: the API key and the base64 encoded, hex encoded
+     * HMAC-SHA256 of the method, path, content MD5, content type and nonce, each followed by a newline.
+     */
+    static String authorization(String apiKey, String apiSecret, String method, String path, String contentMd5,
+                                String contentType, String nonce) {
+        var content = method + "\n" + path + "\n" + contentMd5 + "\n" + contentType + "\n" + nonce + "\n";
+        try {
+            var mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(apiSecret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return apiKey + ":" + base64(Fingerprints.hex(mac.doFinal(content.getBytes(StandardCharsets.UTF_8))));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+
+    static byte[] digest(String algorithm, byte[] bytes) {
+        try {
+            return MessageDigest.getInstance(algorithm).digest(bytes);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(algorithm + " is not available", e);
+        }
+    }
+
+    static String base64(String value) {
+        return Base64.getEncoder().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] toJson(Workspace workspace) throws UploadException {
+        var json = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(json, StandardCharsets.UTF_8)) {
+            new JsonWriter(false).write(workspace, writer);
+        } catch (Exception e) {
+            throw new UploadException("Could not serialise the workspace", e);
+        }
+        return json.toByteArray();
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        var compressed = new ByteArrayOutputStream(bytes.length / 4);
+        try (var gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(bytes);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static void backOff(int attempt, String retryAfter) throws InterruptedException {
+        var backoff = INITIAL_BACKOFF.multipliedBy(1L << (attempt - 1));
+        if (backoff.compareTo(MAX_BACKOFF) > 0) {
+            backoff = MAX_BACKOFF;
+        }
+        long millis = ThreadLocalRandom.current().nextLong(backoff.toMillis() / 2, backoff.toMillis() + 1);
+        if (nonNull(retryAfter) && retryAfter.matches("\\d+")) {
+            millis = Math.max(millis, Duration.ofSeconds(Long.parseLong(retryAfter)).toMillis());
+        }
+        Thread.sleep(millis);
+    }
+
+    private static Long parseRevision(String response) {
+        var revision = response.replaceAll("(?s).*\"revision\"\\s*:\\s*(\\d+).*", "$1");
+        return revision.matches("\\d+") ? Long.valueOf(revision) : null;
+    }
+
+    private static Properties readRecord(Path recordFile) throws IOException {
+        var record = new Properties();
+        if (Files.isRegularFile(recordFile)) {
+            try (Reader reader = Files.newBufferedReader(recordFile, StandardCharsets.UTF_8)) {
+                record.load(reader);
+            }
+        }
+        return record;
+    }
+
+    private void writeRecord(Path recordFile, String fingerprint, UploadResult result) throws IOException {
+        var record = new Properties();
+        record.setProperty("fingerprint", fingerprint);
+        record.setProperty("url", apiUrl.toString());
+        record.setProperty("uploadedAt", Instant.now().toString());
+        record.setProperty("latencyMillis", String.valueOf(result.getLatency().toMillis()));
+        record.setProperty("payloadBytes", String.valueOf(result.getPayloadBytes()));
+        record.setProperty("transferredBytes", String.valueOf(result.getTransferredBytes()));
+        if (nonNull(result.getRevision())) {
+            record.setProperty("revision", String.valueOf(result.getRevision()));
+        }
+        Files.createDirectories(recordDirectory);
+        var temporary = Files.createTempFile(recordDirectory, recordFile.getFileName().toString(), ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            record.store(writer, null);
+        }
+        Files.move(temporary, recordFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static final class UploadResult {
+
+        private final boolean skipped;
+        private final int attempts;
+        private final boolean compressed;
+        private final long payloadBytes;
+        private final long transferredBytes;
+        private final Duration latency;
+        private final Long revision;
+
+        private UploadResult(boolean skipped, int attempts, boolean compressed, long payloadBytes,
+                             long transferredBytes, Duration latency, Long revision) {
+            this.skipped = skipped;
+            this.attempts = attempts;
+            this.compressed = compressed;
+            this.payloadBytes = payloadBytes;
+            this.transferredBytes = transferredBytes;
+            this.latency = latency;
+            this.revision = revision;
+        }
+
+        private static UploadResult skipped() {
+            return new UploadResult(true, 0, false, 0, 0, Duration.ZERO, null);
+        }
+
+        public boolean isSkipped() {
+            return skipped;
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+
+        public boolean isCompressed() {
+            return compressed;
+        }
+
+        public long getPayloadBytes() {
+            return payloadBytes;
+        }
+
+        public long getTransferredBytes() {
+            return transferredBytes;
+        }
+
+        public Duration getLatency() {
+            return latency;
+        }
+
+        public Long getRevision() {
+            return revision;
+        }
+
+        @Override
+        public String toString() {
+            if (skipped) {
+                return "Workspace unchanged since the last upload, not uploaded";
+            }
+            return "Uploaded " + payloadBytes + " bytes (" + transferredBytes + " sent"
+                    + (compressed ? ", gzip" : "") + ") in " + latency.toMillis() + " ms after " + attempts
+                    + (attempts == 1 ? " attempt" : " attempts")
+                    + (isNull(revision) ? "" : ", revision " + revision);
+        }
+    }
+
+    public static class UploadException extends Exception {
+
+        public UploadException(String message) {
+            super(message);
+        }
+
+        public UploadException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+}
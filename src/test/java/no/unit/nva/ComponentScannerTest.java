@@ -0,0 +1,153 @@
+package no.unit.nva;
+
+import com.structurizr.Workspace;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the cache of scan results against small generated jars, which hold no classes, so that only the cache keys,
+ * the jar hash index and the pruning are exercised.
+ */
+class ComponentScannerTest {
+
+    private static final String PACKAGE = "no.unit.nva.sample";
+    private static final String HASH_INDEX = "jar-hashes.properties";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsTheCachedResultWhenNoJarChanged() throws Exception {
+        var scanner = scanner();
+        var sources = sources(service("Publication Service", jar("publication.jar", "v1")));
+
+        assertEquals(0, scanner.scan(sources).addTo(registry()).getCached());
+        assertEquals(1, scanner.scan(sources).addTo(registry()).getCached());
+        assertEquals(1, cacheFiles().size());
+    }
+
+    @Test
+    void scansAgainAndPrunesTheOldResultWhenAJarChanged() throws Exception {
+        var scanner = scanner();
+        var jar = jar("publication.jar", "v1");
+        var sources = sources(service("Publication Service", jar));
+        scanner.scan(sources);
+        var before = cacheFiles();
+
+        jar("publication.jar", "v2");
+        Files.setLastModifiedTime(jar, FileTime.fromMillis(Files.getLastModifiedTime(jar).toMillis() + 2000));
+
+        assertEquals(0, scanner.scan(sources).addTo(registry()).getCached());
+        var after = cacheFiles();
+        assertEquals(1, after.size());
+        assertNotEquals(before, after);
+    }
+
+    @Test
+    void trustsTheHashIndexForAJarWithTheSameSizeAndModificationTime() throws Exception {
+        var scanner = scanner();
+        var jar = jar("publication.jar", "v1");
+        var sources = sources(service("Publication Service", jar));
+        scanner.scan(sources);
+        var modified = Files.getLastModifiedTime(jar);
+
+        jar("publication.jar", "v2");
+        Files.setLastModifiedTime(jar, modified);
+
+        assertEquals(1, scanner.scan(sources).addTo(registry()).getCached());
+    }
+
+    @Test
+    void prunesTheResultsAndHashesOfServicesThatAreGone() throws Exception {
+        var scanner = scanner();
+        var publication = service("Publication Service", jar("publication.jar", "v1"));
+        var search = service("Search Service", jar("search.jar", "s1"));
+        scanner.scan(sources(publication, search));
+        assertEquals(2, cacheFiles().size());
+
+        scanner.scan(sources(publication));
+
+        assertEquals(1, cacheFiles().size());
+        var hashIndex = new Properties();
+        try (var reader = Files.newBufferedReader(directory.resolve("cache").resolve(HASH_INDEX))) {
+            hashIndex.load(reader);
+        }
+        assertEquals(Set.of(publication.getJars().get(0).toString()), hashIndex.stringPropertyNames());
+    }
+
+    @Test
+    void rejectsAServiceWithoutJars() throws IOException {
+        Files.createDirectories(directory.resolve("libs"));
+        var file = directory.resolve("services.yaml");
+        Files.writeString(file, String.join("\n",
+                "services:",
+                "  - container: Publication Service",
+                "    package: " + PACKAGE,
+                "    jars: [libs]",
+                ""), StandardCharsets.UTF_8);
+
+        var exception = assertThrows(IOException.class, () -> ComponentSources.load(file));
+
+        assertTrue(exception.getMessage().contains("\"Publication Service\""));
+    }
+
+    private ComponentScanner scanner() {
+        return new ComponentScanner(directory.resolve("cache"), 2);
+    }
+
+    private static ComponentSources sources(ComponentSources.Service... services) {
+        return new ComponentSources(List.of("Handler"), List.of(services));
+    }
+
+    private static ComponentSources.Service service(String container, Path jar) {
+        return new ComponentSources.Service(container, PACKAGE, List.of(jar));
+    }
+
+    /**
+     * Writes a jar with one text entry, so that jars with different content have the same size.
+     */
+    private Path jar(String name, String content) throws IOException {
+        var jar = directory.resolve(name);
+        try (var output = new JarOutputStream(Files.newOutputStream(jar))) {
+            var entry = new JarEntry("version.txt");
+            entry.setTime(0);
+            output.putNextEntry(entry);
+            output.write(content.getBytes(StandardCharsets.UTF_8));
+            output.closeEntry();
+        }
+        return jar;
+    }
+
+    private List<Path> cacheFiles() throws IOException {
+        try (var files = Files.list(directory.resolve("cache"))) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".json"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static ElementRegistry registry() {
+        var registry = new ElementRegistry(new Workspace("Test", "").getModel());
+        var system = registry.addSoftwareSystem("NvaCore", "");
+        registry.addContainer(system, "Publication Service", "", "AWS Lambda");
+        registry.addContainer(system, "Search Service", "", "AWS Lambda");
+        return registry;
+    }
+}
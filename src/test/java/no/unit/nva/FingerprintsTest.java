@@ -0,0 +1,55 @@
+package no.unit.nva;
+
+import com.structurizr.Workspace;
+import com.structurizr.view.SystemContextView;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class FingerprintsTest {
+
+    static final List<String> PEOPLE = List.of("Creator", "Curator", "Anonymous User");
+
+    @Test
+    void doesNotDependOnTheOrderTheModelWasBuiltIn() {
+        var workspace = workspace(PEOPLE, "Creates publications in");
+        var renumbered = workspace(List.of("Anonymous User", "Curator", "Creator"), "Creates publications in");
+
+        assertNotEquals(workspace.getModel().getPersonWithName("Creator").getId(),
+                renumbered.getModel().getPersonWithName("Creator").getId());
+        assertEquals(Fingerprints.view(view(workspace), LayeredLayoutEngine.NAME),
+                Fingerprints.view(view(renumbered), LayeredLayoutEngine.NAME));
+        assertEquals(Fingerprints.workspace(workspace), Fingerprints.workspace(renumbered));
+    }
+
+    @Test
+    void changesWithARelationshipDescription() {
+        var workspace = workspace(PEOPLE, "Creates publications in");
+        var changed = workspace(PEOPLE, "Creates and updates publications in");
+
+        assertNotEquals(Fingerprints.view(view(workspace), LayeredLayoutEngine.NAME),
+                Fingerprints.view(view(changed), LayeredLayoutEngine.NAME));
+        assertNotEquals(Fingerprints.workspace(workspace), Fingerprints.workspace(changed));
+    }
+
+    /**
+     * Builds a system that every person uses, adding the people in the given order.
+     */
+    static Workspace workspace(List<String> people, String description) {
+        var workspace = new Workspace("Test", "");
+        var system = workspace.getModel().addSoftwareSystem("NvaCore", "");
+        for (String person : people) {
+            workspace.getModel().addPerson(person, "").uses(system, description);
+        }
+        var view = workspace.getViews().createSystemContextView(system, "SystemContext", "");
+        view.addAllElements();
+        return workspace;
+    }
+
+    static SystemContextView view(Workspace workspace) {
+        return workspace.getViews().getSystemContextViews().iterator().next();
+    }
+}
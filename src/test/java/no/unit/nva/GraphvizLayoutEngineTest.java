@@ -0,0 +1,115 @@
+package no.unit.nva;
+
+import com.structurizr.Workspace;
+import com.structurizr.view.ContainerView;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the engine against shell scripts standing in for {@code dot}, so that Graphviz need not be installed.
+ */
+class GraphvizLayoutEngineTest {
+
+    private static final String PLAIN = String.join("\n",
+            "graph 1 8.25 10.167",
+            "node n0 4.125 7.9444 6.25 4.1667 \"\" solid box black lightgrey",
+            "node n1 4.125 2.2222 6.25 4.1667 \"\" solid box black lightgrey",
+            "edge n0 n1 7 4.125 5.8333 4.125 5.5 3 5.2 3 5 3 4.8 4.125 4.6 4.125 4.3333 solid black",
+            "stop", "");
+
+    @TempDir
+    Path directory;
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+
+    @AfterEach
+    void stopTimer() {
+        timer.shutdownNow();
+    }
+
+    @Test
+    void placesElementsAndRoutesRelationshipsFromThePlainOutput() throws Exception {
+        var view = containerView();
+        var dot = script("dot", "while [ $# -gt 0 ]; do\n"
+                + "  case \"$1\" in\n"
+                + "    -Tplain) format=plain ;;\n"
+                + "    -Tsvg) format=svg ;;\n"
+                + "    -o) shift; if [ $format = plain ]; then cp \"" + directory.resolve("layout.plain")
+                + "\" \"$1\"; else echo '<svg/>' > \"$1\"; fi ;;\n"
+                + "  esac\n"
+                + "  shift\n"
+                + "done\n");
+        Files.writeString(directory.resolve("layout.plain"), PLAIN, StandardCharsets.UTF_8);
+
+        new GraphvizLayoutEngine(directory.resolve("graphviz").toFile(), 1, dot.toString()).apply(view);
+
+        var api = view.getElementView(view.getModel().getElementWithCanonicalName("/System/API"));
+        var database = view.getElementView(view.getModel().getElementWithCanonicalName("/System/Database"));
+        assertEquals(472, api.getX());
+        assertEquals(410, api.getY());
+        assertEquals(472, database.getX());
+        assertEquals(822, database.getY());
+        var vertices = new ArrayList<>(view.getRelationships().iterator().next().getVertices());
+        assertEquals(1, vertices.size());
+        assertEquals(616, vertices.get(0).getX());
+        assertEquals(772, vertices.get(0).getY());
+        assertTrue(Files.exists(directory.resolve("graphviz/Containers.dot.svg")));
+    }
+
+    @Test
+    void killsDotWhenTheLayoutTimesOut() throws Exception {
+        var pidFile = directory.resolve("dot.pid");
+        var dot = script("dot", "echo $$ > \"" + pidFile + "\"\nexec sleep 60\n");
+        var engine = new GraphvizLayoutEngine(directory.resolve("graphviz").toFile(), 1, dot.toString());
+
+        assertThrows(TimeoutException.class,
+                () -> engine.apply(containerView(), new LayoutTimeout(timer, Duration.ofMillis(500))));
+
+        long pid = Long.parseLong(Files.readString(pidFile).trim());
+        assertFalse(ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false));
+    }
+
+    @Test
+    void reportsWhatDotPrintedWhenItFails() throws Exception {
+        var dot = script("dot", "echo 'syntax error in line 1' >&2\nexit 1\n");
+        var engine = new GraphvizLayoutEngine(directory.resolve("graphviz").toFile(), 1, dot.toString());
+
+        var exception = assertThrows(GraphvizLayoutEngine.GraphvizException.class,
+                () -> engine.apply(containerView()));
+
+        assertTrue(exception.getMessage().contains("syntax error in line 1"));
+    }
+
+    private Path script(String name, String body) throws Exception {
+        var script = directory.resolve(name);
+        Files.writeString(script, "#!/bin/sh\n" + body, StandardCharsets.UTF_8);
+        assertTrue(script.toFile().setExecutable(true));
+        return script;
+    }
+
+    private static ContainerView containerView() {
+        var workspace = new Workspace("Test", "");
+        var system = workspace.getModel().addSoftwareSystem("System", "");
+        var api = system.addContainer("API", "", "Java");
+        var database = system.addContainer("Database", "", "DynamoDB");
+        api.uses(database, "Reads from and writes to");
+        var view = workspace.getViews().createContainerView(system, "Containers", "");
+        view.addAllContainers();
+        return view;
+    }
+}
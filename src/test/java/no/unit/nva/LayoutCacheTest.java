@@ -0,0 +1,36 @@
+package no.unit.nva;
+
+import com.structurizr.view.ElementView;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LayoutCacheTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void restoresTheLayoutOntoTheSameElementsAfterTheyWereRenumbered() throws Exception {
+        var cache = new LayoutCache(directory.toFile());
+        var view = FingerprintsTest.view(FingerprintsTest.workspace(FingerprintsTest.PEOPLE, "Uses"));
+        new LayeredLayoutEngine().apply(view);
+        cache.store(view, Fingerprints.view(view, LayeredLayoutEngine.NAME));
+
+        var renumbered = FingerprintsTest.view(FingerprintsTest.workspace(
+                List.of("Anonymous User", "Curator", "Creator"), "Uses"));
+
+        assertTrue(cache.restore(renumbered, Fingerprints.view(renumbered, LayeredLayoutEngine.NAME)));
+        for (ElementView elementView : view.getElements()) {
+            var restored = renumbered.getElementView(renumbered.getModel()
+                    .getElementWithCanonicalName(elementView.getElement().getCanonicalName()));
+            assertEquals(elementView.getX(), restored.getX());
+            assertEquals(elementView.getY(), restored.getY());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package no.unit.nva;
+
+import com.structurizr.Workspace;
+import com.structurizr.model.Model;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoadSimulatorTest {
+
+    private static final double DURATION_MILLIS = 60_000;
+
+    @Test
+    void givesTheSameResultsForTheSameSeed() throws Exception {
+        var simulator = new LoadSimulator(model());
+
+        var alone = simulator.run(scenario("peak", 7, Map.of()));
+        var concurrent = simulator.runAll(List.of(scenario("peak", 7, Map.of()), scenario("other", 8, Map.of()),
+                scenario("peak again", 7, Map.of())), 3);
+
+        assertTrue(alone.getEndToEnd().getCount() > 0);
+        assertEquals(summaryOf(alone), summaryOf(concurrent.get(0)));
+        assertEquals(summaryOf(alone), summaryOf(concurrent.get(2)));
+        assertNotEquals(summaryOf(alone), summaryOf(concurrent.get(1)));
+    }
+
+    @Test
+    void rejectsAWeightThatDoesNotNameARelationship() {
+        var simulator = new LoadSimulator(model());
+        var scenario = scenario("peak", 7, Map.of("API", 1.0));
+
+        var exception = assertThrows(IllegalArgumentException.class, () -> simulator.run(scenario));
+
+        assertTrue(exception.getMessage().contains("\"API\""));
+        assertTrue(exception.getMessage().contains("\"peak\""));
+    }
+
+    private static SimulationScenario scenario(String name, long seed, Map<String, Double> weights) {
+        return new SimulationScenario(name, seed, DURATION_MILLIS,
+                List.of(new SimulationScenario.Arrivals("User", 20, 0, DURATION_MILLIS, null)),
+                Map.of("API", new SimulationScenario.Capacity(20.0, 4),
+                        "Search", new SimulationScenario.Capacity(80.0, 2),
+                        "Database", new SimulationScenario.Capacity(10.0, 8)),
+                weights);
+    }
+
+    private static List<Object> summaryOf(LoadSimulator.Result result) {
+        var summary = new ArrayList<Object>();
+        summary.add(result.getEndToEnd().getCount());
+        summary.add(result.getEndToEnd().quantile(0.5));
+        summary.add(result.getEndToEnd().quantile(0.99));
+        for (LoadSimulator.Station station : result.getStations()) {
+            summary.add(station.getElement().getName());
+            summary.add(station.getArrivals());
+            summary.add(station.getCompletions());
+            summary.add(station.getMaxQueue());
+            summary.add(station.getLatency().quantile(0.99));
+        }
+        return summary;
+    }
+
+    private static Model model() {
+        var registry = new ElementRegistry(new Workspace("Test", "").getModel());
+        var system = registry.addSoftwareSystem("System", "");
+        var user = registry.addPerson("User", "");
+        var api = registry.addContainer(system, "API", "", "AWS API Gateway");
+        var search = registry.addContainer(system, "Search", "", "AWS Lambda");
+        var database = registry.addContainer(system, "Database", "", "DynamoDB");
+        user.uses(api, "Calls");
+        api.uses(search, "Searches with");
+        api.uses(database, "Reads from");
+        search.uses(database, "Reads from");
+        return registry.getModel();
+    }
+}
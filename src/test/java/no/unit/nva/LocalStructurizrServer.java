@@ -0,0 +1,182 @@
+package no.unit.nva;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+import static java.util.Objects.isNull;
+
+/**
+ * A local stand-in for the workspace API of Structurizr, for exercising uploads without network access. It checks the
+ * HMAC {@code X-Authorization} header, and the {@code Content-MD5} header against the bytes it receives, like the real
+ * API; accepts gzipped requests unless told not to; keeps the latest workspace JSON and a revision number per
+ * workspace in memory, returning the workspace with its revision like the real API; and can be told to fail the next
+ * requests with a given status or to have the workspace edited by someone else.
+ */
+public class LocalStructurizrServer {
+
+    private static final Pattern WORKSPACE_PATH = Pattern.compile("/workspace/(\\d+)");
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final String apiKey;
+    private final String apiSecret;
+    private final HttpServer server;
+    private final Map<Long, String> workspaces = new ConcurrentHashMap<>();
+    private final Map<Long, Long> revisions = new ConcurrentHashMap<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+    private volatile int failureStatus;
+    private volatile boolean acceptGzip = true;
+
+    public LocalStructurizrServer(int port, String apiKey, String apiSecret) throws IOException {
+        this.apiKey = apiKey;
+        this.apiSecret = apiSecret;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/workspace/", this::handle);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    public URI getUrl() {
+        return URI.create("http://localhost:" + server.getAddress().getPort());
+    }
+
+    public void setAcceptGzip(boolean acceptGzip) {
+        this.acceptGzip = acceptGzip;
+    }
+
+    public void failNextRequests(int count, int status) {
+        failureStatus = status;
+        failures.set(count);
+    }
+
+    /**
+     * Replaces the workspace as an edit in the Structurizr UI would, which gives it a new revision.
+     */
+    public void editRemotely(long workspaceId, String json) {
+        workspaces.put(workspaceId, json);
+        revisions.merge(workspaceId, 1L, Long::sum);
+    }
+
+    public String getWorkspaceJson(long workspaceId) {
+        return workspaces.get(workspaceId);
+    }
+
+    public long getRevision(long workspaceId) {
+        return revisions.getOrDefault(workspaceId, 0L);
+    }
+
+    public int getRequestCount() {
+        return requests.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            requests.incrementAndGet();
+            if (failures.getAndUpdate(remaining -> Math.max(0, remaining - 1)) > 0) {
+                fail(exchange, failureStatus, "Failing as requested");
+                return;
+            }
+            var matcher = WORKSPACE_PATH.matcher(exchange.getRequestURI().getPath());
+            if (!matcher.matches()) {
+                fail(exchange, 404, "Not found");
+                return;
+            }
+            var workspaceId = Long.parseLong(matcher.group(1));
+            if ("PUT".equals(exchange.getRequestMethod())) {
+                put(exchange, workspaceId);
+            } else if ("GET".equals(exchange.getRequestMethod())) {
+                get(exchange, workspaceId);
+            } else {
+                fail(exchange, 405, "Method not allowed");
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void put(HttpExchange exchange, long workspaceId) throws IOException {
+        var gzipped = "gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"));
+        if (gzipped && !acceptGzip) {
+            fail(exchange, 415, "Content-Encoding gzip is not supported");
+            return;
+        }
+        var body = exchange.getRequestBody().readAllBytes();
+        var contentMd5 = Fingerprints.hex(WorkspaceUploader.digest("MD5", body));
+        if (!WorkspaceUploader.base64(contentMd5).equals(exchange.getRequestHeaders().getFirst("Content-MD5"))) {
+            fail(exchange, 400, "Content-MD5 does not match the content");
+            return;
+        }
+        if (!isAuthorized(exchange, contentMd5)) {
+            fail(exchange, 401, "Authorization header is not valid");
+            return;
+        }
+        InputStream content = new ByteArrayInputStream(body);
+        if (gzipped) {
+            content = new GZIPInputStream(content);
+        }
+        workspaces.put(workspaceId, new String(content.readAllBytes(), StandardCharsets.UTF_8));
+        var revision = revisions.merge(workspaceId, 1L, Long::sum);
+        var response = "{\"success\": true, \"message\": \"OK\", \"revision\": " + revision + "}";
+        send(exchange, 200, response.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void get(HttpExchange exchange, long workspaceId) throws IOException {
+        if (!isAuthorized(exchange, Fingerprints.hex(WorkspaceUploader.digest("MD5", new byte[0])))) {
+            fail(exchange, 401, "Authorization header is not valid");
+            return;
+        }
+        var json = workspaces.get(workspaceId);
+        if (isNull(json)) {
+            fail(exchange, 404, "Workspace " + workspaceId + " does not exist");
+            return;
+        }
+        var workspace = (ObjectNode) OBJECT_MAPPER.readTree(json);
+        workspace.put("revision", getRevision(workspaceId));
+        send(exchange, 200, OBJECT_MAPPER.writeValueAsBytes(workspace));
+    }
+
+    private boolean isAuthorized(HttpExchange exchange, String contentMd5) {
+        var headers = exchange.getRequestHeaders();
+        var nonce = headers.getFirst("Nonce");
+        var contentType = headers.getFirst("Content-Type");
+        var authorization = headers.getFirst("X-Authorization");
+        if (isNull(nonce) || isNull(authorization)) {
+            return false;
+        }
+        var expected = WorkspaceUploader.authorization(apiKey, apiSecret, exchange.getRequestMethod(),
+                exchange.getRequestURI().getRawPath(), contentMd5, isNull(contentType) ? "" : contentType, nonce);
+        return expected.equals(authorization);
+    }
+
+    private static void fail(HttpExchange exchange, int status, String message) throws IOException {
+        var json = "{\"success\": false, \"message\": \"" + message + "\"}";
+        send(exchange, status, json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", WorkspaceUploader.CONTENT_TYPE);
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+}
@@ -0,0 +1,123 @@
+package no.unit.nva;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ModelDefinitionsTest {
+
+    private static final String BASE = String.join("\n",
+            "people:",
+            "  - name: Creator",
+            "    description: Creates publications",
+            "    uses:",
+            "      - destination: Publication Service",
+            "        description: Creates publications with",
+            "softwareSystems:",
+            "  - name: Core",
+            "    description: The core",
+            "  - name: Search",
+            "    description: The search engine",
+            "containers:",
+            "  - softwareSystem: Core",
+            "    name: Publication Service",
+            "    description: Stores publications",
+            "    technology: AWS Lambda",
+            "    uses:",
+            "      - destination: Index",
+            "        description: Indexes publications in",
+            "  - softwareSystem: Search",
+            "    name: Index",
+            "    description: The search index",
+            "    technology: Elasticsearch",
+            "");
+
+    @TempDir
+    Path directory;
+
+    private ModelDefinitions base;
+
+    @BeforeEach
+    void readBase() throws IOException {
+        base = ModelDefinitions.read(fragment("model", "00-base.yaml", BASE));
+    }
+
+    @Test
+    void replacesTheDefinitionOfTheSameElementInPlace() throws IOException {
+        var variant = base.withOverlay(fragment("variant", "replace.yaml", String.join("\n",
+                "containers:",
+                "  - softwareSystem: Core",
+                "    name: Publication Service",
+                "    description: Stores and publishes publications",
+                "    technology: AWS Lambda",
+                "")));
+
+        assertEquals(List.of("Creator", "Core", "Search", "Publication Service", "Index"), names(variant));
+        assertEquals("Stores and publishes publications", variant.getElements().get(3).getDescription());
+        assertEquals(base.getRelationships().size(), variant.getRelationships().size());
+    }
+
+    @Test
+    void removesASoftwareSystemWithItsContainersAndTheirRelationships() throws IOException {
+        var variant = base.withOverlay(fragment("variant", "remove.yaml", String.join("\n",
+                "remove:",
+                "  - element: Search",
+                "")));
+
+        assertEquals(List.of("Creator", "Core", "Publication Service"), names(variant));
+        assertEquals(List.of("Creator -> Publication Service"), variant.getRelationships().stream()
+                .map(relationship -> relationship.getSource() + " -> " + relationship.getDestination())
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    void failsToRemoveAnElementThatIsNotInTheModel() throws IOException {
+        var overlay = fragment("variant", "remove.yaml", String.join("\n",
+                "remove:",
+                "  - element: Cache",
+                ""));
+
+        var exception = assertThrows(IOException.class, () -> base.withOverlay(overlay));
+
+        assertTrue(exception.getMessage().contains(overlay.toString()));
+        assertTrue(exception.getMessage().contains("\"Cache\""));
+    }
+
+    @Test
+    void failsToAddARelationshipToAnElementItRemoves() throws IOException {
+        var overlay = fragment("variant", "remove.yaml", String.join("\n",
+                "remove:",
+                "  - element: Index",
+                "relationships:",
+                "  - source: Creator",
+                "    destination: Index",
+                "    description: Searches",
+                ""));
+
+        var exception = assertThrows(IOException.class, () -> base.withOverlay(overlay));
+
+        assertTrue(exception.getMessage().contains(overlay.toString()));
+        assertTrue(exception.getMessage().contains("removes \"Index\""));
+    }
+
+    private Path fragment(String subdirectory, String name, String content) throws IOException {
+        var fragmentDirectory = Files.createDirectories(directory.resolve(subdirectory));
+        Files.writeString(fragmentDirectory.resolve(name), content, StandardCharsets.UTF_8);
+        return fragmentDirectory;
+    }
+
+    private static List<String> names(ModelDefinitions definitions) {
+        return definitions.getElements().stream().map(ElementDefinition::getName).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,78 @@
+package no.unit.nva;
+
+import com.structurizr.Workspace;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ModelFragmentParserTest {
+
+    private static final ModelDefinitionHandler IGNORE = new ModelDefinitionHandler() {
+
+        @Override
+        public void element(ElementDefinition element) {
+        }
+
+        @Override
+        public void relationship(RelationshipDefinition relationship) {
+        }
+    };
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void theFragmentsDescribeTheHandWrittenModel() throws Exception {
+        var handWritten = new ElementRegistry(new Workspace("Hand-written", "").getModel());
+        Nva.addHandWrittenModel(handWritten, PhaseInstrumentation.disabled());
+        var loaded = new ElementRegistry(new Workspace("Fragments", "").getModel());
+        Nva.loadModel(Path.of("model")).addTo(loaded, PhaseInstrumentation.disabled());
+
+        assertEquals(Fingerprints.modelLines(handWritten.getModel()), Fingerprints.modelLines(loaded.getModel()));
+    }
+
+    @Test
+    void failsOnAnEntryThatIsNotAnObject() throws IOException {
+        var fragment = fragment("people.yaml", String.join("\n",
+                "people:",
+                "  - name: Creator",
+                "  - Curator",
+                ""));
+
+        var exception = assertThrows(IOException.class,
+                () -> new ModelFragmentParser().parse(fragment, IGNORE));
+
+        assertTrue(exception.getMessage().contains(fragment.toString()));
+        assertTrue(exception.getMessage().contains("line 3"));
+    }
+
+    @Test
+    void failsOnAnUnknownInteractionStyle() throws IOException {
+        var fragment = fragment("relationships.yaml", String.join("\n",
+                "relationships:",
+                "  - source: Creator",
+                "    destination: NvaCore",
+                "    interactionStyle: Sometimes",
+                ""));
+
+        var exception = assertThrows(IOException.class,
+                () -> new ModelFragmentParser().parse(fragment, IGNORE));
+
+        assertTrue(exception.getMessage().contains(fragment.toString()));
+        assertTrue(exception.getMessage().contains("\"Sometimes\""));
+    }
+
+    private Path fragment(String name, String content) throws IOException {
+        var fragment = directory.resolve(name);
+        Files.writeString(fragment, content, StandardCharsets.UTF_8);
+        return fragment;
+    }
+}
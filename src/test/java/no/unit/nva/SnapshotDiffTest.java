@@ -0,0 +1,77 @@
+package no.unit.nva;
+
+import com.structurizr.Workspace;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnapshotDiffTest {
+
+    @Test
+    void findsNoChangesWhenOnlyTheIdsWereRenumbered() {
+        var before = WorkspaceSnapshot.of(workspace(List.of("Creator", "Curator"), "Creates publications in"));
+        var after = WorkspaceSnapshot.of(workspace(List.of("Curator", "Creator"), "Creates publications in"));
+
+        assertNotEquals(idOf(before, "/Creator"), idOf(after, "/Creator"));
+        assertTrue(SnapshotDiff.between(before, after).isEmpty());
+    }
+
+    @Test
+    void reportsAddedRemovedAndChangedEntries() {
+        var before = WorkspaceSnapshot.of(workspace(List.of("Creator", "Curator"), "Creates publications in"));
+        var changed = workspace(List.of("Creator", "Anonymous User"), "Creates publications in");
+        changed.getModel().getSoftwareSystemWithName("NvaCore").setDescription("The NVA core");
+        var after = WorkspaceSnapshot.of(changed);
+
+        var changes = SnapshotDiff.between(before, after).getChanges().stream()
+                .map(change -> change.getKind() + " " + change.getSection() + " " + change.getKey() + " "
+                        + change.getFields())
+                .collect(Collectors.toList());
+
+        assertEquals(List.of(
+                "REMOVED element /Curator []",
+                "ADDED element /Anonymous User []",
+                "CHANGED element /NvaCore [description]",
+                "REMOVED relationship /Curator -> /NvaCore: Creates publications in []",
+                "ADDED relationship /Anonymous User -> /NvaCore: Creates publications in []",
+                "CHANGED view Context [elements, relationships]"), changes);
+    }
+
+    @Test
+    void refusesASnapshotWithTwoEntriesOfTheSameKey() {
+        var snapshot = WorkspaceSnapshot.of(workspace(List.of("Creator"), "Creates publications in"));
+        var element = snapshot.getElements().get(0);
+        var duplicated = new WorkspaceSnapshot(snapshot.getName(), snapshot.getDescription(),
+                List.of(element, element), List.of(), List.of());
+
+        var exception = assertThrows(IllegalArgumentException.class,
+                () -> SnapshotDiff.between(snapshot, duplicated));
+
+        assertTrue(exception.getMessage().contains("second snapshot"));
+        assertTrue(exception.getMessage().contains(element.getCanonicalName()));
+    }
+
+    private static String idOf(WorkspaceSnapshot snapshot, String canonicalName) {
+        return snapshot.getElements().stream()
+                .filter(element -> element.getCanonicalName().equals(canonicalName))
+                .findFirst()
+                .orElseThrow()
+                .getId();
+    }
+
+    private static Workspace workspace(List<String> people, String description) {
+        var workspace = new Workspace("NVA", "");
+        var system = workspace.getModel().addSoftwareSystem("NvaCore", "The core");
+        for (String person : people) {
+            workspace.getModel().addPerson(person, "").uses(system, description);
+        }
+        workspace.getViews().createSystemContextView(system, "Context", "").addAllElements();
+        return workspace;
+    }
+}
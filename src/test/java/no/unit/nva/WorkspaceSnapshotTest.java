@@ -0,0 +1,107 @@
+package no.unit.nva;
+
+import com.structurizr.Workspace;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WorkspaceSnapshotTest {
+
+    private static final int STRING_TABLE_OFFSET = 8;
+    private static final int FIRST_RECORD = 32;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsBackWhatItWrote() throws Exception {
+        var snapshot = WorkspaceSnapshot.of(workspace());
+        var file = directory.resolve("nva.snapshot");
+
+        snapshot.write(file);
+        var read = WorkspaceSnapshot.read(file);
+
+        assertEquals(snapshot.getName(), read.getName());
+        assertEquals(snapshot.getDescription(), read.getDescription());
+        assertTrue(SnapshotDiff.between(snapshot, read).isEmpty());
+        for (int i = 0; i < snapshot.getElements().size(); i++) {
+            var written = snapshot.getElements().get(i);
+            var element = read.getElements().get(i);
+            assertEquals(written.getId(), element.getId());
+            assertEquals(written.getParentId(), element.getParentId());
+            assertEquals(written.getProperties(), element.getProperties());
+        }
+        for (int i = 0; i < snapshot.getRelationships().size(); i++) {
+            assertEquals(snapshot.getRelationships().get(i).getId(), read.getRelationships().get(i).getId());
+        }
+        var writtenView = snapshot.getViews().get(0);
+        var view = read.getViews().get(0);
+        assertEquals(writtenView.getPositions().keySet(), view.getPositions().keySet());
+        writtenView.getPositions().forEach((id, position) -> assertArrayEquals(position, view.getPositions().get(id)));
+        writtenView.getVertices().forEach((id, vertices) -> assertArrayEquals(vertices, view.getVertices().get(id)));
+
+        var rewritten = directory.resolve("rewritten.snapshot");
+        read.write(rewritten);
+        assertArrayEquals(Files.readAllBytes(file), Files.readAllBytes(rewritten));
+    }
+
+    @Test
+    void reportsATruncatedFile() throws Exception {
+        var file = directory.resolve("nva.snapshot");
+        WorkspaceSnapshot.of(workspace()).write(file);
+        var bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+
+        var exception = assertThrows(IOException.class, () -> WorkspaceSnapshot.read(file));
+
+        assertTrue(exception.getMessage().contains("truncated or corrupt"));
+    }
+
+    @Test
+    void reportsAStringTableOutsideTheFile() throws Exception {
+        var file = directory.resolve("nva.snapshot");
+        WorkspaceSnapshot.of(workspace()).write(file);
+        var bytes = Files.readAllBytes(file);
+        ByteBuffer.wrap(bytes).putLong(STRING_TABLE_OFFSET, bytes.length + 1L);
+        Files.write(file, bytes);
+
+        assertThrows(IOException.class, () -> WorkspaceSnapshot.read(file));
+    }
+
+    @Test
+    void reportsAStringIndexOutsideTheTable() throws Exception {
+        var file = directory.resolve("nva.snapshot");
+        WorkspaceSnapshot.of(workspace()).write(file);
+        var bytes = Files.readAllBytes(file);
+        ByteBuffer.wrap(bytes).putInt(FIRST_RECORD, Integer.MAX_VALUE);
+        Files.write(file, bytes);
+
+        var exception = assertThrows(IOException.class, () -> WorkspaceSnapshot.read(file));
+
+        assertTrue(exception.getMessage().contains("refers to string " + Integer.MAX_VALUE));
+    }
+
+    static Workspace workspace() throws Exception {
+        var workspace = new Workspace("NVA", "The NVA architecture");
+        var system = workspace.getModel().addSoftwareSystem("NvaCore", "The core");
+        var api = system.addContainer("Public API", "The API", "AWS API Gateway");
+        var service = system.addContainer("Publication Service", "Stores publications", "AWS Lambda");
+        api.addProperty("latency.budget", "50");
+        workspace.getModel().addPerson("Creator", "Creates publications").uses(api, "Creates publications with");
+        api.uses(service, "Forwards requests to");
+        var view = workspace.getViews().createContainerView(system, "Containers", "The containers");
+        view.addAllElements();
+        new LayeredLayoutEngine().apply(view);
+        return workspace;
+    }
+}
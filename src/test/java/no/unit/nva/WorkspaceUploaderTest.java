@@ -0,0 +1,158 @@
+package no.unit.nva;
+
+import com.structurizr.Workspace;
+import com.structurizr.io.json.JsonReader;
+import com.structurizr.io.json.JsonWriter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WorkspaceUploaderTest {
+
+    private static final long WORKSPACE_ID = 42;
+    private static final String API_KEY = "key";
+    private static final String API_SECRET = "secret";
+
+    @TempDir
+    Path recordDirectory;
+
+    private LocalStructurizrServer server;
+    private WorkspaceUploader uploader;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = new LocalStructurizrServer(0, API_KEY, API_SECRET);
+        server.start();
+        uploader = new WorkspaceUploader(server.getUrl(), API_KEY, API_SECRET, recordDirectory);
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop();
+    }
+
+    @Test
+    void uploadsTheWorkspaceUncompressedByDefault() throws Exception {
+        var result = uploader.upload(WORKSPACE_ID, workspace("A person"));
+
+        assertFalse(result.isSkipped());
+        assertFalse(result.isCompressed());
+        assertEquals(1, result.getAttempts());
+        assertEquals(result.getPayloadBytes(), result.getTransferredBytes());
+        assertEquals(1L, result.getRevision());
+        assertTrue(server.getWorkspaceJson(WORKSPACE_ID).contains("A person"));
+    }
+
+    @Test
+    void signsTheGzippedBytesItSends() throws Exception {
+        uploader.setCompress(true);
+
+        var result = uploader.upload(WORKSPACE_ID, workspace("A person"));
+
+        assertTrue(result.isCompressed());
+        assertEquals(1, result.getAttempts());
+        assertTrue(result.getTransferredBytes() < result.getPayloadBytes());
+        assertTrue(server.getWorkspaceJson(WORKSPACE_ID).contains("A person"));
+    }
+
+    @Test
+    void skipsTheUploadWithoutContactingTheServerWhenTheWorkspaceDidNotChange() throws Exception {
+        uploader.upload(WORKSPACE_ID, workspace("A person"));
+        int requests = server.getRequestCount();
+
+        var result = uploader.upload(WORKSPACE_ID, workspace("A person"));
+
+        assertTrue(result.isSkipped());
+        assertEquals(requests, server.getRequestCount());
+        assertEquals(1L, server.getRevision(WORKSPACE_ID));
+    }
+
+    @Test
+    void uploadsAgainWhenTheWorkspaceChanged() throws Exception {
+        uploader.upload(WORKSPACE_ID, workspace("A person"));
+
+        var result = uploader.upload(WORKSPACE_ID, workspace("Another person"));
+
+        assertFalse(result.isSkipped());
+        assertEquals(2L, server.getRevision(WORKSPACE_ID));
+        assertTrue(server.getWorkspaceJson(WORKSPACE_ID).contains("Another person"));
+    }
+
+    @Test
+    void keepsTheLayoutEditedInStructurizr() throws Exception {
+        uploader.upload(WORKSPACE_ID, workspace("A person"));
+        var edited = new JsonReader().read(new StringReader(server.getWorkspaceJson(WORKSPACE_ID)));
+        var person = edited.getModel().getPersonWithName("A person");
+        edited.getViews().getSystemContextViews().iterator().next().getElementView(person).setX(1234);
+        var json = new StringWriter();
+        new JsonWriter(false).write(edited, json);
+        server.editRemotely(WORKSPACE_ID, json.toString());
+
+        var changed = workspace("A person");
+        changed.getModel().getSoftwareSystemWithName("System").setDescription("Changed");
+        uploader.upload(WORKSPACE_ID, changed);
+
+        var uploaded = new JsonReader().read(new StringReader(server.getWorkspaceJson(WORKSPACE_ID)));
+        var uploadedPerson = uploaded.getModel().getPersonWithName("A person");
+        assertEquals(1234, uploaded.getViews().getSystemContextViews().iterator().next()
+                .getElementView(uploadedPerson).getX());
+        assertEquals("Changed", uploaded.getModel().getSoftwareSystemWithName("System").getDescription());
+    }
+
+    @Test
+    void retriesAfterServiceUnavailable() throws Exception {
+        uploader.setMergeFromRemote(false);
+        server.failNextRequests(2, 503);
+
+        var result = uploader.upload(WORKSPACE_ID, workspace("A person"));
+
+        assertFalse(result.isSkipped());
+        assertEquals(3, result.getAttempts());
+        assertNotNull(server.getWorkspaceJson(WORKSPACE_ID));
+    }
+
+    @Test
+    void sendsTheWorkspaceUncompressedWhenGzipIsRejectedWithUnsupportedMediaType() throws Exception {
+        uploader.setCompress(true);
+        server.setAcceptGzip(false);
+
+        var result = uploader.upload(WORKSPACE_ID, workspace("A person"));
+
+        assertFalse(result.isCompressed());
+        assertEquals(2, result.getAttempts());
+        assertEquals(result.getPayloadBytes(), result.getTransferredBytes());
+        assertTrue(server.getWorkspaceJson(WORKSPACE_ID).contains("A person"));
+    }
+
+    @Test
+    void sendsTheWorkspaceUncompressedWhenGzipIsRejectedWithBadRequest() throws Exception {
+        uploader.setCompress(true);
+        uploader.setMergeFromRemote(false);
+        server.failNextRequests(1, 400);
+
+        var result = uploader.upload(WORKSPACE_ID, workspace("A person"));
+
+        assertFalse(result.isCompressed());
+        assertEquals(2, result.getAttempts());
+        assertNotNull(server.getWorkspaceJson(WORKSPACE_ID));
+    }
+
+    private static Workspace workspace(String personName) {
+        var workspace = new Workspace("Uploader test", "");
+        var person = workspace.getModel().addPerson(personName, "");
+        var system = workspace.getModel().addSoftwareSystem("System", "");
+        person.uses(system, "Uses");
+        workspace.getViews().createSystemContextView(system, "context", "").addAllElements();
+        return workspace;
+    }
+}